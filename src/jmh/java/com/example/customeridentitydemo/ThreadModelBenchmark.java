@@ -0,0 +1,146 @@
+package com.example.customeridentitydemo;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Platform versus virtual request threads under high concurrency. Each simulated request blocks on an order-service
+ * call and then holds one of a bounded pool of "connections" for a short query, like
+ * {@code GET /api/v1/customers/{id}}. Both waits are plain blocking sleeps: an in-JVM HTTP stub saturated long before
+ * either thread model did, which measured the stub rather than the threads.
+ * A background generator keeps {@code concurrency} requests in flight; {@code throughput} reports completed requests
+ * per second and {@code latency} samples the end-to-end latency (p99 in the JSON result) of one more request issued
+ * under that load.
+ */
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ThreadModelBenchmark {
+
+    // Tomcat's default server.tomcat.threads.max
+    private static final int PLATFORM_THREADS = 200;
+    private static final int ORDER_SERVICE_LATENCY_MILLIS = 20;
+    private static final int QUERY_MILLIS = 1;
+
+    @State(Scope.Benchmark)
+    public static class Load {
+
+        @Param({"platform", "virtual"})
+        public String threadModel;
+
+        @Param({"1000"})
+        public int concurrency;
+
+        // Hikari maximum-pool-size used by the virtual profile
+        @Param({"20"})
+        public int connectionPoolSize;
+
+        final AtomicLong completed = new AtomicLong();
+
+        private Semaphore connections;
+        private ExecutorService requestExecutor;
+        private Thread generator;
+
+        @Setup(Level.Trial)
+        public void start() {
+            connections = new Semaphore(connectionPoolSize);
+            requestExecutor = "virtual".equals(threadModel)
+                    ? Executors.newVirtualThreadPerTaskExecutor()
+                    : Executors.newFixedThreadPool(PLATFORM_THREADS);
+
+            Semaphore inFlight = new Semaphore(concurrency);
+            generator = Thread.ofPlatform().name("load-generator").daemon().start(() -> {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        inFlight.acquire();
+                        requestExecutor.execute(() -> {
+                            try {
+                                handleRequest();
+                                completed.incrementAndGet();
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                    }
+                } catch (InterruptedException | RejectedExecutionException e) {
+                    // Trial is over
+                }
+            });
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws InterruptedException {
+            generator.interrupt();
+            generator.join();
+            requestExecutor.shutdownNow();
+            requestExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+
+        void handleRequest() {
+            try {
+                Thread.sleep(ORDER_SERVICE_LATENCY_MILLIS);
+                connections.acquire();
+                try {
+                    Thread.sleep(QUERY_MILLIS);
+                } finally {
+                    connections.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Requests {
+        // Requests completed by the load generator during the iteration, reported per second
+        public long completedRequests;
+
+        private long startCount;
+
+        @Setup(Level.Iteration)
+        public void reset(Load load) {
+            completedRequests = 0;
+            startCount = load.completed.get();
+        }
+
+        void update(Load load) {
+            completedRequests = load.completed.get() - startCount;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void throughput(Load load, Requests requests) throws Exception {
+        requests.update(load);
+        Thread.sleep(10);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void latency(Load load) throws Exception {
+        load.requestExecutor.submit(load::handleRequest).get();
+    }
+}
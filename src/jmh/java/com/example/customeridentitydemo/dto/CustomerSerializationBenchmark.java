@@ -0,0 +1,82 @@
+package com.example.customeridentitydemo.dto;
+
+import com.example.customeridentitydemo.client.OrderResponseDTO;
+import com.example.customeridentitydemo.model.AddressType;
+import com.example.customeridentitydemo.model.CustomerStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Cost of writing {@link CustomerResponseDTO} graphs to JSON bytes, as the message converter does for
+ * {@code GET /api/v1/customers/{id}} (one customer with {@code children} addresses and orders) and for a listing
+ * page of 50 such customers. The mapper is built the way Spring Boot builds its own.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CustomerSerializationBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+
+    // Addresses and orders per customer
+    @Param({"0", "5", "50"})
+    public int children;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private CustomerResponseDTO customer;
+    private CustomerPageResponseDTO page;
+
+    @Setup
+    public void setUp() {
+        customer = customer(1L);
+        page = new CustomerPageResponseDTO(
+                IntStream.rangeClosed(1, PAGE_SIZE).mapToObj(this::customer).toList(), "aWQ6NTA", PAGE_SIZE);
+    }
+
+    @Benchmark
+    public byte[] serializeCustomer() throws Exception {
+        return objectMapper.writeValueAsBytes(customer);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws Exception {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    private CustomerResponseDTO customer(long id) {
+        List<AddressResponseDTO> addresses = new ArrayList<>();
+        List<OrderResponseDTO> orders = new ArrayList<>();
+        for (int i = 0; i < children; i++) {
+            addresses.add(new AddressResponseDTO((long) i, i + " Main St", "Anytown", "CA", "90210", AddressType.HOME));
+            OrderResponseDTO order = new OrderResponseDTO();
+            order.setOrderId((long) i);
+            order.setAmount(new BigDecimal("25.50"));
+            order.setOrderStatus("SHIPPED");
+            orders.add(order);
+        }
+        return new CustomerResponseDTO(id, "FirstName" + id, "LastName" + id, "email" + id + "@example.com",
+                "123-45-" + id, "555-0101", CustomerStatus.ACTIVE, LocalDateTime.now(), LocalDateTime.now(),
+                addresses, orders);
+    }
+}
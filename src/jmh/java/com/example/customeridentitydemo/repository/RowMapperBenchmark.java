@@ -0,0 +1,154 @@
+package com.example.customeridentitydemo.repository;
+
+import com.example.customeridentitydemo.model.Address;
+import com.example.customeridentitydemo.model.Customer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of mapping a result page in {@link JdbcCustomerRepository#findAll} and
+ * {@link JdbcAddressRepository#findByCustomerId}. Their queries are answered from an in-memory {@link CachedRowSet}
+ * with the tables' columns, so only the repositories' row mapping (column lookup by name, type conversion, object
+ * construction) and statement timer are measured, not the driver or the network.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RowMapperBenchmark {
+
+    // One customer, and a page at the listing's default limit
+    @Param({"1", "50"})
+    public int rows;
+
+    private CachedRowSet customerRows;
+    private CachedRowSet addressRows;
+    private JdbcCustomerRepository customerRepository;
+    private JdbcAddressRepository addressRepository;
+
+    @Setup
+    public void setUp() throws SQLException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        customerRows = rowSet(
+                new String[]{"id", "first_name", "last_name", "email", "ssn", "phone", "status", "created_at", "updated_at", "deleted_at"},
+                new int[]{Types.BIGINT, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP, Types.TIMESTAMP, Types.TIMESTAMP});
+        addressRows = rowSet(
+                new String[]{"id", "customer_id", "street", "city", "state", "zip_code", "address_type", "created_at", "updated_at", "deleted_at"},
+                new int[]{Types.BIGINT, Types.BIGINT, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP, Types.TIMESTAMP, Types.TIMESTAMP});
+
+        for (int i = 1; i <= rows; i++) {
+            customerRows.moveToInsertRow();
+            customerRows.updateLong(1, i);
+            customerRows.updateString(2, "FirstName" + i);
+            customerRows.updateString(3, "LastName" + i);
+            customerRows.updateString(4, "email" + i + "@example.com");
+            customerRows.updateString(5, "SSN" + i);
+            customerRows.updateString(6, "555-01" + i);
+            customerRows.updateString(7, "ACTIVE");
+            customerRows.updateTimestamp(8, now);
+            customerRows.updateTimestamp(9, now);
+            customerRows.updateNull(10);
+            customerRows.insertRow();
+            customerRows.moveToCurrentRow();
+
+            addressRows.moveToInsertRow();
+            addressRows.updateLong(1, i);
+            addressRows.updateLong(2, i);
+            addressRows.updateString(3, i + " Main St");
+            addressRows.updateString(4, "Anytown");
+            addressRows.updateString(5, "CA");
+            addressRows.updateString(6, "90210");
+            addressRows.updateString(7, "HOME");
+            addressRows.updateTimestamp(8, now);
+            addressRows.updateTimestamp(9, now);
+            addressRows.updateNull(10);
+            addressRows.insertRow();
+            addressRows.moveToCurrentRow();
+        }
+
+        var statementMetrics = new JdbcStatementMetrics(new SimpleMeterRegistry(), false, Duration.ZERO);
+        customerRepository = new JdbcCustomerRepository(new RowSetJdbcTemplate(customerRows), statementMetrics);
+        addressRepository = new JdbcAddressRepository(new RowSetJdbcTemplate(addressRows), statementMetrics);
+    }
+
+    @Benchmark
+    public List<Customer> mapCustomers() {
+        return customerRepository.findAll();
+    }
+
+    @Benchmark
+    public List<Address> mapAddresses() {
+        return addressRepository.findByCustomerId(1L);
+    }
+
+    // Answers every query with all rows of the row set, whatever its SQL and parameters
+    private static final class RowSetJdbcTemplate extends NamedParameterJdbcTemplate {
+
+        private final CachedRowSet rows;
+
+        RowSetJdbcTemplate(CachedRowSet rows) {
+            super(new JdbcTemplate());
+            this.rows = rows;
+        }
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper) {
+            return map(rowMapper);
+        }
+
+        @Override
+        public <T> List<T> query(String sql, Map<String, ?> paramMap, RowMapper<T> rowMapper) {
+            return map(rowMapper);
+        }
+
+        private <T> List<T> map(RowMapper<T> rowMapper) {
+            try {
+                rows.beforeFirst();
+                return new RowMapperResultSetExtractor<>(rowMapper).extractData(rows);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static CachedRowSet rowSet(String[] columns, int[] types) throws SQLException {
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(columns.length);
+        for (int i = 0; i < columns.length; i++) {
+            metaData.setColumnName(i + 1, columns[i]);
+            metaData.setColumnLabel(i + 1, columns[i]);
+            metaData.setColumnType(i + 1, types[i]);
+            metaData.setNullable(i + 1, RowSetMetaDataImpl.columnNullable);
+        }
+        CachedRowSet rowSet = RowSetProvider.newFactory().createCachedRowSet();
+        rowSet.setMetaData(metaData);
+        return rowSet;
+    }
+}
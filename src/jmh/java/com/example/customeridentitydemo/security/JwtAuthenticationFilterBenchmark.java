@@ -0,0 +1,71 @@
+package com.example.customeridentitydemo.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of authenticating one request through {@link JwtAuthenticationFilter}, with and without the verified-token
+ * cache, and with authorities loaded from the user store or carried in the token's claims.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtAuthenticationFilterBenchmark {
+
+    private static final String SECRET = "benchmarkSecretKeyThatIsAtLeast256BitsLongForHmacShaAlgorithms";
+
+    @Param({"true", "false"})
+    public boolean cacheEnabled;
+
+    @Param({"false", "true"})
+    public boolean claimsAuthorities;
+
+    private JwtAuthenticationFilter filter;
+    private String authorizationHeader;
+    private final FilterChain chain = (request, response) -> { };
+
+    @Setup
+    public void setUp() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 3600, cacheEnabled, 10_000, claimsAuthorities, 300, new SimpleMeterRegistry());
+        CustomUserDetailsService userDetailsService = new CustomUserDetailsService();
+
+        filter = new JwtAuthenticationFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(filter, "userDetailsService", userDetailsService);
+
+        authorizationHeader = "Bearer " + jwtUtil.generateToken(userDetailsService.loadUserByUsername("user"));
+    }
+
+    @Benchmark
+    public Object authenticateRequest() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/customers");
+        request.setServletPath("/api/v1/customers");
+        request.addHeader("Authorization", authorizationHeader);
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), chain);
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.customeridentitydemo.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of issuing a token at login and of verifying one on each request, with the verified-token cache off
+ * (full parse and HMAC check) and on.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtUtilBenchmark {
+
+    private static final String SECRET = "benchmarkSecretKeyThatIsAtLeast256BitsLongForHmacShaAlgorithms";
+
+    @Param({"false", "true"})
+    public boolean cacheEnabled;
+
+    private JwtUtil jwtUtil;
+    private UserDetails user;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil(SECRET, 3600, cacheEnabled, 10_000, false, 300, new SimpleMeterRegistry());
+        user = new CustomUserDetailsService().loadUserByUsername("user");
+        token = jwtUtil.generateToken(user);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken(user);
+    }
+
+    @Benchmark
+    public VerifiedToken verify() {
+        return jwtUtil.verify(token);
+    }
+
+    @Benchmark
+    public Boolean validateToken() {
+        return jwtUtil.validateToken(token, user);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.customeridentitydemo.service;
+
+import com.example.customeridentitydemo.dto.CustomerPageResponseDTO;
+import com.example.customeridentitydemo.model.Address;
+import com.example.customeridentitydemo.model.AddressType;
+import com.example.customeridentitydemo.model.Customer;
+import com.example.customeridentitydemo.model.CustomerStatus;
+import com.example.customeridentitydemo.repository.CustomerFilter;
+import com.example.customeridentitydemo.repository.CustomerPageKey;
+import com.example.customeridentitydemo.repository.JdbcAddressRepository;
+import com.example.customeridentitydemo.repository.JdbcCustomerRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a loaded customer into its response, through {@link CustomerService#getAllCustomers(String, int)}
+ * over stub repositories that return one customer with different numbers of addresses, and of sanitizing input,
+ * through {@link CustomerService#searchCustomers} with typical input and with input that needs escaping (the stub
+ * search finds nothing).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CustomerConversionBenchmark {
+
+    private final String plainInput = "  Jonathan Smith-Jones  ";
+    private final String markupInput = "<script>alert('x')</script> & \"Jonathan\" <b>Smith</b>";
+
+    // Separate state so the address counts only multiply the conversion benchmark
+    @State(Scope.Benchmark)
+    public static class CustomerGraph {
+
+        @Param({"1", "5", "20"})
+        public int addresses;
+
+        CustomerService customerService;
+
+        @Setup
+        public void setUp() {
+            Customer customer = new Customer(1L, "Jonathan", "Smith", "jonathan.smith@example.com", "123-45-6789",
+                    "555-0101", CustomerStatus.ACTIVE, null, LocalDateTime.now(), LocalDateTime.now(), new ArrayList<>());
+            for (int i = 0; i < addresses; i++) {
+                customer.addAddress(new Address((long) i, i + " Main St", "Anytown", "CA", "90210", AddressType.HOME, null));
+            }
+            customerService = customerService(List.of(customer), Map.of(1L, customer.getAddresses()));
+        }
+    }
+
+    private final CustomerService searchService = customerService(List.of(), Map.of());
+
+    @Benchmark
+    public CustomerPageResponseDTO convertCustomer(CustomerGraph graph) {
+        return graph.customerService.getAllCustomers(null, 1);
+    }
+
+    @Benchmark
+    public CustomerPageResponseDTO sanitizePlainInput() {
+        return searchService.searchCustomers(plainInput, null, 10);
+    }
+
+    @Benchmark
+    public CustomerPageResponseDTO sanitizeMarkupInput() {
+        return searchService.searchCustomers(markupInput, null, 10);
+    }
+
+    // A service whose repositories return the given customers (for listings and searches) and their addresses
+    private static CustomerService customerService(List<Customer> customers, Map<Long, List<Address>> addresses) {
+        var customerRepository = new JdbcCustomerRepository(null, null) {
+            @Override
+            public List<Customer> findPage(CustomerPageKey after, int limit, CustomerFilter filter) {
+                return customers;
+            }
+
+            @Override
+            public List<Customer> search(String query, int limit, int offset, int maxResults, double similarityThreshold) {
+                return customers;
+            }
+        };
+        var addressRepository = new JdbcAddressRepository(null, null) {
+            @Override
+            public Map<Long, List<Address>> findByCustomerIds(Collection<Long> customerIds) {
+                return addresses;
+            }
+        };
+        CustomerService customerService = new CustomerService();
+        ReflectionTestUtils.setField(customerService, "customerRepository", customerRepository);
+        ReflectionTestUtils.setField(customerService, "addressRepository", addressRepository);
+        return customerService;
+    }
+}
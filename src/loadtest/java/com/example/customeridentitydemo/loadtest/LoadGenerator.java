@@ -0,0 +1,235 @@
+package com.example.customeridentitydemo.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Open-model load generator: requests are started at a fixed arrival rate whether or not earlier ones have finished,
+ * as real clients would. Latency is measured from each request's intended start rather than its actual send time,
+ * so a stall in the application shows up in the percentiles instead of silently lowering the offered load
+ * (coordinated omission). Requests that would exceed {@code maxInFlight} are not sent and are counted as dropped.
+ */
+class LoadGenerator {
+
+    enum Operation {
+        LOGIN("POST /auth/login"),
+        READ("GET /customers/{id}"),
+        LIST("GET /customers"),
+        CREATE("POST /customers"),
+        UPDATE("PUT /customers/{id}");
+
+        final String endpoint;
+
+        Operation(String endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+
+    // Latencies up to one hour, recorded in microseconds with three significant digits
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final String username;
+    private final String password;
+    private final List<Long> customerIds;
+    private final Map<Operation, Integer> mix;
+    private final long seed;
+    private final int maxInFlight;
+    private final String runId;
+    private volatile String token;
+
+    LoadGenerator(HttpClient httpClient, String baseUrl, String username, String password, String token,
+                  List<Long> customerIds, Map<Operation, Integer> mix, long seed, int maxInFlight, String runId) {
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl;
+        this.username = username;
+        this.password = password;
+        this.token = token;
+        this.customerIds = customerIds;
+        this.mix = mix;
+        this.seed = seed;
+        this.maxInFlight = maxInFlight;
+        this.runId = runId;
+    }
+
+    /** Per-endpoint results of the measured part of a run. */
+    static final class Stats {
+        final Histogram latencyMicros = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        final LongAdder errors = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        // Non-2xx responses by status; 0 for requests that failed without a response
+        final Map<Integer, LongAdder> errorsByStatus = new ConcurrentHashMap<>();
+    }
+
+    private record Request(Operation operation, long customerId, long sequence, long intendedStartNanos,
+                           boolean measured) {
+    }
+
+    /**
+     * Offers load at {@code ratePerSecond} for {@code warmup} plus {@code duration}, then waits for requests still in
+     * flight. Only requests scheduled after the warmup are recorded.
+     */
+    Map<Operation, Stats> run(double ratePerSecond, Duration warmup, Duration duration) {
+        Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+        // Operation and target are drawn on the scheduling thread so a seed reproduces the same request sequence
+        Random random = new Random(seed);
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long sequence = 0; ; sequence++) {
+                long intendedStart = start + (long) (sequence * intervalNanos);
+                if (intendedStart >= end) {
+                    break;
+                }
+                long wait = intendedStart - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                Request request = new Request(pick(random, totalWeight),
+                        customerIds.get(random.nextInt(customerIds.size())), sequence, intendedStart,
+                        intendedStart >= measureFrom);
+                Stats operationStats = stats.get(request.operation());
+                if (!inFlight.tryAcquire()) {
+                    if (request.measured()) {
+                        operationStats.dropped.increment();
+                    }
+                    continue;
+                }
+                executor.execute(() -> {
+                    try {
+                        int status = send(request);
+                        if (request.measured()) {
+                            record(operationStats, request, status);
+                        }
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        return stats;
+    }
+
+    private Operation pick(Random random, int totalWeight) {
+        int point = random.nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            point -= entry.getValue();
+            if (point < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty operation mix");
+    }
+
+    private static void record(Stats stats, Request request, int status) {
+        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - request.intendedStartNanos());
+        stats.latencyMicros.recordValue(Math.min(latencyMicros, HIGHEST_TRACKABLE_MICROS));
+        if (status < 200 || status >= 300) {
+            stats.errors.increment();
+            stats.errorsByStatus.computeIfAbsent(status, s -> new LongAdder()).increment();
+        }
+    }
+
+    // Returns the response status, or 0 when the request failed without one
+    private int send(Request request) {
+        try {
+            HttpResponse<String> response = httpClient.send(toHttpRequest(request), HttpResponse.BodyHandlers.ofString());
+            if (request.operation() == Operation.LOGIN && response.statusCode() == 200) {
+                // Keep the shared token fresh for the rest of the run
+                Matcher matcher = TOKEN.matcher(response.body());
+                if (matcher.find()) {
+                    token = matcher.group(1);
+                }
+            }
+            return response.statusCode();
+        } catch (IOException e) {
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+
+    private HttpRequest toHttpRequest(Request request) {
+        String customers = baseUrl + "/api/v1/customers";
+        return switch (request.operation()) {
+            case LOGIN -> json(baseUrl + "/api/v1/auth/login")
+                    .POST(body(loginJson(username, password)))
+                    .build();
+            case READ -> authorized(customers + "/" + request.customerId()).GET().build();
+            case LIST -> authorized(customers + "?limit=50&after=" + cursor(request.customerId())).GET().build();
+            case CREATE -> authorized(customers)
+                    .POST(body(customerJson(runId + "c", request.sequence())))
+                    .build();
+            case UPDATE -> authorized(customers + "/" + request.customerId())
+                    .PUT(body(customerJson(runId + "u", request.sequence())))
+                    .build();
+        };
+    }
+
+    private HttpRequest.Builder authorized(String url) {
+        return json(url).header("Authorization", "Bearer " + token);
+    }
+
+    private static HttpRequest.Builder json(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json");
+    }
+
+    private static HttpRequest.BodyPublisher body(String json) {
+        return HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8);
+    }
+
+    // Same format as the cursors the application hands out, so list pages start at random points in the table
+    private static String cursor(long afterId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(("id:" + afterId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String loginJson(String username, String password) {
+        return "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}";
+    }
+
+    // Email and SSN are unique per run and sequence, so creates and updates never collide with each other or the seed
+    static String customerJson(String prefix, long sequence) {
+        String key = prefix + sequence;
+        return "{\"firstName\":\"Load\",\"lastName\":\"Test" + sequence + "\","
+                + "\"email\":\"" + key + "@loadtest.example.com\",\"ssn\":\"" + key + "\",\"phone\":\"555-0100\","
+                + "\"addresses\":[{\"street\":\"" + sequence + " Main St\",\"city\":\"Springfield\",\"state\":\"IL\","
+                + "\"zipCode\":\"62701\",\"addressType\":\"HOME\"}]}";
+    }
+}
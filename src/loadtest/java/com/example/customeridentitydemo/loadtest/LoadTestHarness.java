@@ -0,0 +1,290 @@
+package com.example.customeridentitydemo.loadtest;
+
+import com.example.customeridentitydemo.loadtest.LoadGenerator.Operation;
+import com.example.customeridentitydemo.loadtest.LoadGenerator.Stats;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * End-to-end load test: starts the packaged application as a separate JVM against a local Postgres (embedded unless
+ * {@code loadtest.jdbc-url} is given) and a {@link StubOrderService}, seeds customers through the batch endpoint,
+ * drives a mixed workload with {@link LoadGenerator} and writes throughput and latency percentiles per endpoint to
+ * {@code loadtest.report-dir}, together with one HDR histogram ({@code .hgrm}) per endpoint.
+ * <p>
+ * Run through the {@code load-test} Maven profile. Settings are {@code loadtest.*} system properties: {@code rate}
+ * (requests/s), {@code warmup}, {@code duration}, {@code customers} to seed, {@code order-latency-ms}, {@code mix}
+ * (weights, e.g. {@code read=60,list=15,create=10,update=13,login=2}), {@code seed}, {@code max-in-flight},
+ * {@code app-args}, and {@code jdbc-url}/{@code username}/{@code password} to use an existing database instead.
+ */
+public class LoadTestHarness {
+
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+    private static final int SEED_CHUNK = 1000;
+
+    public static void main(String[] args) throws Exception {
+        double rate = Double.parseDouble(setting("rate", "200"));
+        Duration warmup = duration(setting("warmup", "10s"));
+        Duration duration = duration(setting("duration", "60s"));
+        int customers = Integer.parseInt(setting("customers", "1000"));
+        long orderLatencyMillis = Long.parseLong(setting("order-latency-ms", "20"));
+        Map<Operation, Integer> mix = mix(setting("mix", "login=2,read=60,list=15,create=10,update=13"));
+        long seed = Long.parseLong(setting("seed", "42"));
+        int maxInFlight = Integer.parseInt(setting("max-in-flight", "1000"));
+        String appJar = required("app-jar");
+        Path reportDir = Path.of(setting("report-dir", "target/load-test"));
+        String appArgs = setting("app-args", "--spring.profiles.active=prod");
+        String jdbcUrl = System.getProperty("loadtest.jdbc-url");
+        Files.createDirectories(reportDir);
+
+        EmbeddedPostgres embeddedPostgres = null;
+        Process app = null;
+        try (StubOrderService orderService = new StubOrderService(orderLatencyMillis)) {
+            String username = setting("username", "postgres");
+            String password = setting("password", "postgres");
+            if (jdbcUrl == null) {
+                System.out.println("Starting embedded Postgres");
+                embeddedPostgres = EmbeddedPostgres.builder().start();
+                jdbcUrl = embeddedPostgres.getJdbcUrl("postgres", "postgres");
+            }
+
+            int port = freePort();
+            List<String> command = new ArrayList<>(List.of(
+                    Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-jar", appJar,
+                    "--server.port=" + port,
+                    "--spring.datasource.url=" + jdbcUrl,
+                    "--spring.datasource.username=" + username,
+                    "--spring.datasource.password=" + password,
+                    "--order-service.url=" + orderService.url()));
+            command.addAll(Arrays.asList(appArgs.trim().split("\\s+")));
+            System.out.println("Starting application on port " + port + ", log in " + reportDir.resolve("app.log"));
+            app = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(reportDir.resolve("app.log").toFile())
+                    .start();
+
+            String baseUrl = "http://127.0.0.1:" + port;
+            HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+            awaitHealthy(httpClient, baseUrl, app);
+
+            String appUser = setting("app-username", "admin");
+            String appPassword = setting("app-password", "admin123");
+            String token = login(httpClient, baseUrl, appUser, appPassword);
+            // Unique per run, so repeated runs against the same database never collide on email or SSN
+            String runId = "lt" + Long.toString(System.currentTimeMillis(), 36);
+            List<Long> customerIds = seed(httpClient, baseUrl, token, customers, runId);
+
+            System.out.printf("Offering %.0f req/s for %s warmup + %s%n", rate, warmup, duration);
+            LoadGenerator generator = new LoadGenerator(httpClient, baseUrl, appUser, appPassword, token,
+                    customerIds, mix, seed, maxInFlight, runId);
+            Map<Operation, Stats> stats = generator.run(rate, warmup, duration);
+
+            String report = report(stats, duration, Map.of(
+                    "rate", rate + "/s", "warmup", warmup, "duration", duration, "customers", customers,
+                    "order latency", orderLatencyMillis + "ms", "mix", mix, "seed", seed,
+                    "database", embeddedPostgres != null ? "embedded" : jdbcUrl, "app args", appArgs));
+            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            Path reportFile = reportDir.resolve("report-" + timestamp + ".txt");
+            Files.writeString(reportFile, report);
+            for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+                writeHistogram(reportDir.resolve(timestamp + "-" + entry.getKey().name().toLowerCase() + ".hgrm"),
+                        entry.getValue().latencyMicros);
+            }
+            System.out.println(report);
+            System.out.println("Report written to " + reportFile);
+        } finally {
+            if (app != null) {
+                app.destroy();
+                if (!app.waitFor(30, TimeUnit.SECONDS)) {
+                    app.destroyForcibly();
+                }
+            }
+            if (embeddedPostgres != null) {
+                embeddedPostgres.close();
+            }
+        }
+    }
+
+    private static void awaitHealthy(HttpClient httpClient, String baseUrl, Process app) throws Exception {
+        HttpRequest health = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/health"))
+                .timeout(Duration.ofSeconds(2))
+                .build();
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+        while (System.nanoTime() < deadline) {
+            if (!app.isAlive()) {
+                throw new IllegalStateException("Application exited with " + app.exitValue() + ", see app.log");
+            }
+            try {
+                if (httpClient.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("Application did not become healthy within 2 minutes, see app.log");
+    }
+
+    private static String login(HttpClient httpClient, String baseUrl, String username, String password)
+            throws Exception {
+        HttpResponse<String> response = post(httpClient, baseUrl + "/api/v1/auth/login", null,
+                LoadGenerator.loginJson(username, password));
+        Matcher matcher = TOKEN.matcher(response.body());
+        if (response.statusCode() != 200 || !matcher.find()) {
+            throw new IllegalStateException("Login failed with " + response.statusCode() + ": " + response.body());
+        }
+        return matcher.group(1);
+    }
+
+    // Seeds through the batch endpoint and returns the new ids, so reads and updates only target seeded customers
+    private static List<Long> seed(HttpClient httpClient, String baseUrl, String token, int customers, String runId)
+            throws Exception {
+        System.out.println("Seeding " + customers + " customers");
+        List<Long> ids = new ArrayList<>(customers);
+        for (int from = 0; from < customers; from += SEED_CHUNK) {
+            String batch = IntStream.range(from, Math.min(from + SEED_CHUNK, customers))
+                    .mapToObj(i -> LoadGenerator.customerJson(runId + "s", i))
+                    .collect(Collectors.joining(",", "[", "]"));
+            HttpResponse<String> response = post(httpClient, baseUrl + "/api/v1/customers/batch", token, batch);
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Seeding failed with " + response.statusCode() + ": " + response.body());
+            }
+            Matcher matcher = ID.matcher(response.body());
+            while (matcher.find()) {
+                ids.add(Long.parseLong(matcher.group(1)));
+            }
+        }
+        if (ids.size() != customers) {
+            throw new IllegalStateException("Seeded " + ids.size() + " of " + customers + " customers");
+        }
+        return ids;
+    }
+
+    private static HttpResponse<String> post(HttpClient httpClient, String url, String token, String json)
+            throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMinutes(2))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String report(Map<Operation, Stats> stats, Duration duration, Map<String, Object> settings) {
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        writer.println("Load test " + LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        new TreeMap<>(settings).forEach((name, value) -> writer.printf("  %-14s %s%n", name, value));
+        writer.println();
+        writer.printf("%-22s %9s %8s %8s %10s %9s %9s %9s %9s  %s%n",
+                "endpoint", "requests", "errors", "dropped", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms",
+                "errors by status");
+        double seconds = duration.toNanos() / 1e9;
+        Histogram all = new Histogram(TimeUnit.HOURS.toMicros(1), 3);
+        long errors = 0;
+        long dropped = 0;
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Stats endpoint = entry.getValue();
+            Histogram histogram = endpoint.latencyMicros;
+            all.add(histogram);
+            errors += endpoint.errors.sum();
+            dropped += endpoint.dropped.sum();
+            printRow(writer, entry.getKey().endpoint, histogram, endpoint.errors.sum(), endpoint.dropped.sum(), seconds,
+                    new TreeMap<>(endpoint.errorsByStatus).toString());
+        }
+        printRow(writer, "all", all, errors, dropped, seconds, "");
+        writer.println();
+        writer.println("Latency is measured from each request's scheduled start; req/s counts successful responses.");
+        writer.flush();
+        return out.toString();
+    }
+
+    private static void printRow(PrintWriter writer, String name, Histogram histogram, long errors, long dropped,
+                                 double seconds, String errorsByStatus) {
+        long requests = histogram.getTotalCount();
+        writer.printf("%-22s %9d %8d %8d %10.1f %9.2f %9.2f %9.2f %9.2f  %s%n",
+                name, requests, errors, dropped, (requests - errors) / seconds,
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()),
+                errorsByStatus.equals("{}") ? "" : errorsByStatus);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    // Percentile distribution in milliseconds, loadable in HdrHistogram's plotter
+    private static void writeHistogram(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, StandardCharsets.UTF_8)) {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private static Map<Operation, Integer> mix(String spec) {
+        Map<Operation, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] weight = part.trim().split("=");
+            int value = Integer.parseInt(weight[1].trim());
+            if (value > 0) {
+                mix.put(Operation.valueOf(weight[0].trim().toUpperCase()), value);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("loadtest.mix has no operation with a positive weight: " + spec);
+        }
+        return mix;
+    }
+
+    private static Duration duration(String value) {
+        return Duration.parse("PT" + value.toUpperCase());
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static String setting(String name, String defaultValue) {
+        return System.getProperty("loadtest." + name, defaultValue);
+    }
+
+    private static String required(String name) {
+        String value = System.getProperty("loadtest." + name);
+        if (value == null) {
+            throw new IllegalArgumentException("loadtest." + name + " is required");
+        }
+        return value;
+    }
+}
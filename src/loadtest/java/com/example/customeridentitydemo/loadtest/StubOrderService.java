@@ -0,0 +1,69 @@
+package com.example.customeridentitydemo.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Stand-in for the order service: answers both the single-customer and the bulk order lookup with two orders per
+ * customer after a fixed latency. Requests are served on virtual threads so the stub never becomes the bottleneck.
+ */
+class StubOrderService implements AutoCloseable {
+
+    private final HttpServer server;
+    private final long latencyMillis;
+
+    StubOrderService(long latencyMillis) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/orders/customer/", exchange -> {
+            String customerId = exchange.getRequestURI().getPath().substring("/orders/customer/".length());
+            respond(exchange, orders(customerId));
+        });
+        server.createContext("/orders/customers", exchange -> {
+            String ids = exchange.getRequestURI().getQuery().replaceFirst("^ids=", "");
+            respond(exchange, Arrays.stream(ids.split("(,|%2C|&ids=)"))
+                    .map(id -> "\"" + id + "\":" + orders(id))
+                    .collect(Collectors.joining(",", "{", "}")));
+        });
+        server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private static String orders(String customerId) {
+        return "[{\"orderId\":" + customerId + "01,\"amount\":25.50,\"orderStatus\":\"SHIPPED\"},"
+                + "{\"orderId\":" + customerId + "02,\"amount\":99.00,\"orderStatus\":\"PENDING\"}]";
+    }
+
+    private void respond(HttpExchange exchange, String body) throws IOException {
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        } catch (IOException e) {
+            // The application gave up (read timeout or cancelled lookup)
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.customeridentitydemo.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Collects single-customer order lookups for up to {@code window}, or until {@code maxBatchSize} ids are waiting,
+ * and answers them all with one bulk call. Lookups of an id that is already waiting or in flight share its result.
+ * Bulk calls run on the coalescer's own threads, never on a caller's, so callers blocked on their lookup cannot
+ * starve the call that completes it.
+ */
+class OrderLookupCoalescer {
+
+    private final Function<List<Long>, Map<Long, List<OrderResponseDTO>>> bulkLookup;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final ScheduledThreadPoolExecutor dispatcher;
+
+    private final Map<Long, CompletableFuture<List<OrderResponseDTO>>> inFlight = new ConcurrentHashMap<>();
+    // ReentrantLock rather than synchronized so virtual-thread callers are never pinned
+    private final ReentrantLock lock = new ReentrantLock();
+    private List<Long> pendingIds = new ArrayList<>();
+
+    private final DistributionSummary batchSizes;
+    private final Counter sharedLookups;
+
+    OrderLookupCoalescer(Function<List<Long>, Map<Long, List<OrderResponseDTO>>> bulkLookup,
+                         Duration window, int maxBatchSize, int dispatchThreads, MeterRegistry meterRegistry) {
+        this.bulkLookup = bulkLookup;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.dispatcher = new ScheduledThreadPoolExecutor(dispatchThreads,
+                Thread.ofPlatform().name("order-lookup-batch-", 1).daemon().factory());
+        this.dispatcher.setRemoveOnCancelPolicy(true);
+        this.batchSizes = DistributionSummary.builder("order.lookup.batch.size")
+                .description("Customer ids sent per bulk order lookup")
+                .register(meterRegistry);
+        this.sharedLookups = Counter.builder("order.lookup.batch.shared")
+                .description("Lookups answered by another caller's waiting or in-flight lookup of the same id")
+                .register(meterRegistry);
+    }
+
+    CompletableFuture<List<OrderResponseDTO>> lookup(Long customerId) {
+        CompletableFuture<List<OrderResponseDTO>> lookup = new CompletableFuture<>();
+        CompletableFuture<List<OrderResponseDTO>> existing = inFlight.putIfAbsent(customerId, lookup);
+        if (existing != null) {
+            sharedLookups.increment();
+            return existing;
+        }
+
+        List<Long> fullBatch = null;
+        List<Long> newBatch = null;
+        lock.lock();
+        try {
+            pendingIds.add(customerId);
+            if (pendingIds.size() >= maxBatchSize) {
+                fullBatch = pendingIds;
+                pendingIds = new ArrayList<>();
+            } else if (pendingIds.size() == 1) {
+                newBatch = pendingIds;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (fullBatch != null) {
+            dispatch(fullBatch);
+        } else if (newBatch != null) {
+            List<Long> batch = newBatch;
+            try {
+                dispatcher.schedule(() -> flush(batch), windowNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                flush(batch);
+            }
+        }
+        return lookup;
+    }
+
+    void shutdown() {
+        dispatcher.shutdownNow();
+    }
+
+    // Sends the batch once its window closes, unless it already went out for being full
+    private void flush(List<Long> batch) {
+        lock.lock();
+        try {
+            if (pendingIds != batch) {
+                return;
+            }
+            pendingIds = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(List<Long> batch) {
+        try {
+            dispatcher.execute(() -> send(batch));
+        } catch (RejectedExecutionException e) {
+            fail(batch, e);
+        }
+    }
+
+    private void send(List<Long> batch) {
+        batchSizes.record(batch.size());
+        Map<Long, List<OrderResponseDTO>> ordersByCustomer;
+        try {
+            ordersByCustomer = bulkLookup.apply(batch);
+        } catch (RuntimeException e) {
+            fail(batch, e);
+            return;
+        }
+        for (Long customerId : batch) {
+            List<OrderResponseDTO> orders = ordersByCustomer != null ? ordersByCustomer.get(customerId) : null;
+            // Removed before completing, so a lookup arriving afterwards starts a fresh call
+            inFlight.remove(customerId).complete(orders != null ? List.copyOf(orders) : Collections.emptyList());
+        }
+    }
+
+    private void fail(List<Long> batch, RuntimeException e) {
+        for (Long customerId : batch) {
+            inFlight.remove(customerId).completeExceptionally(e);
+        }
+    }
+}
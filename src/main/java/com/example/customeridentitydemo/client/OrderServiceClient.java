@@ -3,8 +3,10 @@ package com.example.customeridentitydemo.client;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
+import java.util.Map;
 
 @FeignClient(name = "order-service", url = "${order-service.url}")
 public interface OrderServiceClient {
@@ -12,4 +14,8 @@ public interface OrderServiceClient {
     @GetMapping("/orders/customer/{customerId}")
     List<OrderResponseDTO> getOrdersByCustomerId(@PathVariable("customerId") Long customerId);
 
+    // Orders of several customers in one call, keyed by customer id; customers without orders may be absent
+    @GetMapping("/orders/customers")
+    Map<Long, List<OrderResponseDTO>> getOrdersByCustomerIds(@RequestParam("ids") List<Long> customerIds);
+
 }
@@ -0,0 +1,230 @@
+package com.example.customeridentitydemo.client;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.InterruptedIOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * {@link OrderServiceClient} behind a circuit breaker and a concurrency bulkhead, both configured under
+ * {@code resilience4j.*.instances.order-service}. Connect and read timeouts are set on the Feign client itself.
+ * Any failure - rejection, open circuit, timeout or error - degrades to an empty orders list and is counted in
+ * {@code order.lookup.degraded}, tagged by reason.
+ * <p>
+ * Order lists are cached per customer when {@code order-service.cache.enabled} is set. Entries older than
+ * {@code refresh-after} are still served while a background refresh runs (stale-while-revalidate); a failed
+ * refresh keeps the old entry (stale-if-error) until {@code ttl} after it was loaded, when it is dropped. Refreshes
+ * run on the bounded {@code orderRefreshExecutor}, never on the executor of request-path lookups; a refresh it
+ * rejects is skipped and counted in {@code order.lookup.refresh} with outcome {@code rejected}.
+ * <p>
+ * With {@code order-service.batch.enabled}, lookups that reach the service are coalesced into bulk
+ * {@link OrderServiceClient#getOrdersByCustomerIds} calls by an {@link OrderLookupCoalescer}; each bulk call passes
+ * the circuit breaker and bulkhead once.
+ */
+@Component
+@Slf4j
+public class ResilientOrderServiceClient {
+
+    static final String INSTANCE = "order-service";
+
+    private final OrderServiceClient orderServiceClient;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final MeterRegistry meterRegistry;
+
+    // Order lists by customer id; null when caching is disabled
+    private final AsyncLoadingCache<Long, List<OrderResponseDTO>> orderCache;
+    // Coalesces lookups into bulk calls; null when batching is disabled
+    private final OrderLookupCoalescer coalescer;
+    // Runs background refreshes of cached order lists
+    private final Executor refreshExecutor;
+
+    public ResilientOrderServiceClient(OrderServiceClient orderServiceClient,
+                                       CircuitBreakerRegistry circuitBreakerRegistry,
+                                       BulkheadRegistry bulkheadRegistry,
+                                       MeterRegistry meterRegistry,
+                                       @Qualifier("orderRefreshExecutor") Executor refreshExecutor,
+                                       @Value("${order-service.cache.enabled:true}") boolean cacheEnabled,
+                                       @Value("${order-service.cache.max-size:10000}") int cacheMaxSize,
+                                       @Value("${order-service.cache.refresh-after:30s}") Duration refreshAfter,
+                                       @Value("${order-service.cache.ttl:5m}") Duration ttl,
+                                       @Value("${order-service.batch.enabled:false}") boolean batchEnabled,
+                                       @Value("${order-service.batch.window:5ms}") Duration batchWindow,
+                                       @Value("${order-service.batch.max-size:50}") int batchMaxSize,
+                                       @Value("${order-service.batch.dispatch-threads:4}") int dispatchThreads) {
+        this.orderServiceClient = orderServiceClient;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(INSTANCE);
+        this.bulkhead = bulkheadRegistry.bulkhead(INSTANCE);
+        this.meterRegistry = meterRegistry;
+        this.refreshExecutor = refreshExecutor;
+        if (cacheEnabled) {
+            // The cache's own executor only runs its short maintenance tasks; refreshes go to refreshExecutor
+            this.orderCache = Caffeine.newBuilder()
+                    .maximumSize(cacheMaxSize)
+                    .refreshAfterWrite(refreshAfter)
+                    .expireAfterWrite(ttl)
+                    .recordStats()
+                    .buildAsync(new OrderLoader());
+            CaffeineCacheMetrics.monitor(meterRegistry, orderCache.synchronous(), "order.lookup");
+        } else {
+            this.orderCache = null;
+        }
+        this.coalescer = batchEnabled
+                ? new OrderLookupCoalescer(this::fetchBatch, batchWindow, batchMaxSize, dispatchThreads, meterRegistry)
+                : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (coalescer != null) {
+            coalescer.shutdown();
+        }
+    }
+
+    public List<OrderResponseDTO> getOrdersByCustomerId(Long customerId) {
+        try {
+            return orderCache != null ? getCached(customerId) : fetch(customerId);
+        } catch (CallNotPermittedException e) {
+            return degrade("circuit_open", customerId, e);
+        } catch (BulkheadFullException e) {
+            return degrade("bulkhead_full", customerId, e);
+        } catch (RuntimeException e) {
+            return degrade(isTimeout(e) ? "timeout" : "error", customerId, e);
+        }
+    }
+
+    /**
+     * A miss is loaded on the calling thread, outside the cache's internal locks: a synchronous load would hold a
+     * ConcurrentHashMap bin lock for the whole remote call, pinning virtual threads and blocking other keys.
+     * Concurrent readers of the same customer wait on the same load; a failed load is removed from the cache.
+     */
+    private List<OrderResponseDTO> getCached(Long customerId) {
+        CompletableFuture<List<OrderResponseDTO>> load = new CompletableFuture<>();
+        CompletableFuture<List<OrderResponseDTO>> orders = orderCache.get(customerId, (key, executor) -> load);
+        if (orders == load) {
+            try {
+                load.complete(fetch(customerId));
+            } catch (RuntimeException e) {
+                load.completeExceptionally(e);
+            }
+        }
+        return await(orders);
+    }
+
+    // Throws on any failure so the cache never stores a degraded result and a failed refresh keeps the old entry
+    private List<OrderResponseDTO> fetch(Long customerId) {
+        if (coalescer != null) {
+            return await(coalescer.lookup(customerId));
+        }
+        List<OrderResponseDTO> orders = guarded(() -> orderServiceClient.getOrdersByCustomerId(customerId));
+        return orders != null ? List.copyOf(orders) : Collections.emptyList();
+    }
+
+    private Map<Long, List<OrderResponseDTO>> fetchBatch(List<Long> customerIds) {
+        return guarded(() -> orderServiceClient.getOrdersByCustomerIds(customerIds));
+    }
+
+    private <T> T guarded(Supplier<T> call) {
+        // Breaker outside the bulkhead: an open circuit rejects without taking a permit
+        return CircuitBreaker.decorateSupplier(circuitBreaker, Bulkhead.decorateSupplier(bulkhead, call)).get();
+    }
+
+    // Interruptible, so a lookup thread stopped by executor shutdown stops waiting for a shared load or batch
+    private static List<OrderResponseDTO> await(CompletableFuture<List<OrderResponseDTO>> orders) {
+        try {
+            return orders.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for orders", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        }
+    }
+
+    private List<OrderResponseDTO> degrade(String reason, Long customerId, Exception e) {
+        Counter.builder("order.lookup.degraded")
+                .description("Order lookups answered with an empty list instead of the order service's response")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        log.warn("Order lookup for customer {} degraded ({}): {}", customerId, reason, e.getMessage());
+        return Collections.emptyList();
+    }
+
+    private final class OrderLoader implements CacheLoader<Long, List<OrderResponseDTO>> {
+        @Override
+        public List<OrderResponseDTO> load(Long customerId) {
+            return fetch(customerId);
+        }
+
+        // A rejected refresh completes as cancelled, which Caffeine drops without logging; the entry keeps its load
+        // time, so a later read past refresh-after tries again
+        @Override
+        public CompletableFuture<List<OrderResponseDTO>> asyncReload(Long customerId, List<OrderResponseDTO> oldOrders,
+                                                                     Executor executor) {
+            try {
+                return CompletableFuture.supplyAsync(() -> reload(customerId, oldOrders), refreshExecutor);
+            } catch (RejectedExecutionException e) {
+                refreshed("rejected");
+                return CompletableFuture.failedFuture(new CancellationException("Order refresh executor is full"));
+            }
+        }
+
+        @Override
+        public List<OrderResponseDTO> reload(Long customerId, List<OrderResponseDTO> oldOrders) {
+            try {
+                List<OrderResponseDTO> orders = fetch(customerId);
+                refreshed("success");
+                return orders;
+            } catch (RuntimeException e) {
+                refreshed("failure");
+                log.debug("Order refresh for customer {} failed, serving cached orders: {}", customerId, e.getMessage());
+                throw e;
+            }
+        }
+
+        private void refreshed(String outcome) {
+            Counter.builder("order.lookup.refresh")
+                    .description("Background refreshes of cached order lists")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            // SocketTimeoutException and HttpConnectTimeoutException are subtypes of these
+            if (cause instanceof InterruptedIOException || cause instanceof HttpTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
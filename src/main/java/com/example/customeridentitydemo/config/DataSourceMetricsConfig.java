@@ -0,0 +1,108 @@
+package com.example.customeridentitydemo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection-pool metrics. Hikari's own Micrometer metrics ({@code hikaricp.connections.acquire}, {@code .usage},
+ * {@code .active}, {@code .idle}, {@code .pending}, {@code .timeout}) are kept, and each connection's hold time is
+ * also recorded under {@code db.connection.hold}, tagged with the HTTP method and URI pattern of the request that
+ * held it, so slow endpoints can be told apart from endpoints that merely keep connections long.
+ */
+@Configuration
+public class DataSourceMetricsConfig {
+
+    // Static, so the post-processor is registered before the data source is created
+    @Bean
+    public static BeanPostProcessor hikariMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // Set before the pool starts; Spring Boot then leaves the tracker factory alone
+                if (bean instanceof HikariDataSource dataSource && dataSource.getMetricsTrackerFactory() == null
+                        && dataSource.getMetricRegistry() == null) {
+                    dataSource.setMetricsTrackerFactory(new EndpointMetricsTrackerFactory(meterRegistry));
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static final class EndpointMetricsTrackerFactory implements MetricsTrackerFactory {
+
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+
+        private EndpointMetricsTrackerFactory(ObjectProvider<MeterRegistry> meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        // Called when the pool starts, by which time the registry is available
+        @Override
+        public IMetricsTracker create(String poolName, PoolStats poolStats) {
+            MeterRegistry registry = meterRegistry.getObject();
+            IMetricsTracker hikariTracker = new MicrometerMetricsTrackerFactory(registry).create(poolName, poolStats);
+            return new IMetricsTracker() {
+                @Override
+                public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                    hikariTracker.recordConnectionCreatedMillis(connectionCreatedMillis);
+                }
+
+                @Override
+                public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                    hikariTracker.recordConnectionAcquiredNanos(elapsedAcquiredNanos);
+                }
+
+                // Runs on the thread returning the connection, which is the request thread for request work
+                @Override
+                public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                    hikariTracker.recordConnectionUsageMillis(elapsedBorrowedMillis);
+                    HttpServletRequest request = currentRequest();
+                    Timer.builder("db.connection.hold")
+                            .description("Time a connection was held, by the endpoint that held it")
+                            .tag("pool", poolName)
+                            .tag("method", request != null ? request.getMethod() : "none")
+                            .tag("uri", request != null ? uriPattern(request) : "none")
+                            .register(registry)
+                            .record(elapsedBorrowedMillis, TimeUnit.MILLISECONDS);
+                }
+
+                @Override
+                public void recordConnectionTimeout() {
+                    hikariTracker.recordConnectionTimeout();
+                }
+
+                @Override
+                public void close() {
+                    hikariTracker.close();
+                }
+            };
+        }
+
+        private static HttpServletRequest currentRequest() {
+            return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                    ? attributes.getRequest()
+                    : null;
+        }
+
+        // The matched pattern, as in http.server.requests, so ids do not explode the tag's cardinality
+        private static String uriPattern(HttpServletRequest request) {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            return pattern != null ? pattern.toString() : "UNKNOWN";
+        }
+    }
+}
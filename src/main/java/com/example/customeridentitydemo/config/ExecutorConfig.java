@@ -0,0 +1,70 @@
+package com.example.customeridentitydemo.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Bounded executor for order-service lookups that run alongside the customer's database reads.
+     * Uses virtual threads when the virtual-thread profile is active; the pool and queue bounds apply either way,
+     * so a slow order service cannot accumulate unbounded waiting calls.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService orderLookupExecutor(@Value("${order-service.lookup.pool-size:32}") int poolSize,
+                                               @Value("${order-service.lookup.queue-capacity:256}") int queueCapacity,
+                                               @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                               MeterRegistry meterRegistry) {
+        return boundedExecutor("order-lookup", poolSize, queueCapacity, virtualThreads, meterRegistry);
+    }
+
+    /**
+     * Bounded executor for background refreshes of cached order lists (ResilientOrderServiceClient). Kept apart from
+     * orderLookupExecutor so refreshes never take the slots of lookups a request waits for; a refresh it rejects is
+     * skipped and the cached list served until a later read retries.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService orderRefreshExecutor(@Value("${order-service.cache.refresh-pool-size:4}") int poolSize,
+                                                @Value("${order-service.cache.refresh-queue-capacity:64}") int queueCapacity,
+                                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                                MeterRegistry meterRegistry) {
+        return boundedExecutor("order-refresh", poolSize, queueCapacity, virtualThreads, meterRegistry);
+    }
+
+    // Threads are named <name>-N; the executor metrics are named after <name> with dots for dashes
+    private static ExecutorService boundedExecutor(String name, int poolSize, int queueCapacity, boolean virtualThreads,
+                                                   MeterRegistry meterRegistry) {
+        ThreadFactory threadFactory = virtualThreads
+                ? Thread.ofVirtual().name(name + "-", 1).factory()
+                : Thread.ofPlatform().name(name + "-", 1).daemon().factory();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        new ExecutorServiceMetrics(executor, name.replace('-', '.'), Tags.empty()).bindTo(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * Runs backfills (BackfillService) one at a time, in the background; further started jobs wait their turn.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService backfillExecutor() {
+        return Executors.newSingleThreadExecutor(Thread.ofPlatform().name("backfill-", 1).daemon().factory());
+    }
+}
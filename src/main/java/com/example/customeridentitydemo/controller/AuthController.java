@@ -3,6 +3,7 @@ package com.example.customeridentitydemo.controller;
 import com.example.customeridentitydemo.dto.LoginRequestDTO;
 import com.example.customeridentitydemo.dto.LoginResponseDTO;
 import com.example.customeridentitydemo.security.JwtUtil;
+import com.example.customeridentitydemo.security.LoginVerifier;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -11,9 +12,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -26,7 +25,7 @@ import org.springframework.web.bind.annotation.*;
 public class AuthController {
 
     @Autowired
-    private AuthenticationManager authenticationManager;
+    private LoginVerifier loginVerifier;
 
     @Autowired
     private JwtUtil jwtUtil;
@@ -42,15 +41,15 @@ public class AuthController {
     @ApiResponse(responseCode = "200", description = "Authentication successful")
     @ApiResponse(responseCode = "401", description = "Invalid credentials")
     @ApiResponse(responseCode = "400", description = "Validation error")
+    @ApiResponse(responseCode = "503", description = "Too many concurrent logins, retry after the Retry-After delay")
     public ResponseEntity<LoginResponseDTO> login(@Valid @RequestBody LoginRequestDTO loginRequest) {
         try {
             log.debug("Authentication attempt for user: {}", loginRequest.getUsername());
             
-            Authentication authentication = authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(
-                            loginRequest.getUsername(),
-                            loginRequest.getPassword()
-                    )
+            // BCrypt runs on the bounded verification pool, not on this request thread
+            Authentication authentication = loginVerifier.authenticate(
+                    loginRequest.getUsername(),
+                    loginRequest.getPassword()
             );
 
             UserDetails userDetails = (UserDetails) authentication.getPrincipal();
@@ -0,0 +1,75 @@
+package com.example.customeridentitydemo.controller;
+
+import com.example.customeridentitydemo.dto.BackfillStatusDTO;
+import com.example.customeridentitydemo.service.BackfillService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/backfills")
+@Tag(name = "Backfills", description = "APIs for running chunked data backfills in the background")
+public class BackfillController {
+
+    @Autowired
+    private BackfillService backfillService;
+
+    @GetMapping
+    @Operation(summary = "List backfills", description = "Progress of every backfill that has been started")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved backfill progress"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - JWT token required"),
+        @ApiResponse(responseCode = "403", description = "Forbidden - Invalid JWT token")
+    })
+    public List<BackfillStatusDTO> getBackfills() {
+        return backfillService.getBackfillJobs().stream().map(BackfillStatusDTO::from).toList();
+    }
+
+    @GetMapping("/{name}")
+    @Operation(summary = "Get backfill progress", description = "Status and checkpoint of a backfill")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved backfill progress"),
+        @ApiResponse(responseCode = "404", description = "Unknown backfill or backfill never started"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - JWT token required"),
+        @ApiResponse(responseCode = "403", description = "Forbidden - Invalid JWT token")
+    })
+    public BackfillStatusDTO getBackfill(
+            @Parameter(description = "Backfill name, e.g. customer-timestamps", required = true) @PathVariable String name) {
+        return BackfillStatusDTO.from(backfillService.getBackfillJob(name));
+    }
+
+    @PostMapping("/{name}")
+    @Operation(summary = "Start or resume a backfill", description = "Runs the backfill in the background. A paused, failed or interrupted backfill resumes from its checkpoint; a completed one starts over")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Backfill running"),
+        @ApiResponse(responseCode = "404", description = "Unknown backfill"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - JWT token required"),
+        @ApiResponse(responseCode = "403", description = "Forbidden - Invalid JWT token")
+    })
+    public ResponseEntity<BackfillStatusDTO> startBackfill(
+            @Parameter(description = "Backfill name, e.g. customer-timestamps", required = true) @PathVariable String name) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(BackfillStatusDTO.from(backfillService.startBackfill(name)));
+    }
+
+    @PostMapping("/{name}/pause")
+    @Operation(summary = "Pause a backfill", description = "Stops the backfill after its current chunk")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Backfill paused"),
+        @ApiResponse(responseCode = "400", description = "Backfill is not running"),
+        @ApiResponse(responseCode = "404", description = "Unknown backfill"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - JWT token required"),
+        @ApiResponse(responseCode = "403", description = "Forbidden - Invalid JWT token")
+    })
+    public BackfillStatusDTO pauseBackfill(
+            @Parameter(description = "Backfill name, e.g. customer-timestamps", required = true) @PathVariable String name) {
+        return BackfillStatusDTO.from(backfillService.pauseBackfill(name));
+    }
+}
@@ -1,8 +1,16 @@
 package com.example.customeridentitydemo.controller;
 
+import com.example.customeridentitydemo.dto.BatchCreateResponseDTO;
+import com.example.customeridentitydemo.dto.CustomerImportResponseDTO;
+import com.example.customeridentitydemo.dto.CustomerPageResponseDTO;
 import com.example.customeridentitydemo.dto.CustomerRequestDTO;
 import com.example.customeridentitydemo.dto.CustomerResponseDTO;
+import com.example.customeridentitydemo.model.CustomerStatus;
+import com.example.customeridentitydemo.repository.CustomerFilter;
+import com.example.customeridentitydemo.service.CustomerETags;
+import com.example.customeridentitydemo.service.CustomerImportService;
 import com.example.customeridentitydemo.service.CustomerService;
+import com.example.customeridentitydemo.service.CustomerView;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -10,10 +18,17 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -24,15 +39,57 @@ public class CustomerController {
     @Autowired
     private CustomerService customerService;
 
+    @Autowired
+    private CustomerImportService customerImportService;
+
     @GetMapping
-    @Operation(summary = "Get all customers", description = "Retrieve a list of all customers")
+    @Operation(summary = "Get all customers", description = "Retrieve a page of customers ordered by ID (by creation or update time, then ID, when filtered by it), using cursor-based pagination; status and created/updated time filters narrow the list, fields and expand limit each customer to the parts needed")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved a page of customers"),
+        @ApiResponse(responseCode = "400", description = "Invalid pagination cursor, filter, field or expansion"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - JWT token required"),
+        @ApiResponse(responseCode = "403", description = "Forbidden - Invalid JWT token")
+    })
+    public CustomerPageResponseDTO getAllCustomers(
+            @Parameter(description = "Maximum number of customers to return (1-500)") @RequestParam(defaultValue = "50") int limit,
+            @Parameter(description = "Opaque cursor taken from the 'next' field of the previous page") @RequestParam(required = false) String after,
+            @Parameter(description = "Comma-separated fields to return, e.g. firstName,lastName,email; id and updatedAt are always included") @RequestParam(required = false) String fields,
+            @Parameter(description = "Comma-separated parts to include: addresses") @RequestParam(required = false) String expand,
+            @Parameter(description = "Only customers with this status") @RequestParam(required = false) CustomerStatus status,
+            @Parameter(description = "Only customers created at or after this time, e.g. 2024-06-03T00:00:00") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+            @Parameter(description = "Only customers created before this time") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+            @Parameter(description = "Only customers updated at or after this time") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedSince) {
+        return customerService.getAllCustomers(after, limit, CustomerView.parse(fields, expand),
+                new CustomerFilter(status, createdFrom, createdTo, updatedSince));
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Search customers", description = "Find customers by name or email: prefix matches first, then fuzzy matches ranked by similarity. Only the best 200 matches can be paged through")
     @ApiResponses(value = {
-        @ApiResponse(responseCode = "200", description = "Successfully retrieved all customers"),
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved a page of matching customers"),
+        @ApiResponse(responseCode = "400", description = "Query shorter than 2 characters or invalid pagination cursor"),
         @ApiResponse(responseCode = "401", description = "Unauthorized - JWT token required"),
         @ApiResponse(responseCode = "403", description = "Forbidden - Invalid JWT token")
     })
-    public List<CustomerResponseDTO> getAllCustomers() {
-        return customerService.getAllCustomers();
+    public CustomerPageResponseDTO searchCustomers(
+            @Parameter(description = "Name or email to search for, at least 2 characters") @RequestParam(required = false) String q,
+            @Parameter(description = "Maximum number of customers to return (1-500)") @RequestParam(defaultValue = "20") int limit,
+            @Parameter(description = "Opaque cursor taken from the 'next' field of the previous page") @RequestParam(required = false) String after) {
+        return customerService.searchCustomers(q, after, limit);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Export all customers", description = "Stream every customer as newline-delimited JSON, one customer per line")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Export streamed successfully"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - JWT token required"),
+        @ApiResponse(responseCode = "403", description = "Forbidden - Invalid JWT token")
+    })
+    public ResponseEntity<StreamingResponseBody> exportCustomers() {
+        StreamingResponseBody body = outputStream -> customerService.exportCustomers(outputStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @PostMapping
@@ -46,21 +103,65 @@ public class CustomerController {
     })
     public ResponseEntity<CustomerResponseDTO> createCustomer(@Valid @RequestBody CustomerRequestDTO customerRequestDTO) {
         CustomerResponseDTO createdCustomer = customerService.createCustomer(customerRequestDTO);
-        return new ResponseEntity<>(createdCustomer, HttpStatus.CREATED);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .eTag(CustomerETags.of(createdCustomer.getId(), createdCustomer.getUpdatedAt()))
+                .body(createdCustomer);
+    }
+
+    @PostMapping("/batch")
+    @Operation(summary = "Create customers in bulk", description = "Create up to 10,000 customers in one request; the response reports success or failure per item")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Batch processed - see per-item results"),
+        @ApiResponse(responseCode = "400", description = "Empty or oversized batch"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - JWT token required"),
+        @ApiResponse(responseCode = "403", description = "Forbidden - Invalid JWT token")
+    })
+    public ResponseEntity<BatchCreateResponseDTO> createCustomers(@RequestBody List<CustomerRequestDTO> customerRequestDTOs) {
+        return ResponseEntity.ok(customerService.createCustomers(customerRequestDTOs));
+    }
+
+    // The raw body stream is handed to the import, so the file is never read into memory
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/gzip"})
+    @Operation(summary = "Import customers from CSV", description = "Stream a CSV file (optionally gzip-compressed) with the header first_name,last_name,email,ssn,phone,street,city,state,zip_code,address_type. Customers are inserted or updated by email, the last row per email winning; addresses are added unless the customer already has them. Invalid rows are rejected and reported")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "File imported - see counts and rejected rows"),
+        @ApiResponse(responseCode = "400", description = "Malformed CSV, unexpected header or invalid gzip"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - JWT token required"),
+        @ApiResponse(responseCode = "403", description = "Forbidden - Invalid JWT token")
+    })
+    public ResponseEntity<CustomerImportResponseDTO> importCustomers(InputStream body) {
+        return ResponseEntity.ok(customerImportService.importCustomers(body));
     }
 
     @GetMapping("/{id}")
-    @Operation(summary = "Get customer by ID", description = "Retrieve a specific customer by their ID")
+    @Operation(summary = "Get customer by ID", description = "Retrieve a specific customer by their ID; send the ETag back in If-None-Match to skip unchanged bodies. With fields or expand only the requested parts are read and returned, under a weak ETag")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Customer found and returned successfully"),
+        @ApiResponse(responseCode = "304", description = "Customer unchanged since the ETag in If-None-Match"),
+        @ApiResponse(responseCode = "400", description = "Unknown field or expansion"),
         @ApiResponse(responseCode = "401", description = "Unauthorized - JWT token required"),
         @ApiResponse(responseCode = "403", description = "Forbidden - Invalid JWT token"),
         @ApiResponse(responseCode = "404", description = "Customer not found")
     })
     public ResponseEntity<CustomerResponseDTO> getCustomerById(
-            @Parameter(description = "Customer ID", required = true) @PathVariable Long id) {
-        CustomerResponseDTO customerResponseDTO = customerService.getCustomerById(id);
-        return ResponseEntity.ok(customerResponseDTO);
+            @Parameter(description = "Customer ID", required = true) @PathVariable Long id,
+            @Parameter(description = "ETag of a previously fetched copy") @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @Parameter(description = "Comma-separated fields to return, e.g. firstName,email; id and updatedAt are always included") @RequestParam(required = false) String fields,
+            @Parameter(description = "Comma-separated parts to include: addresses, orders") @RequestParam(required = false) String expand) {
+        CustomerView view = CustomerView.parse(fields, expand);
+        // Clients may keep the body but must revalidate it on every use
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+        if (ifNoneMatch != null) {
+            String etag = customerService.getCustomerETag(id);
+            if (CustomerETags.matchesWeakly(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(viewETag(etag, view)).cacheControl(cacheControl).build();
+            }
+        }
+        CustomerResponseDTO customerResponseDTO = customerService.getCustomerById(id, view);
+        return ResponseEntity.ok()
+                .eTag(viewETag(CustomerETags.of(customerResponseDTO.getId(), customerResponseDTO.getUpdatedAt()), view))
+                .cacheControl(cacheControl)
+                .body(customerResponseDTO);
     }
 
     @PutMapping("/{id}")
@@ -71,13 +172,17 @@ public class CustomerController {
         @ApiResponse(responseCode = "401", description = "Unauthorized - JWT token required"),
         @ApiResponse(responseCode = "403", description = "Forbidden - Invalid JWT token"),
         @ApiResponse(responseCode = "404", description = "Customer not found"),
+        @ApiResponse(responseCode = "412", description = "Customer changed since the ETag in If-Match"),
         @ApiResponse(responseCode = "422", description = "Unprocessable Entity - business validation errors")
     })
     public ResponseEntity<CustomerResponseDTO> updateCustomer(
             @Parameter(description = "Customer ID", required = true) @PathVariable Long id, 
+            @Parameter(description = "Only update if the customer still has this ETag") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Valid @RequestBody CustomerRequestDTO customerRequestDTO) {
-        CustomerResponseDTO updatedCustomer = customerService.updateCustomer(id, customerRequestDTO);
-        return ResponseEntity.ok(updatedCustomer);
+        CustomerResponseDTO updatedCustomer = customerService.updateCustomer(id, customerRequestDTO, ifMatch);
+        return ResponseEntity.ok()
+                .eTag(CustomerETags.of(updatedCustomer.getId(), updatedCustomer.getUpdatedAt()))
+                .body(updatedCustomer);
     }
 
     @DeleteMapping("/{id}")
@@ -86,35 +191,18 @@ public class CustomerController {
         @ApiResponse(responseCode = "204", description = "Customer deleted successfully"),
         @ApiResponse(responseCode = "401", description = "Unauthorized - JWT token required"),
         @ApiResponse(responseCode = "403", description = "Forbidden - Invalid JWT token"),
-        @ApiResponse(responseCode = "404", description = "Customer not found")
+        @ApiResponse(responseCode = "404", description = "Customer not found"),
+        @ApiResponse(responseCode = "412", description = "Customer changed since the ETag in If-Match")
     })
     public ResponseEntity<Void> deleteCustomer(
-            @Parameter(description = "Customer ID", required = true) @PathVariable Long id) {
-        customerService.deleteCustomer(id);
+            @Parameter(description = "Customer ID", required = true) @PathVariable Long id,
+            @Parameter(description = "Only delete if the customer still has this ETag") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        customerService.deleteCustomer(id, ifMatch);
         return ResponseEntity.noContent().build();
     }
 
-    @GetMapping("/populate-timestamps")
-    @Operation(summary = "Populate timestamps", description = "Utility endpoint to populate timestamps for existing customers (development only)")
-    @ApiResponses(value = {
-        @ApiResponse(responseCode = "200", description = "Timestamps populated successfully"),
-        @ApiResponse(responseCode = "401", description = "Unauthorized - JWT token required"),
-        @ApiResponse(responseCode = "403", description = "Forbidden - Invalid JWT token")
-    })
-    public ResponseEntity<String> populateTimestamps() {
-        customerService.populateTimestampsForExistingCustomers();
-        return ResponseEntity.ok("Timestamps populated for existing customers.");
-    }
-
-    @GetMapping("/generate-dummy-data")
-    @Operation(summary = "Generate dummy data", description = "Utility endpoint to generate sample customer data (development only)")
-    @ApiResponses(value = {
-        @ApiResponse(responseCode = "200", description = "Dummy data generated successfully"),
-        @ApiResponse(responseCode = "401", description = "Unauthorized - JWT token required"),
-        @ApiResponse(responseCode = "403", description = "Forbidden - Invalid JWT token")
-    })
-    public ResponseEntity<String> generateDummyData() {
-        customerService.generateDummyData();
-        return ResponseEntity.ok("Dummy data generated successfully.");
+    // Partial views carry the weak form of the customer's ETag
+    private static String viewETag(String etag, CustomerView view) {
+        return view == CustomerView.FULL ? etag : CustomerETags.weak(etag);
     }
-}
\ No newline at end of file
+}
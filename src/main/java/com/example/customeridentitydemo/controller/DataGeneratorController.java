@@ -0,0 +1,37 @@
+package com.example.customeridentitydemo.controller;
+
+import com.example.customeridentitydemo.dto.DataGenerationResponseDTO;
+import com.example.customeridentitydemo.service.SyntheticDataGenerator;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.*;
+
+// Only in the dev profile: bulk loads bypass validation and the customer cache
+@RestController
+@Profile("dev")
+@RequestMapping("/api/v1/dev")
+@Tag(name = "Development Utilities", description = "APIs for loading synthetic data (dev profile only)")
+public class DataGeneratorController {
+
+    @Autowired
+    private SyntheticDataGenerator syntheticDataGenerator;
+
+    @PostMapping("/generate-data")
+    @Operation(summary = "Generate synthetic data", description = "Load seeded synthetic customers and addresses through COPY; the same seed always yields the same dataset")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Data generated successfully"),
+        @ApiResponse(responseCode = "400", description = "Customer count out of range"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - JWT token required"),
+        @ApiResponse(responseCode = "403", description = "Forbidden - Invalid JWT token")
+    })
+    public DataGenerationResponseDTO generateData(
+            @Parameter(description = "Number of customers to generate") @RequestParam(defaultValue = "1000") long customers,
+            @Parameter(description = "Seed of the dataset") @RequestParam(defaultValue = "42") long seed) {
+        return syntheticDataGenerator.generate(customers, seed);
+    }
+}
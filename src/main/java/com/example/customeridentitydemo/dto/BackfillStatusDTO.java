@@ -0,0 +1,41 @@
+package com.example.customeridentitydemo.dto;
+
+import com.example.customeridentitydemo.model.BackfillJob;
+import com.example.customeridentitydemo.model.BackfillStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BackfillStatusDTO {
+
+    private String name;
+    private BackfillStatus status;
+    private long firstId;
+    // Checkpoint: ids below nextId are done
+    private long nextId;
+    private long maxId;
+    private long rowsUpdated;
+    private long chunksDone;
+    // Share of the id range done, 0-100
+    private double percentComplete;
+    private String lastError;
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime finishedAt;
+
+    public static BackfillStatusDTO from(BackfillJob job) {
+        long total = job.getMaxId() - job.getFirstId() + 1;
+        long done = Math.min(job.getNextId(), job.getMaxId() + 1) - job.getFirstId();
+        double percent = total > 0 ? Math.round(done * 1000.0 / total) / 10.0 : 100.0;
+        return new BackfillStatusDTO(job.getName(), job.getStatus(), job.getFirstId(), job.getNextId(),
+                job.getMaxId(), job.getRowsUpdated(), job.getChunksDone(), percent, job.getLastError(),
+                job.getStartedAt(), job.getUpdatedAt(), job.getFinishedAt());
+    }
+}
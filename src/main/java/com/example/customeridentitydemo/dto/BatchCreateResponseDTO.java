@@ -0,0 +1,19 @@
+package com.example.customeridentitydemo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCreateResponseDTO {
+    private int total;
+    private int succeeded;
+    private int failed;
+    private List<BatchItemResultDTO> results;
+}
@@ -0,0 +1,34 @@
+package com.example.customeridentitydemo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResultDTO {
+
+    public enum Status {
+        CREATED,
+        FAILED
+    }
+
+    // Position of the item in the request array
+    private int index;
+    private Status status;
+    private Long id;
+    private List<String> errors;
+
+    public static BatchItemResultDTO created(int index, Long id) {
+        return new BatchItemResultDTO(index, Status.CREATED, id, List.of());
+    }
+
+    public static BatchItemResultDTO failed(int index, List<String> errors) {
+        return new BatchItemResultDTO(index, Status.FAILED, null, errors);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.customeridentitydemo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerImportResponseDTO {
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RejectedRow {
+        // Data row in the file, counted from 1 after the header
+        private long row;
+        private String reason;
+    }
+
+    private long rows;
+    private long accepted;
+    private long rejected;
+    private long customersInserted;
+    private long customersUpdated;
+    private long addressesInserted;
+    // The first rejected rows, up to customer.import.max-reported-rejects; values are never echoed
+    private List<RejectedRow> rejects;
+    private long elapsedMillis;
+}
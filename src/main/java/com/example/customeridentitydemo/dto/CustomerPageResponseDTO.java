@@ -0,0 +1,22 @@
+package com.example.customeridentitydemo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerPageResponseDTO {
+
+    private List<CustomerResponseDTO> content;
+
+    // Opaque cursor for the following page, null when this is the last page
+    private String next;
+
+    private int limit;
+}
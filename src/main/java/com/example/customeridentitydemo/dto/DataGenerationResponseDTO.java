@@ -0,0 +1,24 @@
+package com.example.customeridentitydemo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class DataGenerationResponseDTO {
+
+    private long seed;
+    private long customers;
+    private long deletedCustomers;
+    private long addresses;
+
+    // Ids of the generated customers are firstId to lastId
+    private long firstId;
+    private long lastId;
+
+    private long elapsedMillis;
+}
@@ -0,0 +1,16 @@
+package com.example.customeridentitydemo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.NoArgsConstructor;
+
+// A partial view (fields / expand): the parts left out are null and omitted. Full reads keep their null fields.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+public class PartialCustomerResponseDTO extends CustomerResponseDTO {
+
+    public PartialCustomerResponseDTO(CustomerResponseDTO customer) {
+        super(customer.getId(), customer.getFirstName(), customer.getLastName(), customer.getEmail(),
+                customer.getSsn(), customer.getPhone(), customer.getStatus(), customer.getCreatedAt(),
+                customer.getUpdatedAt(), customer.getAddresses(), customer.getOrders());
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.customeridentitydemo.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+@Getter
+public class ServiceUnavailableException extends RuntimeException {
+
+    // Seconds the client should wait before retrying, sent back as Retry-After
+    private final long retryAfterSeconds;
+
+    public ServiceUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
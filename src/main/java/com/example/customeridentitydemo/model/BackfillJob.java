@@ -0,0 +1,29 @@
+package com.example.customeridentitydemo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Checkpoint of a backfill over ids {@code firstId} to {@code maxId}: ids below {@code nextId} are done.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BackfillJob {
+    private String name;
+    private BackfillStatus status;
+    private long firstId;
+    private long nextId;
+    private long maxId;
+    private long rowsUpdated;
+    private long chunksDone;
+    private String lastError;
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,8 @@
+package com.example.customeridentitydemo.model;
+
+public enum BackfillStatus {
+    RUNNING,
+    PAUSED,
+    COMPLETED,
+    FAILED,
+}
@@ -0,0 +1,30 @@
+package com.example.customeridentitydemo.repository;
+
+import com.example.customeridentitydemo.model.CustomerStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Optional conditions for listing live customers; null components do not filter.
+ * {@code createdFrom} and {@code updatedSince} are inclusive, {@code createdTo} is exclusive.
+ */
+public record CustomerFilter(CustomerStatus status, LocalDateTime createdFrom, LocalDateTime createdTo,
+                             LocalDateTime updatedSince) {
+
+    public static final CustomerFilter NONE = new CustomerFilter(null, null, null, null);
+
+    public boolean isEmpty() {
+        return status == null && createdFrom == null && createdTo == null && updatedSince == null;
+    }
+
+    /**
+     * The column a listing with this filter is ordered by, then by id: created_at for a created range, else
+     * updated_at for updatedSince, else id alone. Ordering by the range's own column lets every page seek to its
+     * cursor in the matching index instead of reading and sorting all remaining matches.
+     */
+    public String sortColumn() {
+        if (createdFrom != null || createdTo != null) return "created_at";
+        if (updatedSince != null) return "updated_at";
+        return "id";
+    }
+}
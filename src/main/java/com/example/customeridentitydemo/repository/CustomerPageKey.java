@@ -0,0 +1,10 @@
+package com.example.customeridentitydemo.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * The last customer of a listing page, which the next page starts after: its id and, when the listing is ordered by
+ * a timestamp column ({@link CustomerFilter#sortColumn()}), its value of that column, otherwise null.
+ */
+public record CustomerPageKey(LocalDateTime time, long id) {
+}
@@ -1,12 +1,19 @@
 package com.example.customeridentitydemo.repository;
 
 import com.example.customeridentitydemo.model.Address;
+import com.example.customeridentitydemo.model.AddressType;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,10 +21,15 @@ import java.util.Map;
 @Repository
 public class JdbcAddressRepository {
 
+    // Upper bound of customer ids bound into a single ANY(array) lookup
+    static final int ID_BATCH_SIZE = 1000;
+
     private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final JdbcStatementMetrics statementMetrics;
 
-    public JdbcAddressRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+    public JdbcAddressRepository(NamedParameterJdbcTemplate jdbcTemplate, JdbcStatementMetrics statementMetrics) {
         this.jdbcTemplate = jdbcTemplate;
+        this.statementMetrics = statementMetrics;
     }
 
     private static final class AddressRowMapper implements RowMapper<Address> {
@@ -29,7 +41,7 @@ public class JdbcAddressRepository {
             address.setCity(rs.getString("city"));
             address.setState(rs.getString("state"));
             address.setZipCode(rs.getString("zip_code"));
-            // address.setAddressType(AddressType.valueOf(rs.getString("address_type")));
+            address.setAddressType(AddressType.valueOf(rs.getString("address_type")));
             return address;
         }
     }
@@ -38,10 +50,49 @@ public class JdbcAddressRepository {
         var sql = "SELECT * FROM addresses WHERE customer_id = :customer_id";
         var params = new HashMap<String, Object>();
         params.put("customer_id", customerId);
-        return jdbcTemplate.query(sql, params, new AddressRowMapper());
+        return statementMetrics.time("address.findByCustomerId", params,
+                () -> jdbcTemplate.query(sql, params, new AddressRowMapper()));
+    }
+
+    /**
+     * Loads the addresses of many customers at once, grouped by customer id. Ids are sent as a
+     * single array parameter per chunk, so a page of customers costs one round trip instead of one per customer.
+     */
+    public Map<Long, List<Address>> findByCustomerIds(Collection<Long> customerIds) {
+        Map<Long, List<Address>> addressesByCustomerId = new HashMap<>();
+        if (customerIds == null || customerIds.isEmpty()) {
+            return addressesByCustomerId;
+        }
+
+        var sql = "SELECT * FROM addresses WHERE customer_id = ANY(:customer_ids) ORDER BY customer_id, id";
+        var rowMapper = new AddressRowMapper();
+        List<Long> ids = List.copyOf(customerIds);
+        for (int from = 0; from < ids.size(); from += ID_BATCH_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + ID_BATCH_SIZE, ids.size()));
+            var params = new HashMap<String, Object>();
+            params.put("customer_ids", chunk.toArray(new Long[0]));
+            statementMetrics.time("address.findByCustomerIds", params, () -> {
+                jdbcTemplate.query(sql, params, (RowCallbackHandler) rs -> addressesByCustomerId
+                        .computeIfAbsent(rs.getLong("customer_id"), key -> new ArrayList<>())
+                        .add(rowMapper.mapRow(rs, rs.getRow())));
+                return null;
+            });
+        }
+        return addressesByCustomerId;
     }
 
     public Address save(Address address) {
+        saveAll(List.of(address));
+        return address;
+    }
+
+    /**
+     * Inserts all addresses in one JDBC batch and assigns the generated ids back onto them (RETURNING id).
+     */
+    public List<Address> saveAll(List<Address> addresses) {
+        if (addresses.isEmpty()) {
+            return addresses;
+        }
         var sql = """
                 INSERT INTO addresses(
                     street, city, state, zip_code, address_type, customer_id
@@ -50,22 +101,74 @@ public class JdbcAddressRepository {
                     :street, :city, :state, :zip_code, :address_type, :customer_id
                 )
                 """;
+        var batchParams = new MapSqlParameterSource[addresses.size()];
+        for (int i = 0; i < addresses.size(); i++) {
+            Address address = addresses.get(i);
+            var params = new MapSqlParameterSource();
+            params.addValue("street", address.getStreet());
+            params.addValue("city", address.getCity());
+            params.addValue("state", address.getState());
+            params.addValue("zip_code", address.getZipCode());
+            params.addValue("address_type", address.getAddressType().toString());
+            params.addValue("customer_id", address.getCustomer().getId());
+            batchParams[i] = params;
+        }
+
+        var keyHolder = new GeneratedKeyHolder();
+        statementMetrics.time("address.saveAll", batchParams,
+                () -> jdbcTemplate.batchUpdate(sql, batchParams, keyHolder, new String[]{"id"}));
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < keys.size(); i++) {
+            addresses.get(i).setId(((Number) keys.get(i).get("id")).longValue());
+        }
+        return addresses;
+    }
+
+    /**
+     * Rewrites the contents of existing addresses, matched by id, in one JDBC batch.
+     */
+    public void updateAll(List<Address> addresses) {
+        if (addresses.isEmpty()) {
+            return;
+        }
+        var sql = """
+                UPDATE addresses
+                SET street = :street, city = :city, state = :state, zip_code = :zip_code,
+                    address_type = :address_type, updated_at = :updated_at
+                WHERE id = :id
+                """;
+        var now = new Timestamp(System.currentTimeMillis());
+        var batchParams = new MapSqlParameterSource[addresses.size()];
+        for (int i = 0; i < addresses.size(); i++) {
+            Address address = addresses.get(i);
+            var params = new MapSqlParameterSource();
+            params.addValue("street", address.getStreet());
+            params.addValue("city", address.getCity());
+            params.addValue("state", address.getState());
+            params.addValue("zip_code", address.getZipCode());
+            params.addValue("address_type", address.getAddressType().toString());
+            params.addValue("updated_at", now);
+            params.addValue("id", address.getId());
+            batchParams[i] = params;
+        }
+        statementMetrics.time("address.updateAll", batchParams, () -> jdbcTemplate.batchUpdate(sql, batchParams));
+    }
+
+    /**
+     * Deletes every address of the customer except {@code keepIds}, in a single statement.
+     */
+    public int deleteByCustomerIdExcept(Long customerId, Collection<Long> keepIds) {
+        var sql = "DELETE FROM addresses WHERE customer_id = :customer_id AND id <> ALL(:keep_ids)";
         var params = new HashMap<String, Object>();
-        params.put("street", address.getStreet());
-        params.put("city", address.getCity());
-        params.put("state", address.getState());
-        params.put("zip_code", address.getZipCode());
-        params.put("address_type", address.getAddressType().toString());
-        params.put("customer_id", address.getCustomer().getId());
-
-        jdbcTemplate.update(sql, params);
-        return address;
+        params.put("customer_id", customerId);
+        params.put("keep_ids", keepIds.toArray(new Long[0]));
+        return statementMetrics.time("address.deleteByCustomerIdExcept", params, () -> jdbcTemplate.update(sql, params));
     }
 
     public void deleteById(Long id) {
         var sql = "DELETE FROM addresses WHERE id = :id";
         var params = new HashMap<String, Object>();
         params.put("id", id);
-        jdbcTemplate.update(sql, params);
+        statementMetrics.time("address.deleteById", params, () -> jdbcTemplate.update(sql, params));
     }
 }
@@ -0,0 +1,172 @@
+package com.example.customeridentitydemo.repository;
+
+import com.example.customeridentitydemo.model.BackfillJob;
+import com.example.customeridentitydemo.model.BackfillStatus;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Backfill checkpoints (backfill_jobs) and the chunk statements of the backfills themselves.
+ */
+@Repository
+public class JdbcBackfillRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final JdbcStatementMetrics statementMetrics;
+
+    public JdbcBackfillRepository(NamedParameterJdbcTemplate jdbcTemplate, JdbcStatementMetrics statementMetrics) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.statementMetrics = statementMetrics;
+    }
+
+    /** Lowest and highest id of a table; {@code first > last} when the table is empty. */
+    public record IdRange(long first, long last) {
+    }
+
+    private static final class BackfillJobRowMapper implements RowMapper<BackfillJob> {
+        @Override
+        public BackfillJob mapRow(ResultSet rs, int rowNum) throws SQLException {
+            return new BackfillJob(
+                    rs.getString("name"),
+                    BackfillStatus.valueOf(rs.getString("status")),
+                    rs.getLong("first_id"),
+                    rs.getLong("next_id"),
+                    rs.getLong("max_id"),
+                    rs.getLong("rows_updated"),
+                    rs.getLong("chunks_done"),
+                    rs.getString("last_error"),
+                    toLocalDateTime(rs.getTimestamp("started_at")),
+                    toLocalDateTime(rs.getTimestamp("updated_at")),
+                    toLocalDateTime(rs.getTimestamp("finished_at")));
+        }
+
+        private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+            return timestamp != null ? timestamp.toLocalDateTime() : null;
+        }
+    }
+
+    public List<BackfillJob> findAll() {
+        return statementMetrics.time("backfill.findAll", Collections.emptyMap(),
+                () -> jdbcTemplate.query("SELECT * FROM backfill_jobs ORDER BY name", new BackfillJobRowMapper()));
+    }
+
+    public Optional<BackfillJob> findByName(String name) {
+        var params = new HashMap<String, Object>();
+        params.put("name", name);
+        return statementMetrics.time("backfill.findByName", params,
+                        () -> jdbcTemplate.query("SELECT * FROM backfill_jobs WHERE name = :name",
+                                params, new BackfillJobRowMapper()))
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Same as {@link #findByName(String)} but locks the checkpoint until the surrounding transaction ends, so
+     * concurrent runners of the same job - e.g. on two instances after a restart - take turns chunk by chunk.
+     */
+    public Optional<BackfillJob> findByNameForUpdate(String name) {
+        var params = new HashMap<String, Object>();
+        params.put("name", name);
+        return statementMetrics.time("backfill.findByNameForUpdate", params,
+                        () -> jdbcTemplate.query("SELECT * FROM backfill_jobs WHERE name = :name FOR UPDATE",
+                                params, new BackfillJobRowMapper()))
+                .stream()
+                .findFirst();
+    }
+
+    // The table name comes from a Backfill bean, never from a request
+    public IdRange findIdRange(String table) {
+        var sql = "SELECT COALESCE(min(id), 1) AS first_id, COALESCE(max(id), 0) AS last_id FROM " + table;
+        return statementMetrics.time("backfill.findIdRange", Collections.emptyMap(),
+                () -> jdbcTemplate.queryForObject(sql, Collections.emptyMap(),
+                        (rs, rowNum) -> new IdRange(rs.getLong("first_id"), rs.getLong("last_id"))));
+    }
+
+    /** Creates the checkpoint or resets it to a fresh RUNNING job over ids {@code firstId} to {@code maxId}. */
+    public void start(String name, long firstId, long maxId) {
+        var sql = """
+                INSERT INTO backfill_jobs (name, status, first_id, next_id, max_id, started_at, updated_at)
+                VALUES (:name, 'RUNNING', :first_id, :first_id, :max_id, :now, :now)
+                ON CONFLICT (name) DO UPDATE
+                SET status = 'RUNNING', first_id = :first_id, next_id = :first_id, max_id = :max_id,
+                    rows_updated = 0, chunks_done = 0, last_error = NULL,
+                    started_at = :now, updated_at = :now, finished_at = NULL
+                """;
+        var params = new HashMap<String, Object>();
+        params.put("name", name);
+        params.put("first_id", firstId);
+        params.put("max_id", maxId);
+        params.put("now", new Timestamp(System.currentTimeMillis()));
+        statementMetrics.time("backfill.start", params, () -> jdbcTemplate.update(sql, params));
+    }
+
+    /** Sets a PAUSED or FAILED job RUNNING again from its checkpoint, extending it to ids up to {@code maxId}. */
+    public void resume(String name, long maxId) {
+        var sql = """
+                UPDATE backfill_jobs
+                SET status = 'RUNNING', max_id = GREATEST(max_id, :max_id), last_error = NULL, updated_at = :now
+                WHERE name = :name
+                """;
+        var params = new HashMap<String, Object>();
+        params.put("name", name);
+        params.put("max_id", maxId);
+        params.put("now", new Timestamp(System.currentTimeMillis()));
+        statementMetrics.time("backfill.resume", params, () -> jdbcTemplate.update(sql, params));
+    }
+
+    /** Runs one chunk of a backfill's UPDATE over ids {@code fromId} to {@code toId}; returns the ids it updated. */
+    public List<Long> applyChunk(String name, String chunkSql, long fromId, long toId) {
+        var params = new HashMap<String, Object>();
+        params.put("from_id", fromId);
+        params.put("to_id", toId);
+        return statementMetrics.time("backfill.chunk." + name, params,
+                () -> jdbcTemplate.queryForList(chunkSql, params, Long.class));
+    }
+
+    /** Records a finished chunk; ids below {@code nextId} are then done. */
+    public void saveProgress(String name, long nextId, int rowsUpdated) {
+        var sql = """
+                UPDATE backfill_jobs
+                SET next_id = :next_id, rows_updated = rows_updated + :rows_updated, chunks_done = chunks_done + 1,
+                    updated_at = :now
+                WHERE name = :name
+                """;
+        var params = new HashMap<String, Object>();
+        params.put("name", name);
+        params.put("next_id", nextId);
+        params.put("rows_updated", rowsUpdated);
+        params.put("now", new Timestamp(System.currentTimeMillis()));
+        statementMetrics.time("backfill.saveProgress", params, () -> jdbcTemplate.update(sql, params));
+    }
+
+    /**
+     * Moves a job to {@code status}, only if it is currently in {@code from}; COMPLETED and FAILED also set
+     * finished_at. Returns whether the job was updated.
+     */
+    public boolean updateStatus(String name, BackfillStatus from, BackfillStatus status, String lastError) {
+        var sql = """
+                UPDATE backfill_jobs
+                SET status = :status, last_error = :last_error, updated_at = :now, finished_at = :finished_at
+                WHERE name = :name AND status = :from
+                """;
+        var params = new HashMap<String, Object>();
+        params.put("name", name);
+        params.put("from", from.name());
+        params.put("status", status.name());
+        params.put("last_error", lastError);
+        var now = new Timestamp(System.currentTimeMillis());
+        params.put("now", now);
+        params.put("finished_at", status == BackfillStatus.COMPLETED || status == BackfillStatus.FAILED ? now : null);
+        return statementMetrics.time("backfill.updateStatus", params, () -> jdbcTemplate.update(sql, params)) > 0;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.customeridentitydemo.repository;
+
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * Bulk loads through the Postgres COPY protocol. COPY runs on the connection of the surrounding transaction, so
+ * callers decide how many rows commit together.
+ */
+@Repository
+public class JdbcBulkLoadRepository {
+
+    // Characters or bytes handed to the driver per COPY message
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final JdbcStatementMetrics statementMetrics;
+
+    public JdbcBulkLoadRepository(NamedParameterJdbcTemplate jdbcTemplate, JdbcStatementMetrics statementMetrics) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.statementMetrics = statementMetrics;
+    }
+
+    /**
+     * Reserves {@code count} consecutive customer ids and returns the first; must run in a transaction. The table
+     * lock only waits for inserts in flight, which have drawn their ids already; later inserts draw ids above the
+     * reserved block.
+     */
+    public long reserveCustomerIds(long count) {
+        var sql = """
+                SELECT setval(pg_get_serial_sequence('customers', 'id'), first_id + :count - 1) - :count + 1
+                FROM (SELECT GREATEST(nextval(pg_get_serial_sequence('customers', 'id')),
+                                      (SELECT COALESCE(max(id), 0) + 1 FROM customers)) AS first_id) AS reserved
+                """;
+        var params = new HashMap<String, Object>();
+        params.put("count", count);
+        return statementMetrics.time("bulk.reserveCustomerIds", params, () -> {
+            jdbcTemplate.getJdbcTemplate().execute("LOCK TABLE customers IN SHARE ROW EXCLUSIVE MODE");
+            return jdbcTemplate.queryForObject(sql, params, Long.class);
+        });
+    }
+
+    /**
+     * Streams {@code rows} into {@code COPY ... FROM STDIN} without holding them in memory; returns the rows
+     * copied. {@code statement} names the COPY in the statement metrics.
+     */
+    public long copyIn(String statement, String copySql, Reader rows) {
+        return statementMetrics.time("bulk.copy." + statement, Collections.emptyMap(), () ->
+                jdbcTemplate.getJdbcTemplate().execute((ConnectionCallback<Long>) connection -> {
+                    try {
+                        return connection.unwrap(PGConnection.class).getCopyAPI()
+                                .copyIn(copySql, rows, COPY_BUFFER_SIZE);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+    }
+
+    /** Same as {@link #copyIn(String, String, Reader)} for data already encoded as UTF-8. */
+    public long copyIn(String statement, String copySql, InputStream data) {
+        return statementMetrics.time("bulk.copy." + statement, Collections.emptyMap(), () ->
+                jdbcTemplate.getJdbcTemplate().execute((ConnectionCallback<Long>) connection -> {
+                    try {
+                        return connection.unwrap(PGConnection.class).getCopyAPI()
+                                .copyIn(copySql, data, COPY_BUFFER_SIZE);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+    }
+
+    // Table names come from the callers, never from a request
+    public void analyze(String table) {
+        statementMetrics.time("bulk.analyze", Collections.emptyMap(), () -> {
+            jdbcTemplate.getJdbcTemplate().execute("ANALYZE " + table);
+            return null;
+        });
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.customeridentitydemo.repository;
+
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Set-based statements of the CSV customer import. Each import copies the file into its own unlogged staging table
+ * (one text column per CSV column, so any value loads), sanitizes and validates it there, and merges the accepted
+ * rows into customers and addresses. Staging tables are named {@code customer_import_<id>}; one left behind by a
+ * killed import can be dropped.
+ */
+@Repository
+public class JdbcCustomerImportRepository {
+
+    /** CSV columns, in the order the header must list them. */
+    public static final List<String> CSV_COLUMNS = List.of(
+            "first_name", "last_name", "email", "ssn", "phone", "street", "city", "state", "zip_code", "address_type");
+
+    // Characters String.trim strips, every one up to U+0020, as a Postgres escape string literal
+    private static final String TRIMMED_CHARACTERS = IntStream.rangeClosed(0x01, 0x20)
+            .mapToObj(c -> "\\x%02x".formatted(c))
+            .collect(Collectors.joining("", "E'", "'"));
+
+    // Mirrors CustomerService.sanitizeInput for values that arrive HTML-escaped: trimmed like String.trim, in one
+    // btrim per value. Blank values become NULL
+    private static final String SANITIZED = "NULLIF(btrim(%1$s, " + TRIMMED_CHARACTERS + "), '')";
+
+    // First failed check of a staged row, mirroring the messages of the CustomerRequestDTO validation; NULL if valid
+    private static final String FIELD_REJECT_REASON = """
+            COALESCE(CASE
+                WHEN first_name IS NULL THEN 'firstName: First name is required'
+                WHEN last_name IS NULL THEN 'lastName: Last name is required'
+                WHEN email IS NULL THEN 'email: Email is required'
+                WHEN email !~ '^[^@[:space:]]+@[^@[:space:]]+$' THEN 'email: Email should be valid'
+                WHEN ssn IS NULL THEN 'ssn: SSN is required'
+                WHEN GREATEST(length(first_name), length(last_name), length(email), length(ssn), length(phone),
+                              length(street), length(city), length(state)) > 255
+                    THEN 'Values must be at most 255 characters'
+                WHEN length(zip_code) > 10 THEN 'zipCode: Zip Code must be at most 10 characters'
+                WHEN address_type NOT IN ('BILLING', 'SHIPPING', 'HOME', 'WORK')
+                    THEN 'addressType: Address Type must be one of BILLING, SHIPPING, HOME, WORK'
+            END, CASE
+                -- The address columns are optional, but only all together
+                WHEN num_nonnulls(street, city, state, zip_code, address_type) IN (0, 5) THEN NULL
+                WHEN street IS NULL THEN 'street: Street is required'
+                WHEN city IS NULL THEN 'city: City is required'
+                WHEN state IS NULL THEN 'state: State is required'
+                WHEN zip_code IS NULL THEN 'zipCode: Zip Code is required'
+                ELSE 'addressType: Address Type is required'
+            END)
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final JdbcStatementMetrics statementMetrics;
+
+    public JdbcCustomerImportRepository(NamedParameterJdbcTemplate jdbcTemplate, JdbcStatementMetrics statementMetrics) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.statementMetrics = statementMetrics;
+    }
+
+    /** A merged customer and whether it was inserted rather than updated. */
+    public record MergedCustomer(long id, boolean inserted) {
+    }
+
+    /** A rejected row: {@code row} counts data rows from 1, not counting the header. */
+    public record RejectedRow(long row, String reason) {
+    }
+
+    /** Creates an empty staging table and returns its name. */
+    public String createStagingTable() {
+        String table = "customer_import_" + UUID.randomUUID().toString().replace("-", "");
+        var sql = "CREATE UNLOGGED TABLE " + table + " (row_num BIGINT GENERATED ALWAYS AS IDENTITY, "
+                + String.join(" TEXT, ", CSV_COLUMNS) + " TEXT, reject_reason TEXT)";
+        execute("import.createStagingTable", sql);
+        return table;
+    }
+
+    /**
+     * COPY statement loading CSV with a header that must name {@link #CSV_COLUMNS} in order. HEADER MATCH needs
+     * PostgreSQL 15 or later.
+     */
+    public String copySql(String table) {
+        return "COPY " + table + " (" + String.join(", ", CSV_COLUMNS) + ") FROM STDIN WITH (FORMAT csv, HEADER MATCH)";
+    }
+
+    /**
+     * Sanitizes every staged value, which the COPY received HTML-escaped already, and indexes the rows by number;
+     * runs once after the COPY, so the index is built in one pass rather than maintained row by row.
+     */
+    public void sanitize(String table) {
+        StringBuilder assignments = new StringBuilder();
+        for (String column : CSV_COLUMNS) {
+            if (!assignments.isEmpty()) assignments.append(", ");
+            String value = SANITIZED.formatted(column);
+            assignments.append(column).append(" = ").append(column.equals("address_type") ? "upper(" + value + ")" : value);
+        }
+        execute("import.sanitize", "UPDATE " + table + " SET " + assignments);
+        execute("import.indexStagingTable", "ALTER TABLE " + table + " ADD PRIMARY KEY (row_num)");
+        execute("import.analyzeStagingTable", "ANALYZE " + table);
+    }
+
+    /**
+     * Marks rows that cannot be merged with a reject reason: invalid fields, an SSN already used by an earlier row
+     * for another email or by another customer, and emails of deleted customers.
+     */
+    public void validate(String table) {
+        execute("import.validateFields", "UPDATE " + table + " SET reject_reason = " + FIELD_REJECT_REASON
+                + " WHERE " + FIELD_REJECT_REASON + " IS NOT NULL");
+        execute("import.validateSsnInFile", """
+                UPDATE %1$s s SET reject_reason = 'ssn: SSN appears more than once in the file'
+                FROM (SELECT row_num, email, first_value(email) OVER (PARTITION BY ssn ORDER BY row_num) AS first_email
+                      FROM %1$s WHERE reject_reason IS NULL) d
+                WHERE s.row_num = d.row_num AND d.email <> d.first_email
+                """.formatted(table));
+        execute("import.validateDeletedEmail", """
+                UPDATE %1$s s SET reject_reason = 'email: Customer with this email address is deleted'
+                FROM customers c
+                WHERE c.email = s.email AND c.deleted_at IS NOT NULL AND s.reject_reason IS NULL
+                """.formatted(table));
+        execute("import.validateSsnTaken", """
+                UPDATE %1$s s SET reject_reason = 'ssn: SSN already exists.'
+                FROM customers c
+                WHERE c.ssn = s.ssn AND c.email <> s.email AND s.reject_reason IS NULL
+                """.formatted(table));
+    }
+
+    /**
+     * Inserts or updates the customers of the accepted rows {@code fromRow} to {@code toRow} by email. When an email
+     * appears in several rows, the last one wins; customers whose values do not change are not touched, so their
+     * updated_at and ETag stay the same. updated_at of changed customers always moves forward, as in
+     * {@link JdbcCustomerRepository#update}.
+     */
+    public List<MergedCustomer> mergeCustomers(String table, long fromRow, long toRow) {
+        var sql = """
+                WITH winners AS (
+                    SELECT DISTINCT ON (email) first_name, last_name, email, ssn, phone
+                    FROM %s
+                    WHERE row_num BETWEEN :from_row AND :to_row AND reject_reason IS NULL
+                    ORDER BY email, row_num DESC
+                )
+                INSERT INTO customers (first_name, last_name, email, ssn, phone, created_at, updated_at)
+                SELECT first_name, last_name, email, ssn, phone, :now, :now FROM winners
+                ON CONFLICT (email) DO UPDATE
+                SET first_name = EXCLUDED.first_name, last_name = EXCLUDED.last_name, ssn = EXCLUDED.ssn,
+                    phone = EXCLUDED.phone,
+                    updated_at = GREATEST(EXCLUDED.updated_at, customers.updated_at + INTERVAL '1 microsecond')
+                WHERE customers.deleted_at IS NULL
+                  AND (customers.first_name, customers.last_name, customers.ssn, customers.phone)
+                      IS DISTINCT FROM (EXCLUDED.first_name, EXCLUDED.last_name, EXCLUDED.ssn, EXCLUDED.phone)
+                RETURNING id, xmax = 0 AS inserted
+                """.formatted(table);
+        var params = rowRange(fromRow, toRow);
+        return statementMetrics.time("import.mergeCustomers", params, () -> jdbcTemplate.query(sql, params,
+                (rs, rowNum) -> new MergedCustomer(rs.getLong("id"), rs.getBoolean("inserted"))));
+    }
+
+    /**
+     * Adds the addresses of the accepted rows {@code fromRow} to {@code toRow} that their customer does not have yet;
+     * returns the ids of the customers that got an address.
+     */
+    public List<Long> mergeAddresses(String table, long fromRow, long toRow) {
+        var sql = """
+                INSERT INTO addresses (customer_id, street, city, state, zip_code, address_type, created_at, updated_at)
+                SELECT DISTINCT c.id, s.street, s.city, s.state, s.zip_code, s.address_type, :now::timestamp, :now::timestamp
+                FROM %s s
+                JOIN customers c ON c.email = s.email AND c.deleted_at IS NULL
+                WHERE s.row_num BETWEEN :from_row AND :to_row AND s.reject_reason IS NULL AND s.street IS NOT NULL
+                  AND NOT EXISTS (
+                      SELECT 1 FROM addresses a
+                      WHERE a.customer_id = c.id AND a.deleted_at IS NULL
+                        AND (a.street, a.city, a.state, a.zip_code, a.address_type)
+                            = (s.street, s.city, s.state, s.zip_code, s.address_type))
+                RETURNING customer_id
+                """.formatted(table);
+        var params = rowRange(fromRow, toRow);
+        return statementMetrics.time("import.mergeAddresses", params,
+                () -> jdbcTemplate.queryForList(sql, params, Long.class));
+    }
+
+    /**
+     * Moves updated_at of the given customers forward, so their ETags change when only their addresses did; must run
+     * in the transaction that changed the addresses.
+     */
+    public void touchCustomers(Collection<Long> customerIds) {
+        if (customerIds.isEmpty()) return;
+        var sql = """
+                UPDATE customers SET updated_at = GREATEST(:now, updated_at + INTERVAL '1 microsecond')
+                WHERE id = ANY(:customer_ids)
+                """;
+        var params = new HashMap<String, Object>();
+        params.put("customer_ids", customerIds.toArray(new Long[0]));
+        params.put("now", new Timestamp(System.currentTimeMillis()));
+        statementMetrics.time("import.touchCustomers", params, () -> jdbcTemplate.update(sql, params));
+    }
+
+    public long countRejected(String table) {
+        return statementMetrics.time("import.countRejected", Collections.emptyMap(), () -> jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM " + table + " WHERE reject_reason IS NOT NULL", Collections.emptyMap(), Long.class));
+    }
+
+    /** The first {@code limit} rejected rows, in file order. */
+    public List<RejectedRow> findRejected(String table, int limit) {
+        var sql = "SELECT row_num, reject_reason FROM " + table + " WHERE reject_reason IS NOT NULL ORDER BY row_num LIMIT :limit";
+        var params = new HashMap<String, Object>();
+        params.put("limit", limit);
+        return statementMetrics.time("import.findRejected", params, () -> jdbcTemplate.query(sql, params,
+                (rs, rowNum) -> new RejectedRow(rs.getLong("row_num"), rs.getString("reject_reason"))));
+    }
+
+    public void dropStagingTable(String table) {
+        execute("import.dropStagingTable", "DROP TABLE IF EXISTS " + table);
+    }
+
+    private static HashMap<String, Object> rowRange(long fromRow, long toRow) {
+        var params = new HashMap<String, Object>();
+        params.put("from_row", fromRow);
+        params.put("to_row", toRow);
+        params.put("now", new Timestamp(System.currentTimeMillis()));
+        return params;
+    }
+
+    private void execute(String statement, String sql) {
+        statementMetrics.time(statement, Collections.emptyMap(), () -> jdbcTemplate.update(sql, Collections.emptyMap()));
+    }
+}
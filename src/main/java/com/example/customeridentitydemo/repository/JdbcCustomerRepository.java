@@ -1,25 +1,44 @@
 package com.example.customeridentitydemo.repository;
 
 import com.example.customeridentitydemo.model.Customer;
+import com.example.customeridentitydemo.model.CustomerStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository
 public class JdbcCustomerRepository {
 
+    // Rows pulled per round trip when streaming through a server-side cursor
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    // Columns findById and findPage accept in a column list; SQL is only ever built from these names
+    private static final Set<String> SELECTABLE_COLUMNS = Set.of(
+            "id", "first_name", "last_name", "email", "ssn", "phone", "status", "created_at", "updated_at");
+
     private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final JdbcStatementMetrics statementMetrics;
 
-    public JdbcCustomerRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+    public JdbcCustomerRepository(NamedParameterJdbcTemplate jdbcTemplate, JdbcStatementMetrics statementMetrics) {
         this.jdbcTemplate = jdbcTemplate;
+        this.statementMetrics = statementMetrics;
     }
 
     private static final class CustomerRowMapper implements RowMapper<Customer> {
@@ -32,28 +51,293 @@ public class JdbcCustomerRepository {
             customer.setEmail(rs.getString("email"));
             customer.setSsn(rs.getString("ssn"));
             customer.setPhone(rs.getString("phone"));
-            // customer.setStatus(CustomerStatus.valueOf(rs.getString("status")));
-            // customer.setDeletedAt(rs.getTimestamp("deleted_at").toLocalDateTime());
-            // customer.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-            // customer.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
+            String status = rs.getString("status");
+            customer.setStatus(status != null ? CustomerStatus.valueOf(status) : null);
+            customer.setDeletedAt(toLocalDateTime(rs.getTimestamp("deleted_at")));
+            customer.setCreatedAt(toLocalDateTime(rs.getTimestamp("created_at")));
+            customer.setUpdatedAt(toLocalDateTime(rs.getTimestamp("updated_at")));
             return customer;
         }
+
+        private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+            return timestamp != null ? timestamp.toLocalDateTime() : null;
+        }
+    }
+
+    // Maps only the selected columns; the other fields stay null
+    private static final class ColumnsRowMapper implements RowMapper<Customer> {
+        private final Set<String> columns;
+
+        private ColumnsRowMapper(Set<String> columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public Customer mapRow(ResultSet rs, int rowNum) throws SQLException {
+            Customer customer = new Customer();
+            customer.setStatus(null);
+            for (String column : columns) {
+                switch (column) {
+                    case "id" -> customer.setId(rs.getLong("id"));
+                    case "first_name" -> customer.setFirstName(rs.getString("first_name"));
+                    case "last_name" -> customer.setLastName(rs.getString("last_name"));
+                    case "email" -> customer.setEmail(rs.getString("email"));
+                    case "ssn" -> customer.setSsn(rs.getString("ssn"));
+                    case "phone" -> customer.setPhone(rs.getString("phone"));
+                    case "status" -> {
+                        String status = rs.getString("status");
+                        customer.setStatus(status != null ? CustomerStatus.valueOf(status) : null);
+                    }
+                    case "created_at" -> customer.setCreatedAt(CustomerRowMapper.toLocalDateTime(rs.getTimestamp("created_at")));
+                    case "updated_at" -> customer.setUpdatedAt(CustomerRowMapper.toLocalDateTime(rs.getTimestamp("updated_at")));
+                    default -> throw new IllegalArgumentException("Unexpected column " + column);
+                }
+            }
+            return customer;
+        }
+    }
+
+    private static String selectList(Set<String> columns) {
+        if (!SELECTABLE_COLUMNS.containsAll(columns)) {
+            throw new IllegalArgumentException("Unknown columns in " + columns);
+        }
+        return String.join(", ", columns);
+    }
+
+    // The id is always selected: callers key addresses, orders and pagination cursors on it
+    private static Set<String> withId(Set<String> columns) {
+        Set<String> selected = new LinkedHashSet<>();
+        selected.add("id");
+        selected.addAll(columns);
+        return selected;
     }
 
     public List<Customer> findAll() {
-        return jdbcTemplate.query("SELECT * FROM customers WHERE deleted_at IS NULL", new CustomerRowMapper());
+        return statementMetrics.time("customer.findAll", Collections.emptyMap(),
+                () -> jdbcTemplate.query("SELECT * FROM customers WHERE deleted_at IS NULL", new CustomerRowMapper()));
+    }
+
+    /**
+     * Keyset page of live customers matching {@code filter}, after {@code after} (null for the first page), ordered by
+     * {@link CustomerFilter#sortColumn()} and id. Each page seeks straight to its key - through idx_customers_live_id
+     * unfiltered, through the V6 created_at or updated_at indexes for a time range - and reads only {@code limit}
+     * rows, so the cost does not grow with the depth of the page or the breadth of the range.
+     */
+    public List<Customer> findPage(CustomerPageKey after, int limit, CustomerFilter filter) {
+        var params = new HashMap<String, Object>();
+        var sql = """
+                SELECT * FROM customers
+                WHERE deleted_at IS NULL%s%s
+                ORDER BY %s
+                LIMIT :limit
+                """.formatted(filterConditions(filter, params), keysetCondition(after, filter, params), pageOrder(filter));
+        params.put("limit", limit);
+        return statementMetrics.time("customer.findPage", params,
+                () -> jdbcTemplate.query(sql, params, new CustomerRowMapper()));
+    }
+
+    /**
+     * Same as {@link #findPage(CustomerPageKey, int, CustomerFilter)} but selects only {@code columns} (plus id and
+     * the sort column, which the next page's key is taken from); other fields stay unset.
+     */
+    public List<Customer> findPage(CustomerPageKey after, int limit, Set<String> columns, CustomerFilter filter) {
+        Set<String> selected = withId(columns);
+        selected.add(filter.sortColumn());
+        var params = new HashMap<String, Object>();
+        var sql = """
+                SELECT %s FROM customers
+                WHERE deleted_at IS NULL%s%s
+                ORDER BY %s
+                LIMIT :limit
+                """.formatted(selectList(selected), filterConditions(filter, params),
+                keysetCondition(after, filter, params), pageOrder(filter));
+        params.put("limit", limit);
+        return statementMetrics.time("customer.findPageColumns", params,
+                () -> jdbcTemplate.query(sql, params, new ColumnsRowMapper(selected)));
+    }
+
+    // A time range filters out null timestamps, so the row comparison never meets one
+    private static String keysetCondition(CustomerPageKey after, CustomerFilter filter, Map<String, Object> params) {
+        if (after == null) return "";
+        params.put("after_id", after.id());
+        String sortColumn = filter.sortColumn();
+        if (sortColumn.equals("id")) {
+            return " AND id > :after_id";
+        }
+        params.put("after_time", after.time());
+        return " AND (" + sortColumn + ", id) > (:after_time, :after_id)";
+    }
+
+    private static String pageOrder(CustomerFilter filter) {
+        String sortColumn = filter.sortColumn();
+        return sortColumn.equals("id") ? "id" : sortColumn + ", id";
+    }
+
+    // Appends one fixed condition per set filter component and binds its value; values never reach the SQL text
+    private static String filterConditions(CustomerFilter filter, Map<String, Object> params) {
+        var conditions = new StringBuilder();
+        if (filter.status() != null) {
+            conditions.append(" AND status = :status");
+            params.put("status", filter.status().name());
+        }
+        if (filter.createdFrom() != null) {
+            conditions.append(" AND created_at >= :created_from");
+            params.put("created_from", filter.createdFrom());
+        }
+        if (filter.createdTo() != null) {
+            conditions.append(" AND created_at < :created_to");
+            params.put("created_to", filter.createdTo());
+        }
+        if (filter.updatedSince() != null) {
+            conditions.append(" AND updated_at >= :updated_since");
+            params.put("updated_since", filter.updatedSince());
+        }
+        return conditions.toString();
+    }
+
+    /**
+     * Live customers matching {@code query} (lower case), best first: prefix matches on email, first name, last name
+     * or "first last", then - for queries of three or more characters - fuzzy trigram matches ranked by word
+     * similarity. Each branch is an index scan that returns rows in order and stops after {@code maxResults}, so the
+     * cost depends on the cap rather than the table size or how common the query is. Returns rows {@code offset} to
+     * {@code offset + limit} of the first {@code maxResults}. Must run in a transaction: the similarity threshold is
+     * set for the transaction only.
+     */
+    public List<Customer> search(String query, int limit, int offset, int maxResults, double similarityThreshold) {
+        // Branches must use the indexed expressions (and collation) of V5__Add_customer_search_indexes exactly
+        var branches = new ArrayList<String>();
+        branches.add("""
+                (SELECT id, 0 AS rank, 1.0::real AS score FROM customers
+                 WHERE deleted_at IS NULL AND lower(email) COLLATE "C" LIKE :prefix
+                 ORDER BY lower(email) COLLATE "C" LIMIT :max_results)""");
+        branches.add("""
+                (SELECT id, 0, 1.0::real FROM customers
+                 WHERE deleted_at IS NULL AND lower(last_name) COLLATE "C" LIKE :prefix
+                 ORDER BY lower(last_name) COLLATE "C" LIMIT :max_results)""");
+        branches.add("""
+                (SELECT id, 0, 1.0::real FROM customers
+                 WHERE deleted_at IS NULL AND lower(first_name) COLLATE "C" LIKE :prefix
+                 ORDER BY lower(first_name) COLLATE "C" LIMIT :max_results)""");
+        if (query.contains(" ")) {
+            branches.add("""
+                    (SELECT id, 0, 1.0::real FROM customers
+                     WHERE deleted_at IS NULL AND lower(first_name || ' ' || last_name || ' ' || email) LIKE :prefix
+                     LIMIT :max_results)""");
+        }
+        if (query.length() >= 3) {
+            branches.add("""
+                    (SELECT id, 1, word_similarity(:query, lower(first_name || ' ' || last_name || ' ' || email))
+                     FROM customers
+                     WHERE deleted_at IS NULL AND :query <% lower(first_name || ' ' || last_name || ' ' || email)
+                     ORDER BY :query <<-> lower(first_name || ' ' || last_name || ' ' || email) LIMIT :max_results)""");
+        }
+        var sql = """
+                WITH matches AS (
+                %s
+                ), ranked AS (
+                    SELECT id, min(rank) AS rank, max(score) AS score FROM matches
+                    GROUP BY id
+                    ORDER BY rank, score DESC, id
+                    LIMIT :max_results
+                )
+                SELECT c.* FROM ranked r JOIN customers c ON c.id = r.id
+                ORDER BY r.rank, r.score DESC, r.id
+                LIMIT :limit OFFSET :offset
+                """.formatted(String.join("\nUNION ALL\n", branches));
+        var params = new HashMap<String, Object>();
+        params.put("query", query);
+        params.put("prefix", escapeLike(query) + "%");
+        params.put("max_results", maxResults);
+        params.put("limit", limit);
+        params.put("offset", offset);
+
+        jdbcTemplate.queryForObject("SELECT set_config('pg_trgm.word_similarity_threshold', :threshold, true)",
+                Map.of("threshold", Double.toString(similarityThreshold)), String.class);
+        return statementMetrics.time("customer.search", params,
+                () -> jdbcTemplate.query(sql, params, new CustomerRowMapper()));
+    }
+
+    // LIKE's default escape character is the backslash
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Streams every live customer through a server-side cursor. Postgres only honours the fetch size when
+     * autocommit is off, so callers must consume the stream inside a transaction and close it when done.
+     */
+    public Stream<Customer> streamAll() {
+        JdbcTemplate cursorTemplate = new JdbcTemplate(jdbcTemplate.getJdbcTemplate().getDataSource());
+        cursorTemplate.setFetchSize(STREAM_FETCH_SIZE);
+        // Times opening the cursor and the first fetch; later rows are fetched as the caller consumes the stream
+        return statementMetrics.time("customer.streamAll", Collections.emptyMap(),
+                () -> new NamedParameterJdbcTemplate(cursorTemplate).queryForStream(
+                        "SELECT * FROM customers WHERE deleted_at IS NULL ORDER BY id",
+                        Collections.emptyMap(),
+                        new CustomerRowMapper()));
     }
 
     public Optional<Customer> findById(Long id) {
         var sql = "SELECT * FROM customers WHERE id = :id AND deleted_at IS NULL";
         var params = new HashMap<String, Object>();
         params.put("id", id);
-        return jdbcTemplate.query(sql, params, new CustomerRowMapper())
+        return statementMetrics.time("customer.findById", params,
+                        () -> jdbcTemplate.query(sql, params, new CustomerRowMapper()))
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Same as {@link #findById(Long)} but selects only {@code columns} (plus id); other fields stay unset.
+     */
+    public Optional<Customer> findById(Long id, Set<String> columns) {
+        Set<String> selected = withId(columns);
+        var sql = "SELECT " + selectList(selected) + " FROM customers WHERE id = :id AND deleted_at IS NULL";
+        var params = new HashMap<String, Object>();
+        params.put("id", id);
+        return statementMetrics.time("customer.findByIdColumns", params,
+                        () -> jdbcTemplate.query(sql, params, new ColumnsRowMapper(selected)))
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Same as {@link #findById(Long)} but locks the row until the surrounding transaction ends, so a version checked
+     * against it cannot change before the caller's write.
+     */
+    public Optional<Customer> findByIdForUpdate(Long id) {
+        var sql = "SELECT * FROM customers WHERE id = :id AND deleted_at IS NULL FOR UPDATE";
+        var params = new HashMap<String, Object>();
+        params.put("id", id);
+        return statementMetrics.time("customer.findByIdForUpdate", params,
+                        () -> jdbcTemplate.query(sql, params, new CustomerRowMapper()))
                 .stream()
                 .findFirst();
     }
 
+    /**
+     * The live customer's updated_at alone, for cheap version checks; the epoch when it was never set.
+     */
+    public Optional<LocalDateTime> findUpdatedAt(Long id) {
+        var sql = "SELECT COALESCE(updated_at, 'epoch'::timestamp) FROM customers WHERE id = :id AND deleted_at IS NULL";
+        var params = new HashMap<String, Object>();
+        params.put("id", id);
+        return statementMetrics.time("customer.findUpdatedAt", params,
+                        () -> jdbcTemplate.queryForList(sql, params, Timestamp.class))
+                .stream()
+                .findFirst()
+                .map(Timestamp::toLocalDateTime);
+    }
+
     public Customer save(Customer customer) {
+        saveAll(List.of(customer));
+        return customer;
+    }
+
+    /**
+     * Inserts all customers in one JDBC batch and assigns the generated ids back onto them (RETURNING id).
+     */
+    public List<Customer> saveAll(List<Customer> customers) {
         var sql = """
                 INSERT INTO customers(
                     first_name, last_name, email, ssn, phone, status, created_at, updated_at
@@ -62,25 +346,46 @@ public class JdbcCustomerRepository {
                     :first_name, :last_name, :email, :ssn, :phone, :status, :created_at, :updated_at
                 )
                 """;
-        var params = new HashMap<String, Object>();
-        params.put("first_name", customer.getFirstName());
-        params.put("last_name", customer.getLastName());
-        params.put("email", customer.getEmail());
-        params.put("ssn", customer.getSsn());
-        params.put("phone", customer.getPhone());
-        params.put("status", "PENDING_VERIFICATION");
-        params.put("created_at", new Timestamp(System.currentTimeMillis()));
-        params.put("updated_at", new Timestamp(System.currentTimeMillis()));
+        var now = new Timestamp(System.currentTimeMillis());
+        var batchParams = new MapSqlParameterSource[customers.size()];
+        for (int i = 0; i < customers.size(); i++) {
+            Customer customer = customers.get(i);
+            customer.setStatus(CustomerStatus.PENDING_VERIFICATION);
+            customer.setCreatedAt(now.toLocalDateTime());
+            customer.setUpdatedAt(now.toLocalDateTime());
+            var params = new MapSqlParameterSource();
+            params.addValue("first_name", customer.getFirstName());
+            params.addValue("last_name", customer.getLastName());
+            params.addValue("email", customer.getEmail());
+            params.addValue("ssn", customer.getSsn());
+            params.addValue("phone", customer.getPhone());
+            params.addValue("status", "PENDING_VERIFICATION");
+            params.addValue("created_at", now);
+            params.addValue("updated_at", now);
+            batchParams[i] = params;
+        }
 
-        jdbcTemplate.update(sql, params);
-        return customer;
+        var keyHolder = new GeneratedKeyHolder();
+        statementMetrics.time("customer.saveAll", batchParams,
+                () -> jdbcTemplate.batchUpdate(sql, batchParams, keyHolder, new String[]{"id"}));
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < keys.size(); i++) {
+            customers.get(i).setId(((Number) keys.get(i).get("id")).longValue());
+        }
+        return customers;
     }
 
+    /**
+     * Updates the customer and sets its new updated_at on it. updated_at always moves forward, even for two
+     * updates within the same clock tick, because ETags are derived from it.
+     */
     public Customer update(Customer customer) {
         var sql = """
                 UPDATE customers
-                SET first_name = :first_name, last_name = :last_name, email = :email, ssn = :ssn, phone = :phone, updated_at = :updated_at
+                SET first_name = :first_name, last_name = :last_name, email = :email, ssn = :ssn, phone = :phone,
+                    updated_at = GREATEST(:updated_at, updated_at + INTERVAL '1 microsecond')
                 WHERE id = :id
+                RETURNING updated_at
                 """;
         var params = new HashMap<String, Object>();
         params.put("first_name", customer.getFirstName());
@@ -91,7 +396,10 @@ public class JdbcCustomerRepository {
         params.put("updated_at", new Timestamp(System.currentTimeMillis()));
         params.put("id", customer.getId());
 
-        jdbcTemplate.update(sql, params);
+        statementMetrics.time("customer.update", params, () -> jdbcTemplate.queryForList(sql, params, Timestamp.class))
+                .stream()
+                .findFirst()
+                .ifPresent(updatedAt -> customer.setUpdatedAt(updatedAt.toLocalDateTime()));
         return customer;
     }
 
@@ -100,6 +408,6 @@ public class JdbcCustomerRepository {
         var params = new HashMap<String, Object>();
         params.put("deleted_at", new Timestamp(System.currentTimeMillis()));
         params.put("id", id);
-        jdbcTemplate.update(sql, params);
+        statementMetrics.time("customer.deleteById", params, () -> jdbcTemplate.update(sql, params));
     }
 }
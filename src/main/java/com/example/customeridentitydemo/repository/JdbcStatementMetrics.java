@@ -0,0 +1,97 @@
+package com.example.customeridentitydemo.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Array;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Times repository statements under {@code db.statement}, tagged by a logical statement name such as
+ * {@code customer.findById}, and logs statements slower than {@code db.slow-query.threshold}. The log shows only
+ * the shape of the bound parameters - names, types and collection sizes - never their values, which are customer PII.
+ */
+@Component
+@Slf4j
+public class JdbcStatementMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final boolean slowQueryLogEnabled;
+    private final long slowQueryThresholdNanos;
+
+    public JdbcStatementMetrics(MeterRegistry meterRegistry,
+                                @Value("${db.slow-query.enabled:true}") boolean slowQueryLogEnabled,
+                                @Value("${db.slow-query.threshold:200ms}") Duration slowQueryThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryLogEnabled = slowQueryLogEnabled;
+        this.slowQueryThresholdNanos = slowQueryThreshold.toNanos();
+    }
+
+    public <T> T time(String statement, Map<String, ?> params, Supplier<T> call) {
+        return time(statement, () -> shape(params), call);
+    }
+
+    public <T> T time(String statement, SqlParameterSource[] batch, Supplier<T> call) {
+        return time(statement, () -> batch.length + " x " + (batch.length > 0 ? shape(batch[0]) : "{}"), call);
+    }
+
+    private <T> T time(String statement, Supplier<String> parameterShape, Supplier<T> call) {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = call.get();
+            outcome = "success";
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            Timer.builder("db.statement")
+                    .description("Repository statement execution time, including row mapping")
+                    .tag("statement", statement)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(Duration.ofNanos(elapsed));
+            if (slowQueryLogEnabled && elapsed >= slowQueryThresholdNanos) {
+                log.warn("Slow statement {} ({}) took {} ms, parameters {}",
+                        statement, outcome, elapsed / 1_000_000, parameterShape.get());
+            }
+        }
+    }
+
+    static String shape(Map<String, ?> params) {
+        Map<String, String> shape = new TreeMap<>();
+        params.forEach((name, value) -> shape.put(name, shapeOf(value)));
+        return shape.toString();
+    }
+
+    static String shape(SqlParameterSource params) {
+        Map<String, String> shape = new TreeMap<>();
+        String[] names = params.getParameterNames();
+        if (names != null) {
+            for (String name : names) {
+                shape.put(name, shapeOf(params.getValue(name)));
+            }
+        }
+        return shape.toString();
+    }
+
+    private static String shapeOf(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value.getClass().isArray()) {
+            return value.getClass().getComponentType().getSimpleName() + "[" + Array.getLength(value) + "]";
+        }
+        if (value instanceof Collection<?> collection) {
+            return value.getClass().getSimpleName() + "[" + collection.size() + "]";
+        }
+        return value.getClass().getSimpleName();
+    }
+}
@@ -35,15 +35,15 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         final String authorizationHeader = request.getHeader("Authorization");
 
-        String username = null;
-        String jwtToken = null;
+        VerifiedToken verifiedToken = null;
 
         // Check if Authorization header starts with "Bearer "
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwtToken = authorizationHeader.substring(7);
+            String jwtToken = authorizationHeader.substring(7);
             try {
-                username = jwtUtil.extractUsername(jwtToken);
-                log.debug("JWT token extracted username: {}", username);
+                // Verified once here; the result carries everything needed below
+                verifiedToken = jwtUtil.verify(jwtToken);
+                log.debug("JWT token extracted username: {}", verifiedToken.username());
             } catch (Exception e) {
                 log.warn("Unable to extract username from JWT token: {}", e.getMessage());
             }
@@ -51,25 +51,36 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             log.debug("Authorization header missing or doesn't start with Bearer");
         }
 
-        // If username is extracted and no authentication is set in context
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+        // If the token is verified and no authentication is set in context
+        if (verifiedToken != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            String username = verifiedToken.username();
             try {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-
-                // Validate token with user details
-                if (jwtUtil.validateToken(jwtToken, userDetails)) {
-                    UsernamePasswordAuthenticationToken authToken = 
-                            new UsernamePasswordAuthenticationToken(
-                                    userDetails, 
-                                    null, 
-                                    userDetails.getAuthorities()
-                            );
+                if (jwtUtil.canAuthenticateFromClaims(verifiedToken)) {
+                    // Authorities come from the verified (and cached) token - no user-store lookup
+                    UsernamePasswordAuthenticationToken authToken =
+                            new UsernamePasswordAuthenticationToken(username, null, verifiedToken.authorities());
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authToken);
-                    
-                    log.debug("JWT authentication successful for user: {}", username);
+
+                    log.debug("JWT authentication from token claims successful for user: {}", username);
                 } else {
-                    log.warn("JWT token validation failed for user: {}", username);
+                    UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+
+                    // Validate token with user details
+                    if (jwtUtil.validateToken(verifiedToken, userDetails)) {
+                        UsernamePasswordAuthenticationToken authToken = 
+                                new UsernamePasswordAuthenticationToken(
+                                        userDetails, 
+                                        null, 
+                                        userDetails.getAuthorities()
+                                );
+                        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                        SecurityContextHolder.getContext().setAuthentication(authToken);
+                        
+                        log.debug("JWT authentication successful for user: {}", username);
+                    } else {
+                        log.warn("JWT token validation failed for user: {}", username);
+                    }
                 }
             } catch (Exception e) {
                 log.warn("JWT authentication failed: {}", e.getMessage());
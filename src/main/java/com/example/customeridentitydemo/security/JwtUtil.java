@@ -1,62 +1,132 @@
 package com.example.customeridentitydemo.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
 @Component
 public class JwtUtil {
 
-    @Value("${jwt.secret:mySecretKey}")
-    private String secret;
-
-    @Value("${jwt.expiration:3600}")
-    private int jwtExpiration;
+    static final String AUTHORITIES_CLAIM = "authorities";
+    static final String ACCOUNT_ACTIVE_CLAIM = "account_active";
+
+    private final int jwtExpiration;
+
+    // When enabled, tokens carry the user's authorities and the filter trusts them for up to maxStaleness after issue
+    private final boolean claimsAuthoritiesEnabled;
+    private final Duration claimsMaxStaleness;
+
+    // Built once: both are immutable and thread-safe, and rebuilding them per call showed up on every request
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+
+    // Verified tokens keyed by SHA-256 digest of the token, each entry expiring with its token
+    private final Cache<String, VerifiedToken> verifiedTokens;
+
+    public JwtUtil(@Value("${jwt.secret:mySecretKey}") String secret,
+                   @Value("${jwt.expiration:3600}") int jwtExpiration,
+                   @Value("${jwt.cache.enabled:true}") boolean cacheEnabled,
+                   @Value("${jwt.cache.max-size:10000}") int cacheMaxSize,
+                   @Value("${jwt.claims-authorities.enabled:false}") boolean claimsAuthoritiesEnabled,
+                   @Value("${jwt.claims-authorities.max-staleness:300}") long claimsMaxStalenessSeconds,
+                   MeterRegistry meterRegistry) {
+        this.jwtExpiration = jwtExpiration;
+        this.claimsAuthoritiesEnabled = claimsAuthoritiesEnabled;
+        this.claimsMaxStaleness = Duration.ofSeconds(claimsMaxStalenessSeconds);
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        this.parser = Jwts.parser().verifyWith(signingKey).build();
+        if (cacheEnabled) {
+            this.verifiedTokens = Caffeine.newBuilder()
+                    .maximumSize(cacheMaxSize)
+                    .expireAfter(new TokenExpiry())
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt.verified");
+        } else {
+            this.verifiedTokens = null;
+        }
+    }
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+    /**
+     * Verifies the token's signature and expiry, parsing it at most once while it stays cached.
+     *
+     * @throws JwtException             if the token is malformed, tampered with or expired
+     * @throws IllegalArgumentException if the token is null or empty
+     */
+    public VerifiedToken verify(String token) {
+        if (token == null || token.isBlank()) {
+            throw new IllegalArgumentException("JWT token must not be empty");
+        }
+        if (verifiedTokens == null) {
+            return parse(token);
+        }
+        String digest = digest(token);
+        return verifiedTokens.get(digest, key -> parse(token));
     }
 
     public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return verify(token).username();
     }
 
     public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+        return Date.from(verify(token).expiresAt());
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
-    }
-
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-    }
-
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return claimsResolver.apply(verify(token).claims());
     }
 
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
+        if (claimsAuthoritiesEnabled) {
+            claims.put(AUTHORITIES_CLAIM, userDetails.getAuthorities().stream()
+                    .map(GrantedAuthority::getAuthority)
+                    .toList());
+            claims.put(ACCOUNT_ACTIVE_CLAIM, userDetails.isEnabled()
+                    && userDetails.isAccountNonLocked()
+                    && userDetails.isAccountNonExpired()
+                    && userDetails.isCredentialsNonExpired());
+        }
         return createToken(claims, userDetails.getUsername());
     }
 
+    /**
+     * Whether the request can be authenticated from the token's own claims, without a user-store lookup.
+     * Tokens older than the configured max-staleness fall back to the lookup so role changes take effect.
+     */
+    public boolean canAuthenticateFromClaims(VerifiedToken token) {
+        Instant now = Instant.now();
+        return claimsAuthoritiesEnabled
+                && token.carriesAuthorities()
+                && token.accountActive()
+                && token.issuedAt() != null
+                && token.issuedAt().plus(claimsMaxStaleness).isAfter(now)
+                && !token.isExpired(now);
+    }
+
     private String createToken(Map<String, Object> claims, String subject) {
         Instant now = Instant.now();
         Instant expiry = now.plus(jwtExpiration, ChronoUnit.SECONDS);
@@ -66,24 +136,76 @@ public class JwtUtil {
                 .subject(subject)
                 .issuedAt(Date.from(now))
                 .expiration(Date.from(expiry))
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
+    public Boolean validateToken(VerifiedToken token, UserDetails userDetails) {
+        return token.username().equals(userDetails.getUsername()) && !token.isExpired(Instant.now());
+    }
+
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        try {
+            return validateToken(verify(token), userDetails);
+        } catch (JwtException | IllegalArgumentException e) {
+            return false;
+        }
     }
 
     public Boolean validateToken(String token) {
         try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token);
+            verify(token);
             return true;
         } catch (JwtException | IllegalArgumentException e) {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    private VerifiedToken parse(String token) {
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        if (claims.getExpiration() == null) {
+            throw new MalformedJwtException("JWT token has no expiration");
+        }
+        List<GrantedAuthority> authorities = null;
+        if (claims.get(AUTHORITIES_CLAIM) instanceof List<?> names) {
+            authorities = names.stream()
+                    .map(name -> (GrantedAuthority) new SimpleGrantedAuthority(String.valueOf(name)))
+                    .toList();
+        }
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null,
+                claims.getExpiration().toInstant(),
+                claims,
+                authorities,
+                Boolean.TRUE.equals(claims.get(ACCOUNT_ACTIVE_CLAIM, Boolean.class))
+        );
+    }
+
+    // Cached entries live exactly as long as the token they were verified from
+    private static final class TokenExpiry implements Expiry<String, VerifiedToken> {
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+            return Math.max(0, Duration.between(Instant.now(), token.expiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken token, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, token, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
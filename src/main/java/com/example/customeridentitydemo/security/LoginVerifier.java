@@ -0,0 +1,228 @@
+package com.example.customeridentitydemo.security;
+
+import com.example.customeridentitydemo.exception.ServiceUnavailableException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AccountStatusUserDetailsChecker;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verifies login credentials on a dedicated, bounded pool so a burst of BCrypt checks cannot take over the
+ * request threads serving everything else. When the pool and its queue are full, logins are rejected straight
+ * away with a {@link ServiceUnavailableException} instead of piling up.
+ */
+@Component
+@Slf4j
+public class LoginVerifier {
+
+    private static final long RETRY_AFTER_SECONDS = 1;
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final AuthenticationManager authenticationManager;
+    private final UserDetailsService userDetailsService;
+    private final AccountStatusUserDetailsChecker accountStatusChecker = new AccountStatusUserDetailsChecker();
+
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+
+    // Successful verifications keyed by an HMAC of (username, password), holding the password hash they matched
+    private final Cache<String, String> verifiedCredentials;
+    // Random per-process HMAC key, so cache keys found in a heap dump cannot be checked against guessed passwords
+    // without it; null when the cache is disabled
+    private final SecretKey cacheKeySecret;
+
+    private final Timer successTimer;
+    private final Timer failureTimer;
+    private final Counter rejectedCounter;
+
+    public LoginVerifier(AuthenticationManager authenticationManager,
+                         UserDetailsService userDetailsService,
+                         @Value("${auth.login.verification.pool-size:4}") int poolSize,
+                         @Value("${auth.login.verification.queue-capacity:64}") int queueCapacity,
+                         @Value("${auth.login.verification.timeout-ms:5000}") long timeoutMillis,
+                         @Value("${auth.login.cache.enabled:false}") boolean cacheEnabled,
+                         @Value("${auth.login.cache.ttl:60}") long cacheTtlSeconds,
+                         @Value("${auth.login.cache.max-size:10000}") int cacheMaxSize,
+                         MeterRegistry meterRegistry) {
+        this.authenticationManager = authenticationManager;
+        this.userDetailsService = userDetailsService;
+        this.timeoutMillis = timeoutMillis;
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new VerifierThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        new ExecutorServiceMetrics(executor, "login.verification", Tags.empty()).bindTo(meterRegistry);
+
+        if (cacheEnabled) {
+            this.verifiedCredentials = Caffeine.newBuilder()
+                    .maximumSize(cacheMaxSize)
+                    .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, verifiedCredentials, "login.verified");
+            byte[] secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            this.cacheKeySecret = new SecretKeySpec(secret, HMAC_ALGORITHM);
+        } else {
+            this.verifiedCredentials = null;
+            this.cacheKeySecret = null;
+        }
+
+        this.successTimer = Timer.builder("login.verification.duration")
+                .description("Time spent verifying login credentials")
+                .tag("outcome", "success")
+                .register(meterRegistry);
+        this.failureTimer = Timer.builder("login.verification.duration")
+                .description("Time spent verifying login credentials")
+                .tag("outcome", "failure")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("login.verification.rejected")
+                .description("Logins rejected because the verification pool was saturated")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Authenticates the credentials on the verification pool, waiting at most the configured timeout.
+     *
+     * @throws AuthenticationException     if the credentials are invalid or the account is not usable
+     * @throws ServiceUnavailableException if the pool is saturated or verification timed out
+     */
+    public Authentication authenticate(String username, String password) {
+        String cacheKey = verifiedCredentials != null ? cacheKey(username, password) : null;
+        if (cacheKey != null) {
+            Authentication cached = authenticateFromCache(username, cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        Future<Authentication> verification;
+        try {
+            verification = executor.submit(() -> verify(username, password));
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            log.warn("Login verification pool saturated, rejecting login for user: {}", username);
+            throw new ServiceUnavailableException("Too many concurrent logins", RETRY_AFTER_SECONDS);
+        }
+
+        Authentication authentication = await(verification, username);
+        if (cacheKey != null) {
+            // The principal's password is erased after authentication, so read the stored hash from the user store
+            verifiedCredentials.put(cacheKey, userDetailsService.loadUserByUsername(username).getPassword());
+        }
+        return authentication;
+    }
+
+    private Authentication verify(String username, String password) {
+        long start = System.nanoTime();
+        try {
+            Authentication authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(username, password));
+            successTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return authentication;
+        } catch (RuntimeException e) {
+            failureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private Authentication await(Future<Authentication> verification, String username) {
+        try {
+            return verification.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            verification.cancel(true);
+            rejectedCounter.increment();
+            log.warn("Login verification timed out for user: {}", username);
+            throw new ServiceUnavailableException("Login verification timed out", RETRY_AFTER_SECONDS);
+        } catch (InterruptedException e) {
+            verification.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Login verification was interrupted", RETRY_AFTER_SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Login verification failed", e.getCause());
+        }
+    }
+
+    // A hit only counts while the stored password hash is unchanged and the account is still usable
+    private Authentication authenticateFromCache(String username, String cacheKey) {
+        String verifiedHash = verifiedCredentials.getIfPresent(cacheKey);
+        if (verifiedHash == null) {
+            return null;
+        }
+        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        if (!verifiedHash.equals(userDetails.getPassword())) {
+            verifiedCredentials.invalidate(cacheKey);
+            return null;
+        }
+        accountStatusChecker.check(userDetails);
+        return UsernamePasswordAuthenticationToken.authenticated(userDetails, null, userDetails.getAuthorities());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private String cacheKey(String username, String password) {
+        try {
+            // Mac instances are not thread-safe; initializing one is cheap next to a BCrypt check
+            Mac hmac = Mac.getInstance(HMAC_ALGORITHM);
+            hmac.init(cacheKeySecret);
+            hmac.update(username.getBytes(StandardCharsets.UTF_8));
+            hmac.update((byte) 0);
+            hmac.update(password.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hmac.doFinal());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static final class VerifierThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "login-verifier-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
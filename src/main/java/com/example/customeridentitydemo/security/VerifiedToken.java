@@ -0,0 +1,24 @@
+package com.example.customeridentitydemo.security;
+
+import io.jsonwebtoken.Claims;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Result of verifying a JWT's signature once: the subject, its validity window and the raw claims.
+ * When the token was issued with embedded authorities they are parsed here, once, and reused for every request
+ * that presents the same token; {@code authorities} is null for tokens that carry none.
+ */
+public record VerifiedToken(String username, Instant issuedAt, Instant expiresAt, Claims claims,
+                            List<GrantedAuthority> authorities, boolean accountActive) {
+
+    public boolean isExpired(Instant now) {
+        return !expiresAt.isAfter(now);
+    }
+
+    public boolean carriesAuthorities() {
+        return authorities != null;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.customeridentitydemo.service;
+
+import java.util.List;
+
+/**
+ * A data migration run by {@link BackfillService}: one set-based UPDATE applied to consecutive id ranges of a table,
+ * each range in its own short transaction. Register an implementation as a bean and start it by name through
+ * {@code POST /api/v1/backfills/{name}}.
+ */
+public interface Backfill {
+
+    /** Unique name; the checkpoint key and the path segment of the backfill endpoints. */
+    String name();
+
+    /** Table whose id range is walked; must have a bigint primary key named id. */
+    String table();
+
+    /**
+     * A single UPDATE of rows with {@code id BETWEEN :from_id AND :to_id} ending in {@code RETURNING id}. It should
+     * skip rows that are already migrated, so that rows written by the application meanwhile, and chunks retried
+     * after a failure, are harmless.
+     */
+    String chunkSql();
+
+    /** Called inside a chunk's transaction after its UPDATE, e.g. to evict cached copies of the updated rows. */
+    default void afterChunk(List<Long> updatedIds) {
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.customeridentitydemo.service;
+
+import com.example.customeridentitydemo.exception.BadRequestException;
+import com.example.customeridentitydemo.exception.ResourceNotFoundException;
+import com.example.customeridentitydemo.model.BackfillJob;
+import com.example.customeridentitydemo.model.BackfillStatus;
+import com.example.customeridentitydemo.repository.JdbcBackfillRepository;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Runs {@link Backfill}s in the background: the backfill's UPDATE is applied to consecutive id ranges of
+ * {@code backfill.chunk-size} ids, each range in its own short transaction together with the checkpoint
+ * (backfill_jobs), so no transaction holds locks or a connection for longer than one chunk and a job resumes where
+ * it stopped. Chunks are paced by the {@code backfill} rate limiter, in ids per second. Jobs left RUNNING by a
+ * crash or restart resume on startup unless {@code backfill.resume-on-startup} is off.
+ */
+@Service
+@Slf4j
+public class BackfillService {
+
+    static final String RATE_LIMITER = "backfill";
+
+    @Autowired
+    private JdbcBackfillRepository backfillRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private RateLimiterRegistry rateLimiterRegistry;
+
+    @Autowired
+    @Qualifier("backfillExecutor")
+    private ExecutorService backfillExecutor;
+
+    @Autowired
+    private List<Backfill> backfillList;
+
+    @Value("${backfill.chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    @Value("${backfill.resume-on-startup:true}")
+    private boolean resumeOnStartup = true;
+
+    private Map<String, Backfill> backfills;
+
+    // Jobs submitted to the executor by this instance and not finished yet
+    private final Set<String> active = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void registerBackfills() {
+        // A chunk takes chunk-size permits at once; needing more than a period grants means waiting several periods,
+        // and the limiter refuses at once when that wait exceeds its timeout
+        int limitForPeriod = rateLimiterRegistry.rateLimiter(RATE_LIMITER).getRateLimiterConfig().getLimitForPeriod();
+        if (chunkSize > limitForPeriod) {
+            throw new IllegalArgumentException("backfill.chunk-size (" + chunkSize + ") must not exceed the "
+                    + RATE_LIMITER + " rate limiter's limit-for-period (" + limitForPeriod + ")");
+        }
+        backfills = backfillList.stream().collect(Collectors.toMap(Backfill::name, Function.identity()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void resumeInterruptedBackfills() {
+        if (!resumeOnStartup) return;
+        for (BackfillJob job : backfillRepository.findAll()) {
+            Backfill backfill = backfills.get(job.getName());
+            if (job.getStatus() == BackfillStatus.RUNNING && backfill != null) {
+                log.info("Resuming backfill {} at id {} of {}", job.getName(), job.getNextId(), job.getMaxId());
+                submit(backfill);
+            }
+        }
+    }
+
+    public List<BackfillJob> getBackfillJobs() {
+        return backfillRepository.findAll();
+    }
+
+    public BackfillJob getBackfillJob(String name) {
+        backfill(name);
+        return backfillRepository.findByName(name)
+                .orElseThrow(() -> new ResourceNotFoundException("Backfill " + name + " has not been started"));
+    }
+
+    /**
+     * Starts the backfill in the background. A completed or never-run job starts over from the table's lowest id;
+     * a paused, failed or interrupted one resumes from its checkpoint. Starting a job that is running is a no-op.
+     */
+    public BackfillJob startBackfill(String name) {
+        Backfill backfill = backfill(name);
+        JdbcBackfillRepository.IdRange ids = backfillRepository.findIdRange(backfill.table());
+        // Also when this instance's runner is still finishing a chunk after a pause: the runner re-checks the status
+        // once it is no longer active, so the start is not lost
+        transactionTemplate.executeWithoutResult(status -> {
+            var job = backfillRepository.findByNameForUpdate(name);
+            if (job.isEmpty() || job.get().getStatus() == BackfillStatus.COMPLETED) {
+                backfillRepository.start(name, ids.first(), ids.last());
+            } else if (job.get().getStatus() != BackfillStatus.RUNNING || !active.contains(name)) {
+                backfillRepository.resume(name, ids.last());
+            }
+        });
+        submit(backfill);
+        return getBackfillJob(name);
+    }
+
+    /** Stops the backfill after its current chunk; start it again to resume from the checkpoint. */
+    public BackfillJob pauseBackfill(String name) {
+        backfill(name);
+        if (!backfillRepository.updateStatus(name, BackfillStatus.RUNNING, BackfillStatus.PAUSED, null)) {
+            throw new BadRequestException("Backfill " + name + " is not running");
+        }
+        return getBackfillJob(name);
+    }
+
+    private Backfill backfill(String name) {
+        Backfill backfill = backfills.get(name);
+        if (backfill == null) {
+            throw new ResourceNotFoundException("Unknown backfill " + name + "; known backfills are "
+                    + String.join(", ", backfills.keySet()));
+        }
+        return backfill;
+    }
+
+    // Only submits when no runner of this instance is active; an active runner picks up a restart when it exits
+    private void submit(Backfill backfill) {
+        if (active.add(backfill.name())) {
+            backfillExecutor.execute(() -> run(backfill));
+        }
+    }
+
+    void run(Backfill backfill) {
+        RateLimiter rateLimiter = rateLimiterRegistry.rateLimiter(RATE_LIMITER);
+        boolean stopped = true;
+        try {
+            boolean more = true;
+            while (more) {
+                if (rateLimiter.acquirePermission(chunkSize)) {
+                    more = Boolean.TRUE.equals(transactionTemplate.execute(status -> runChunk(backfill)));
+                } else {
+                    // Permits are reserved beyond the timeout, e.g. by other backfills sharing the limiter: wait a
+                    // period rather than spin, and stop if the job was paused meanwhile
+                    Thread.sleep(rateLimiter.getRateLimiterConfig().getLimitRefreshPeriod().toMillis());
+                    more = isRunning(backfill);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Shutting down: the job stays RUNNING and resumes on the next startup
+            stopped = false;
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            stopped = false;
+            log.error("Backfill {} failed", backfill.name(), e);
+            backfillRepository.updateStatus(backfill.name(), BackfillStatus.RUNNING, BackfillStatus.FAILED,
+                    String.valueOf(e.getMessage()));
+        } finally {
+            active.remove(backfill.name());
+        }
+        if (stopped) {
+            resubmitIfRestarted(backfill);
+        }
+    }
+
+    private boolean isRunning(Backfill backfill) {
+        return backfillRepository.findByName(backfill.name())
+                .filter(job -> job.getStatus() == BackfillStatus.RUNNING).isPresent();
+    }
+
+    // A start that arrived while this runner was stopping found it still active and left the job RUNNING to it
+    private void resubmitIfRestarted(Backfill backfill) {
+        try {
+            if (isRunning(backfill)) {
+                log.info("Backfill {} was started again while stopping; continuing", backfill.name());
+                submit(backfill);
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not check whether backfill {} was started again", backfill.name(), e);
+        }
+    }
+
+    // One chunk and its checkpoint in one transaction; false once the job is paused, completed or gone
+    private boolean runChunk(Backfill backfill) {
+        BackfillJob job = backfillRepository.findByNameForUpdate(backfill.name()).orElse(null);
+        if (job == null || job.getStatus() != BackfillStatus.RUNNING) {
+            return false;
+        }
+        if (job.getNextId() > job.getMaxId()) {
+            backfillRepository.updateStatus(backfill.name(), BackfillStatus.RUNNING, BackfillStatus.COMPLETED, null);
+            log.info("Backfill {} completed: {} rows updated in {} chunks",
+                    backfill.name(), job.getRowsUpdated(), job.getChunksDone());
+            return false;
+        }
+        long fromId = job.getNextId();
+        long toId = Math.min(fromId + chunkSize - 1, job.getMaxId());
+        List<Long> updatedIds = backfillRepository.applyChunk(backfill.name(), backfill.chunkSql(), fromId, toId);
+        backfill.afterChunk(updatedIds);
+        backfillRepository.saveProgress(backfill.name(), toId + 1, updatedIds.size());
+        return true;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.customeridentitydemo.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Strong entity tags for customer resources, derived from the customer id and its {@code updated_at}. Every write
+ * to a customer or its addresses advances {@code updated_at}, so the tag changes with the representation. Orders
+ * come from the order service and are not covered.
+ */
+public final class CustomerETags {
+
+    private CustomerETags() {
+    }
+
+    public static String of(Long id, LocalDateTime updatedAt) {
+        long version = updatedAt != null
+                ? ChronoUnit.MICROS.between(LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC), updatedAt)
+                : 0;
+        return "\"" + id + "-" + Long.toHexString(version) + "\"";
+    }
+
+    /**
+     * The weak form of {@code etag}, for partial representations (fields or expand): they change with the customer's
+     * version but are not byte-for-byte the full representation, so they must not satisfy If-Match.
+     */
+    public static String weak(String etag) {
+        return "W/" + etag;
+    }
+
+    /**
+     * If-Match semantics: {@code *} or any listed tag equal to {@code etag}. Weak tags never match.
+     */
+    public static boolean matchesStrongly(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * If-None-Match semantics: {@code *} or any listed tag equal to {@code etag}, ignoring a {@code W/} prefix.
+     */
+    public static boolean matchesWeakly(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
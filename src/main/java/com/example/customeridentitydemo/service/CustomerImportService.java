@@ -0,0 +1,168 @@
+package com.example.customeridentitydemo.service;
+
+import com.example.customeridentitydemo.dto.CustomerImportResponseDTO;
+import com.example.customeridentitydemo.exception.BadRequestException;
+import com.example.customeridentitydemo.repository.JdbcBulkLoadRepository;
+import com.example.customeridentitydemo.repository.JdbcCustomerImportRepository;
+import com.example.customeridentitydemo.repository.JdbcCustomerImportRepository.MergedCustomer;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.util.PSQLException;
+import org.postgresql.util.ServerErrorMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Imports customer CSV files: the body streams HTML-escaped through COPY into a staging table, is validated there,
+ * and the accepted rows are merged into customers and addresses chunk by chunk. The file is never held in memory.
+ */
+@Slf4j
+@Service
+public class CustomerImportService {
+
+    // Decompressed bytes buffered between the gzip stream and the COPY
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    // "COPY customer_import_..., line 3, column email: ..." - only the line is reported, never the value
+    private static final Pattern COPY_LINE = Pattern.compile("line (\\d+)");
+
+    @Autowired
+    private JdbcCustomerImportRepository importRepository;
+
+    @Autowired
+    private JdbcBulkLoadRepository bulkLoadRepository;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${customer.import.merge-chunk-size:50000}")
+    private int mergeChunkSize = 50000;
+
+    @Value("${customer.import.max-reported-rejects:1000}")
+    private int maxReportedRejects = 1000;
+
+    /** Imports a CSV file, gzip-compressed or not; the header must list {@link JdbcCustomerImportRepository#CSV_COLUMNS}. */
+    public CustomerImportResponseDTO importCustomers(InputStream body) {
+        long started = System.nanoTime();
+        String table = importRepository.createStagingTable();
+        try {
+            long rows = copy(table, body);
+            importRepository.sanitize(table);
+            importRepository.validate(table);
+
+            long inserted = 0;
+            long updated = 0;
+            long addresses = 0;
+            for (long fromRow = 1; fromRow <= rows; fromRow += mergeChunkSize) {
+                long[] counts = mergeChunk(table, fromRow, Math.min(fromRow + mergeChunkSize - 1, rows));
+                inserted += counts[0];
+                updated += counts[1];
+                addresses += counts[2];
+            }
+
+            long rejected = importRepository.countRejected(table);
+            List<CustomerImportResponseDTO.RejectedRow> rejects = importRepository.findRejected(table, maxReportedRejects)
+                    .stream()
+                    .map(reject -> new CustomerImportResponseDTO.RejectedRow(reject.row(), reject.reason()))
+                    .toList();
+            long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+            log.info("Imported {} rows ({} rejected) in {} ms", rows, rejected, elapsedMillis);
+            return new CustomerImportResponseDTO(rows, rows - rejected, rejected, inserted, updated, addresses,
+                    rejects, elapsedMillis);
+        } finally {
+            importRepository.dropStagingTable(table);
+        }
+    }
+
+    private long copy(String table, InputStream body) {
+        try {
+            return bulkLoadRepository.copyIn("customerImport", importRepository.copySql(table),
+                    htmlEscaped(decompressed(body)));
+        } catch (DataIntegrityViolationException e) {
+            // Malformed files fail the COPY with a data exception
+            throw new BadRequestException("Malformed CSV: " + describeCopyError(e));
+        } catch (UncheckedIOException e) {
+            if (e.getCause() instanceof ZipException || e.getCause() instanceof EOFException) {
+                throw new BadRequestException("Request body is not valid gzip", e);
+            }
+            if (e.getCause() instanceof CharacterCodingException) {
+                throw new BadRequestException("Malformed CSV: not valid UTF-8", e);
+            }
+            throw e;
+        }
+    }
+
+    // Each chunk commits on its own: inserted, updated customers and inserted addresses
+    private long[] mergeChunk(String table, long fromRow, long toRow) {
+        return transactionTemplate.execute(status -> {
+            List<MergedCustomer> customers = importRepository.mergeCustomers(table, fromRow, toRow);
+            List<Long> addressCustomerIds = importRepository.mergeAddresses(table, fromRow, toRow);
+            // A new address changes the customer's representation, so its ETag must change too
+            importRepository.touchCustomers(new HashSet<>(addressCustomerIds));
+
+            long inserted = customers.stream().filter(MergedCustomer::inserted).count();
+            Set<Long> changed = new HashSet<>(addressCustomerIds);
+            customers.stream().filter(customer -> !customer.inserted()).forEach(customer -> changed.add(customer.id()));
+            customerService.evictCachedCustomers(changed);
+            return new long[] {inserted, customers.size() - inserted, addressCustomerIds.size()};
+        });
+    }
+
+    // Gzip is recognized by its magic bytes, whatever the declared content type
+    static InputStream decompressed(InputStream body) {
+        try {
+            InputStream in = new BufferedInputStream(body);
+            in.mark(2);
+            boolean gzip = in.read() == 0x1f && in.read() == 0x8b;
+            in.reset();
+            return gzip ? new GZIPInputStream(in, GZIP_BUFFER_SIZE) : in;
+        } catch (ZipException | EOFException e) {
+            throw new BadRequestException("Request body is not valid gzip", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Values are escaped as they stream into the COPY, like CustomerService.sanitizeInput escapes API input; invalid
+    // UTF-8 fails the import rather than being replaced
+    static Reader htmlEscaped(InputStream csv) {
+        CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        return new HtmlEscapingCsvReader(new InputStreamReader(csv, utf8));
+    }
+
+    private static String describeCopyError(DataIntegrityViolationException e) {
+        if (e.getMostSpecificCause() instanceof PSQLException psqlException
+                && psqlException.getServerErrorMessage() != null) {
+            ServerErrorMessage error = psqlException.getServerErrorMessage();
+            Matcher line = COPY_LINE.matcher(error.getWhere() == null ? "" : error.getWhere());
+            return error.getMessage() + (line.find() ? " (line " + line.group(1) + ")" : "");
+        }
+        return "could not be loaded";
+    }
+}
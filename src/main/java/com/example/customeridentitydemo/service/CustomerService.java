@@ -1,35 +1,96 @@
 package com.example.customeridentitydemo.service;
 
 import com.example.customeridentitydemo.client.OrderResponseDTO;
-import com.example.customeridentitydemo.client.OrderServiceClient;
+import com.example.customeridentitydemo.client.ResilientOrderServiceClient;
 import com.example.customeridentitydemo.dto.AddressRequestDTO;
 import com.example.customeridentitydemo.dto.AddressResponseDTO;
+import com.example.customeridentitydemo.dto.BatchCreateResponseDTO;
+import com.example.customeridentitydemo.dto.BatchItemResultDTO;
+import com.example.customeridentitydemo.dto.CustomerPageResponseDTO;
 import com.example.customeridentitydemo.dto.CustomerRequestDTO;
 import com.example.customeridentitydemo.dto.CustomerResponseDTO;
+import com.example.customeridentitydemo.exception.BadRequestException;
+import com.example.customeridentitydemo.exception.PreconditionFailedException;
 import com.example.customeridentitydemo.exception.ResourceNotFoundException;
+import com.example.customeridentitydemo.exception.ServiceUnavailableException;
 import com.example.customeridentitydemo.model.Address;
-import com.example.customeridentitydemo.model.AddressType;
 import com.example.customeridentitydemo.model.Customer;
+import com.example.customeridentitydemo.repository.CustomerFilter;
+import com.example.customeridentitydemo.repository.CustomerPageKey;
 import com.example.customeridentitydemo.repository.JdbcCustomerRepository;
 import com.example.customeridentitydemo.repository.JdbcAddressRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.validation.annotation.Validated;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.web.util.HtmlUtils;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Service
 @Validated
+@Slf4j
 public class CustomerService {
 
+    public static final int MAX_PAGE_SIZE = 500;
+
+    // Customers buffered per address lookup while exporting
+    private static final int EXPORT_CHUNK_SIZE = 500;
+
+    // Retry-After sent with a customer read that missed its deadline
+    private static final long READ_RETRY_AFTER_SECONDS = 1;
+
     @Autowired
     private JdbcCustomerRepository customerRepository;
 
@@ -37,17 +98,166 @@ public class CustomerService {
     private JdbcAddressRepository addressRepository;
 
     @Autowired
-    private OrderServiceClient orderServiceClient;
+    private ResilientOrderServiceClient orderServiceClient;
 
-    public List<CustomerResponseDTO> getAllCustomers() {
-        List<Customer> customers = customerRepository.findAll();
-        customers.forEach(customer -> {
-            List<Address> addresses = addressRepository.findByCustomerId(customer.getId());
-            customer.setAddresses(addresses);
-        });
-        return customers.stream()
-                .map(this::convertToCustomerDto)
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    @Qualifier("orderLookupExecutor")
+    private ExecutorService orderLookupExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${customer.read.deadline-ms:2000}")
+    private long readDeadlineMillis = 2000;
+
+    @Value("${customer.cache.enabled:true}")
+    private boolean customerCacheEnabled;
+
+    @Value("${customer.cache.max-size:10000}")
+    private int customerCacheMaxSize = 10000;
+
+    @Value("${customer.cache.ttl:60s}")
+    private Duration customerCacheTtl = Duration.ofSeconds(60);
+
+    // Customers with their addresses by id, as read from the database; null when the cache is disabled
+    private AsyncCache<Long, Customer> customerCache;
+
+    @Value("${customer.batch.max-size:10000}")
+    private int batchMaxSize = 10000;
+
+    @Value("${customer.batch.chunk-size:500}")
+    private int batchChunkSize = 500;
+
+    @Value("${customer.search.max-results:200}")
+    private int searchMaxResults = 200;
+
+    @Value("${customer.search.similarity-threshold:0.4}")
+    private double searchSimilarityThreshold = 0.4;
+
+    @PostConstruct
+    void initCustomerCache() {
+        if (!customerCacheEnabled) return;
+        customerCache = Caffeine.newBuilder()
+                .maximumSize(customerCacheMaxSize)
+                .expireAfterWrite(customerCacheTtl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, customerCache.synchronous(), "customer");
+    }
+
+    public CustomerPageResponseDTO getAllCustomers(String after, int limit) {
+        return getAllCustomers(after, limit, CustomerView.FULL, CustomerFilter.NONE);
+    }
+
+    /**
+     * A page of the customers matching {@code filter}, with only the parts in {@code view}: a partial view selects
+     * just its columns and skips the address query unless addresses are expanded. Orders cannot be expanded on pages.
+     */
+    public CustomerPageResponseDTO getAllCustomers(String after, int limit, CustomerView view, CustomerFilter filter) {
+        if (view != CustomerView.FULL && view.includesOrders()) {
+            throw new BadRequestException("Orders can only be expanded when reading a single customer");
+        }
+        if (filter.createdFrom() != null && filter.createdTo() != null
+                && !filter.createdFrom().isBefore(filter.createdTo())) {
+            throw new BadRequestException("createdFrom must be before createdTo");
+        }
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        CustomerPageKey afterKey = decodeCursor(after, filter.sortColumn());
+
+        // Fetch one extra row to find out whether another page follows
+        List<Customer> customers = view.includesAllFields()
+                ? customerRepository.findPage(afterKey, pageSize + 1, filter)
+                : customerRepository.findPage(afterKey, pageSize + 1, view.columns(), filter);
+        boolean hasNext = customers.size() > pageSize;
+        if (hasNext) {
+            customers = customers.subList(0, pageSize);
+        }
+
+        if (view.includesAddresses()) {
+            attachAddresses(customers);
+        }
+        List<CustomerResponseDTO> content = customers.stream()
+                .map(customer -> view.apply(convertToCustomerDto(customer)))
                 .collect(Collectors.toList());
+
+        String next = hasNext ? encodeCursor(customers.get(customers.size() - 1), filter.sortColumn()) : null;
+        return new CustomerPageResponseDTO(content, next, pageSize);
+    }
+
+    /**
+     * Live customers matching {@code q} by name or email prefix, then by fuzzy similarity, best match first.
+     * Only the first {@code customer.search.max-results} matches can be paged through; results carry no addresses.
+     */
+    @Transactional(readOnly = true)
+    public CustomerPageResponseDTO searchCustomers(String q, String after, int limit) {
+        // Stored values are HTML-escaped, so the query must be too
+        String query = q == null ? "" : sanitizeInput(q).toLowerCase(Locale.ROOT);
+        if (query.length() < 2) {
+            throw new BadRequestException("Search query must be at least 2 characters");
+        }
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        int offset = decodeSearchCursor(after);
+
+        List<Customer> customers = customerRepository.search(
+                query, pageSize + 1, offset, searchMaxResults, searchSimilarityThreshold);
+        boolean hasNext = customers.size() > pageSize;
+        if (hasNext) {
+            customers = customers.subList(0, pageSize);
+        }
+        List<CustomerResponseDTO> content = customers.stream()
+                .map(customer -> {
+                    CustomerResponseDTO dto = convertToCustomerDto(customer);
+                    dto.setAddresses(null);
+                    return dto;
+                })
+                .collect(Collectors.toList());
+
+        String next = hasNext ? encodeSearchCursor(offset + pageSize) : null;
+        return new CustomerPageResponseDTO(content, next, pageSize);
+    }
+
+    /**
+     * Writes every live customer to {@code outputStream} as newline-delimited JSON while reading them from a
+     * server-side cursor, so memory use stays flat regardless of table size. Addresses are loaded per chunk.
+     * Writes block when the client reads slowly, and a disconnect surfaces as an IOException that closes the cursor.
+     */
+    @Transactional(readOnly = true)
+    public long exportCustomers(OutputStream outputStream) throws IOException {
+        long exported = 0;
+        List<Customer> chunk = new ArrayList<>(EXPORT_CHUNK_SIZE);
+        try (Stream<Customer> customers = customerRepository.streamAll()) {
+            Iterator<Customer> iterator = customers.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == EXPORT_CHUNK_SIZE || !iterator.hasNext()) {
+                    writeNdjsonChunk(chunk, outputStream);
+                    exported += chunk.size();
+                    chunk.clear();
+                }
+            }
+        }
+        return exported;
+    }
+
+    private void writeNdjsonChunk(List<Customer> chunk, OutputStream outputStream) throws IOException {
+        attachAddresses(chunk);
+        for (Customer customer : chunk) {
+            outputStream.write(objectMapper.writeValueAsBytes(convertToCustomerDto(customer)));
+            outputStream.write('\n');
+        }
+        outputStream.flush();
     }
 
     @Transactional
@@ -61,6 +271,7 @@ public class CustomerService {
         customer.setPhone(sanitizeInput(customerRequestDTO.getPhone()));
 
         Customer savedCustomer = customerRepository.save(customer);
+        evictAfterCommit(savedCustomer.getId());
 
         // Handle addresses
         if (customerRequestDTO.getAddresses() != null) {
@@ -75,34 +286,321 @@ public class CustomerService {
         return convertToCustomerDto(savedCustomer);
     }
 
+    /**
+     * Creates many customers in one call. Items are validated and sanitized in parallel, then inserted with
+     * JDBC batches in chunks, each chunk in its own short transaction. When a chunk hits a constraint violation
+     * its items are retried one by one, so a bad row only fails itself.
+     */
+    public BatchCreateResponseDTO createCustomers(List<CustomerRequestDTO> customerRequestDTOs) {
+        if (customerRequestDTOs == null || customerRequestDTOs.isEmpty()) {
+            throw new BadRequestException("Batch must contain at least one customer");
+        }
+        if (customerRequestDTOs.size() > batchMaxSize) {
+            throw new BadRequestException("Batch must not contain more than " + batchMaxSize + " customers");
+        }
+
+        BatchItemResultDTO[] results = new BatchItemResultDTO[customerRequestDTOs.size()];
+        List<BatchItem> validItems = IntStream.range(0, customerRequestDTOs.size())
+                .parallel()
+                .mapToObj(index -> prepareBatchItem(index, customerRequestDTOs.get(index), results))
+                .filter(Objects::nonNull)
+                .toList();
+
+        // Unique constraints would reject repeats within the batch anyway; fail them up front instead
+        Set<String> emails = new HashSet<>();
+        Set<String> ssns = new HashSet<>();
+        List<BatchItem> insertableItems = new ArrayList<>();
+        for (BatchItem item : validItems) {
+            if (!emails.add(item.customer().getEmail())) {
+                results[item.index()] = BatchItemResultDTO.failed(item.index(), List.of("email: Email address appears more than once in the batch"));
+            } else if (!ssns.add(item.customer().getSsn())) {
+                results[item.index()] = BatchItemResultDTO.failed(item.index(), List.of("ssn: SSN appears more than once in the batch"));
+            } else {
+                insertableItems.add(item);
+            }
+        }
+
+        for (int from = 0; from < insertableItems.size(); from += batchChunkSize) {
+            List<BatchItem> chunk = insertableItems.subList(from, Math.min(from + batchChunkSize, insertableItems.size()));
+            try {
+                transactionTemplate.executeWithoutResult(status -> insertBatch(chunk));
+                chunk.forEach(item -> results[item.index()] = BatchItemResultDTO.created(item.index(), item.customer().getId()));
+            } catch (DataIntegrityViolationException chunkFailure) {
+                for (BatchItem item : chunk) {
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> insertBatch(List.of(item)));
+                        results[item.index()] = BatchItemResultDTO.created(item.index(), item.customer().getId());
+                    } catch (DataIntegrityViolationException itemFailure) {
+                        results[item.index()] = BatchItemResultDTO.failed(item.index(), List.of(describeConstraintViolation(itemFailure)));
+                    }
+                }
+            }
+        }
+
+        int succeeded = (int) Arrays.stream(results).filter(result -> result.getStatus() == BatchItemResultDTO.Status.CREATED).count();
+        return new BatchCreateResponseDTO(results.length, succeeded, results.length - succeeded, Arrays.asList(results));
+    }
+
+    private BatchItem prepareBatchItem(int index, CustomerRequestDTO customerRequestDTO, BatchItemResultDTO[] results) {
+        if (customerRequestDTO == null) {
+            results[index] = BatchItemResultDTO.failed(index, List.of("Customer must not be null"));
+            return null;
+        }
+        Set<ConstraintViolation<CustomerRequestDTO>> violations = validator.validate(customerRequestDTO);
+        if (!violations.isEmpty()) {
+            results[index] = BatchItemResultDTO.failed(index, violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .toList());
+            return null;
+        }
+
+        Customer customer = new Customer();
+        // Sanitize input to prevent XSS
+        customer.setFirstName(sanitizeInput(customerRequestDTO.getFirstName()));
+        customer.setLastName(sanitizeInput(customerRequestDTO.getLastName()));
+        customer.setEmail(sanitizeInput(customerRequestDTO.getEmail()));
+        customer.setSsn(sanitizeInput(customerRequestDTO.getSsn()));
+        customer.setPhone(sanitizeInput(customerRequestDTO.getPhone()));
+        if (customerRequestDTO.getAddresses() != null) {
+            customerRequestDTO.getAddresses().forEach(addressDto -> customer.addAddress(convertToAddressEntity(addressDto)));
+        }
+        return new BatchItem(index, customer);
+    }
+
+    private void insertBatch(List<BatchItem> items) {
+        List<Customer> customers = items.stream().map(BatchItem::customer).toList();
+        customerRepository.saveAll(customers);
+        addressRepository.saveAll(customers.stream()
+                .flatMap(customer -> customer.getAddresses().stream())
+                .toList());
+    }
+
+    // Mirrors GlobalExceptionHandler so batch items report conflicts the same way as the single-item API
+    private static String describeConstraintViolation(DataIntegrityViolationException ex) {
+        String message = ex.getMostSpecificCause().getMessage();
+        if (message != null && message.contains("email")) {
+            return "email: Email address already exists.";
+        } else if (message != null && message.contains("ssn")) {
+            return "ssn: SSN already exists.";
+        }
+        return "A unique constraint was violated or data is invalid.";
+    }
+
+    private record BatchItem(int index, Customer customer) {
+    }
+
+    /**
+     * Loads the customer with addresses and orders. The order-service call starts first on the order lookup
+     * executor and overlaps with the two database reads on this thread, so latency is roughly the slowest of
+     * the three rather than their sum. Orders must arrive within {@code customer.read.deadline-ms} of the start
+     * of the read; otherwise, or when the database reads fail, the customer is returned without orders. A late
+     * order call is left to finish, filling the order cache, rather than interrupted: it may be leading a cache
+     * load other readers share, and an interrupt would fail them all and count against the circuit breaker.
+     * The customer and addresses come from the customer cache when it holds them; the database reads behind a
+     * miss take the time left until the deadline as their query timeout, and a reader waiting on another
+     * reader's load waits no longer than that either. A customer read that misses the deadline fails with
+     * {@link ServiceUnavailableException}.
+     */
     public CustomerResponseDTO getCustomerById(Long id) {
-        Customer customer = customerRepository.findById(id)
+        return getCustomerById(id, CustomerView.FULL);
+    }
+
+    /**
+     * Same as {@link #getCustomerById(Long)} with only the parts in {@code view}. The order service is only called
+     * when orders are expanded. A partial view is served from a cached customer when there is one; otherwise it
+     * selects just its columns, and addresses only when expanded, without loading the customer into the cache.
+     */
+    public CustomerResponseDTO getCustomerById(Long id, CustomerView view) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(readDeadlineMillis);
+        Future<List<OrderResponseDTO>> orderLookup = view.includesOrders() ? submitOrderLookup(id) : null;
+        try {
+            Customer customer = readCustomer(id, view, deadline)
+                    .orElseThrow(() -> new ResourceNotFoundException("Customer not found with id: " + id));
+
+            CustomerResponseDTO customerResponseDTO = view.apply(convertToCustomerDto(customer));
+            if (orderLookup != null) {
+                customerResponseDTO.setOrders(awaitOrders(orderLookup, id, deadline));
+            }
+            return customerResponseDTO;
+        } finally {
+            // No-op once the lookup completed; otherwise drops a queued lookup and leaves a running one to finish
+            if (orderLookup != null) {
+                orderLookup.cancel(false);
+            }
+        }
+    }
+
+    // Cache lookups stay outside any transaction; only the database loads behind a miss take a connection
+    private Optional<Customer> readCustomer(Long id, CustomerView view, long deadline) {
+        if (view.includesAllFields() && view.includesAddresses()) {
+            return customerCache != null
+                    ? getCachedCustomer(id, deadline)
+                    : withinDeadline(id, deadline, () -> loadCustomer(id));
+        }
+        Customer cached = cachedCustomer(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return withinDeadline(id, deadline, () -> customerRepository.findById(id, view.columns()).map(customer -> {
+            if (view.includesAddresses()) {
+                customer.setAddresses(addressRepository.findByCustomerId(id));
+            }
+            return customer;
+        }));
+    }
+
+    /**
+     * Runs the reads in a read-only transaction that times out at the deadline, so each statement gets the time
+     * left as its query timeout and none starts after it. JDBC query timeouts are whole seconds; the time left is
+     * rounded up.
+     */
+    private <T> T withinDeadline(Long id, long deadline, Supplier<T> reads) {
+        long remainingNanos = deadline - System.nanoTime();
+        TransactionTemplate readTransaction = new TransactionTemplate(transactionManager);
+        readTransaction.setReadOnly(true);
+        readTransaction.setTimeout((int) Math.max(1,
+                TimeUnit.NANOSECONDS.toSeconds(remainingNanos + TimeUnit.SECONDS.toNanos(1) - 1)));
+        try {
+            return readTransaction.execute(status -> reads.get());
+        } catch (TransactionTimedOutException | QueryTimeoutException e) {
+            throw readDeadlineMissed(id);
+        } catch (DataAccessException e) {
+            // PostgreSQL reports a statement cancelled at its query timeout as query_canceled
+            if (e.getMostSpecificCause() instanceof SQLException cause && "57014".equals(cause.getSQLState())) {
+                throw readDeadlineMissed(id);
+            }
+            throw e;
+        }
+    }
+
+    private ServiceUnavailableException readDeadlineMissed(Long id) {
+        log.warn("Read of customer {} missed the {} ms read deadline", id, readDeadlineMillis);
+        return new ServiceUnavailableException("Customer read timed out", READ_RETRY_AFTER_SECONDS);
+    }
+
+    /**
+     * The customer's current ETag, from the cached aggregate when one is loaded and otherwise from a query of
+     * updated_at alone, so validating a conditional GET never loads addresses or orders.
+     */
+    public String getCustomerETag(Long id) {
+        Customer cached = cachedCustomer(id);
+        if (cached != null) {
+            return CustomerETags.of(id, cached.getUpdatedAt());
+        }
+        LocalDateTime updatedAt = customerRepository.findUpdatedAt(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Customer not found with id: " + id));
+        return CustomerETags.of(id, updatedAt);
+    }
+
+    // The cached customer if one is fully loaded, without waiting for or starting a load
+    private Customer cachedCustomer(Long id) {
+        CompletableFuture<Customer> cached = customerCache != null ? customerCache.getIfPresent(id) : null;
+        return cached != null && cached.isDone() && !cached.isCompletedExceptionally() ? cached.join() : null;
+    }
+
+    private Optional<Customer> loadCustomer(Long id) {
+        return customerRepository.findById(id).map(customer -> {
+            customer.setAddresses(addressRepository.findByCustomerId(id));
+            return customer;
+        });
+    }
 
-        List<Address> addresses = addressRepository.findByCustomerId(id);
-        customer.setAddresses(addresses);
+    /**
+     * A miss is loaded on the calling thread, outside the cache's locks, and concurrent readers of the same id wait
+     * on that one load. Unknown ids complete the load with null, which Caffeine does not store. An eviction that
+     * lands while a load is in flight discards it, so a load that started before a write committed can never be
+     * cached after it. Cached customers are shared between readers and must not be modified.
+     */
+    private Optional<Customer> getCachedCustomer(Long id, long deadline) {
+        CompletableFuture<Customer> load = new CompletableFuture<>();
+        CompletableFuture<Customer> customer = customerCache.get(id, (key, executor) -> load);
+        if (customer == load) {
+            try {
+                load.complete(withinDeadline(id, deadline, () -> loadCustomer(id)).orElse(null));
+            } catch (RuntimeException e) {
+                load.completeExceptionally(e);
+            }
+        }
+        try {
+            return Optional.ofNullable(customer.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+        } catch (TimeoutException e) {
+            throw readDeadlineMissed(id);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for customer " + id, e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Evicts once the surrounding transaction commits, so no reader can re-cache the pre-commit rows in between
+    private void evictAfterCommit(Long id) {
+        afterCommit(() -> customerCache.synchronous().invalidate(id));
+    }
+
+    private void afterCommit(Runnable eviction) {
+        if (customerCache == null) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        } else {
+            eviction.run();
+        }
+    }
 
-        List<OrderResponseDTO> orders = Collections.emptyList();
+    private Future<List<OrderResponseDTO>> submitOrderLookup(Long id) {
         try {
-            orders = orderServiceClient.getOrdersByCustomerId(id);
-        } catch (Exception e) {
-            // Log the exception, but don't fail the request if the order service is down
-            // In a real-world scenario, you might want to implement a circuit breaker here
+            return orderLookupExecutor.submit(() -> orderServiceClient.getOrdersByCustomerId(id));
+        } catch (RejectedExecutionException e) {
+            log.warn("Order lookup executor saturated, returning customer {} without orders", id);
+            return CompletableFuture.completedFuture(Collections.emptyList());
         }
+    }
 
-        CustomerResponseDTO customerResponseDTO = convertToCustomerDto(customer);
-        customerResponseDTO.setOrders(orders);
-        return customerResponseDTO;
+    private List<OrderResponseDTO> awaitOrders(Future<List<OrderResponseDTO>> orderLookup, Long id, long deadline) {
+        try {
+            List<OrderResponseDTO> orders = orderLookup.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return orders != null ? orders : Collections.emptyList();
+        } catch (TimeoutException e) {
+            log.warn("Order lookup for customer {} missed the {} ms read deadline", id, readDeadlineMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Don't fail the request if the order service is down
+            log.warn("Order lookup for customer {} failed: {}", id, e.getCause().getMessage());
+        }
+        return Collections.emptyList();
     }
 
+    /**
+     * Soft-deletes the customer. With {@code ifMatch} (an If-Match header value, or null) the row is locked and
+     * the delete only happens when the customer's current ETag matches.
+     */
     @Transactional
-    public void deleteCustomer(Long id) {
+    public void deleteCustomer(Long id, String ifMatch) {
+        if (ifMatch != null) {
+            requireMatch(id, ifMatch, customerRepository.findByIdForUpdate(id));
+        }
         customerRepository.deleteById(id);
+        evictAfterCommit(id);
     }
 
+    /**
+     * Replaces the customer and its addresses. With {@code ifMatch} (an If-Match header value, or null) the row is
+     * locked and the update only happens when the customer's current ETag matches.
+     */
     @Transactional
-    public CustomerResponseDTO updateCustomer(@NotNull Long id, @Valid @NotNull CustomerRequestDTO customerRequestDTO) {
-        Customer existingCustomer = customerRepository.findById(id)
+    public CustomerResponseDTO updateCustomer(@NotNull Long id, @Valid @NotNull CustomerRequestDTO customerRequestDTO, String ifMatch) {
+        Optional<Customer> current = ifMatch != null ? customerRepository.findByIdForUpdate(id) : customerRepository.findById(id);
+        if (ifMatch != null) {
+            requireMatch(id, ifMatch, current);
+        }
+        Customer existingCustomer = current
                 .orElseThrow(() -> new ResourceNotFoundException("Customer not found with id: " + id));
 
         // Sanitize input to prevent XSS
@@ -113,31 +611,102 @@ public class CustomerService {
         existingCustomer.setPhone(sanitizeInput(customerRequestDTO.getPhone()));
 
         Customer updatedCustomer = customerRepository.update(existingCustomer);
+        evictAfterCommit(id);
 
-        // Handle addresses update
-        // Clear existing addresses and add new ones from DTO
-        addressRepository.findByCustomerId(id).forEach(address -> addressRepository.deleteById(address.getId()));
-        if (customerRequestDTO.getAddresses() != null) {
-            customerRequestDTO.getAddresses().forEach(addressDto -> {
-                Address address = convertToAddressEntity(addressDto);
-                address.setCustomer(updatedCustomer);
-                addressRepository.save(address);
-            });
-        }
+        updatedCustomer.setAddresses(syncAddresses(updatedCustomer, customerRequestDTO.getAddresses()));
 
         return convertToCustomerDto(updatedCustomer);
     }
 
-    @Transactional
-    public void populateTimestampsForExistingCustomers() {
-        List<Customer> customers = customerRepository.findAll();
-        for (Customer customer : customers) {
-            if (customer.getCreatedAt() == null) {
-                customer.setCreatedAt(LocalDateTime.now());
+    /**
+     * Brings the stored addresses in line with the requested ones and returns them in request order. Requested
+     * addresses identical to a stored one are kept untouched; the rest overwrite the remaining stored rows
+     * (same address type first) and anything still left over is inserted or deleted. So an update writes only
+     * what changed: nothing for unchanged addresses, and at most one batched UPDATE, one batched INSERT and one
+     * DELETE otherwise.
+     */
+    private List<Address> syncAddresses(Customer customer, List<AddressRequestDTO> requested) {
+        List<AddressRequestDTO> requestedAddresses = requested != null ? requested : List.of();
+        List<Address> unmatched = new ArrayList<>(addressRepository.findByCustomerId(customer.getId()));
+        Address[] result = new Address[requestedAddresses.size()];
+
+        // Unchanged addresses
+        for (int i = 0; i < requestedAddresses.size(); i++) {
+            AddressRequestDTO addressDto = requestedAddresses.get(i);
+            for (Iterator<Address> stored = unmatched.iterator(); stored.hasNext(); ) {
+                Address address = stored.next();
+                if (hasSameContents(address, addressDto)) {
+                    result[i] = address;
+                    stored.remove();
+                    break;
+                }
+            }
+        }
+
+        // Changed addresses reuse a leftover row, preferably one of the same type
+        List<Address> toUpdate = new ArrayList<>();
+        List<Address> toInsert = new ArrayList<>();
+        for (int i = 0; i < requestedAddresses.size(); i++) {
+            if (result[i] != null) continue;
+            AddressRequestDTO addressDto = requestedAddresses.get(i);
+            Address address = convertToAddressEntity(addressDto);
+            address.setCustomer(customer);
+            Address reused = unmatched.stream()
+                    .filter(stored -> stored.getAddressType() == addressDto.getAddressType())
+                    .findFirst()
+                    .orElse(unmatched.isEmpty() ? null : unmatched.get(0));
+            if (reused != null) {
+                unmatched.remove(reused);
+                address.setId(reused.getId());
+                toUpdate.add(address);
+            } else {
+                toInsert.add(address);
             }
-            customer.setUpdatedAt(LocalDateTime.now());
-            customerRepository.update(customer);
+            result[i] = address;
+        }
+
+        if (!unmatched.isEmpty()) {
+            List<Long> keepIds = Arrays.stream(result)
+                    .map(Address::getId)
+                    .filter(Objects::nonNull)
+                    .toList();
+            addressRepository.deleteByCustomerIdExcept(customer.getId(), keepIds);
+        }
+        addressRepository.updateAll(toUpdate);
+        addressRepository.saveAll(toInsert);
+        return new ArrayList<>(Arrays.asList(result));
+    }
+
+    private static boolean hasSameContents(Address address, AddressRequestDTO addressDto) {
+        return Objects.equals(address.getStreet(), addressDto.getStreet())
+                && Objects.equals(address.getCity(), addressDto.getCity())
+                && Objects.equals(address.getState(), addressDto.getState())
+                && Objects.equals(address.getZipCode(), addressDto.getZipCode())
+                && address.getAddressType() == addressDto.getAddressType();
+    }
+
+    private static void requireMatch(Long id, String ifMatch, Optional<Customer> current) {
+        if (current.isEmpty()) {
+            throw new PreconditionFailedException("Customer " + id + " does not exist");
         }
+        if (!CustomerETags.matchesStrongly(ifMatch, CustomerETags.of(id, current.get().getUpdatedAt()))) {
+            throw new PreconditionFailedException("Customer " + id + " has been modified");
+        }
+    }
+
+    /** Evicts the given cached customers once the surrounding transaction commits. */
+    public void evictCachedCustomers(Collection<Long> ids) {
+        if (ids.isEmpty()) return;
+        afterCommit(() -> customerCache.synchronous().invalidateAll(ids));
+    }
+
+    // Loads the addresses of all given customers with a constant number of queries and groups them in memory
+    private void attachAddresses(List<Customer> customers) {
+        if (customers.isEmpty()) return;
+        List<Long> customerIds = customers.stream().map(Customer::getId).toList();
+        Map<Long, List<Address>> addressesByCustomerId = addressRepository.findByCustomerIds(customerIds);
+        customers.forEach(customer -> customer.setAddresses(
+                addressesByCustomerId.getOrDefault(customer.getId(), new ArrayList<>())));
     }
 
     private CustomerResponseDTO convertToCustomerDto(Customer customer) {
@@ -181,32 +750,62 @@ public class CustomerService {
         );
     }
 
-    public void generateDummyData() {
-        for (int i = 1; i <= 40; i++) {
-            CustomerRequestDTO customerRequestDTO = new CustomerRequestDTO(
-                    "FirstName" + i,
-                    "LastName" + i,
-                    "email" + i + "@example.com",
-                    "SSN" + i,
-                    "123-456-78" + String.format("%02d", i),
-                    null // Addresses will be added below
-            );
-
-            // Add 1 to 3 random addresses for each customer
-            int numAddresses = (int) (Math.random() * 3) + 1; // 1, 2, or 3 addresses
-            List<AddressRequestDTO> addresses = new ArrayList<>();
-            for (int j = 0; j < numAddresses; j++) {
-                addresses.add(new AddressRequestDTO(
-                        "Street" + i + "-" + j,
-                        "City" + i,
-                        "State" + (char) ('A' + (int) (Math.random() * 26)),
-                        "" + (10000 + (int) (Math.random() * 89999)),
-                        AddressType.values()[(int) (Math.random() * AddressType.values().length)]
-                ));
+    // Pagination cursor helpers - the cursor is the sort key of the last customer of the page: "id:<id>", or
+    // "<column>:<id>:<time>" for listings ordered by a timestamp column. Base64url encoded so clients treat it as
+    // opaque; a cursor only resumes a listing with the same sort column
+    private static String encodeCursor(Customer last, String sortColumn) {
+        String key = switch (sortColumn) {
+            case "created_at" -> "created_at:" + last.getId() + ":" + last.getCreatedAt();
+            case "updated_at" -> "updated_at:" + last.getId() + ":" + last.getUpdatedAt();
+            default -> "id:" + last.getId();
+        };
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static CustomerPageKey decodeCursor(String cursor, String sortColumn) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = decoded.split(":", 3);
+            if (!parts[0].equals(sortColumn)) {
+                throw new BadRequestException("Invalid pagination cursor");
+            }
+            long id = Long.parseLong(parts[1]);
+            if (sortColumn.equals("id")) {
+                if (parts.length != 2) {
+                    throw new BadRequestException("Invalid pagination cursor");
+                }
+                return new CustomerPageKey(null, id);
+            }
+            if (parts.length != 3) {
+                throw new BadRequestException("Invalid pagination cursor");
             }
-            customerRequestDTO.setAddresses(addresses);
+            return new CustomerPageKey(LocalDateTime.parse(parts[2]), id);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | DateTimeParseException e) {
+            throw new BadRequestException("Invalid pagination cursor", e);
+        }
+    }
 
-            createCustomer(customerRequestDTO);
+    // Search results are ranked, not ordered by id, so their cursor is the offset into the ranking
+    private static String encodeSearchCursor(int offset) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("offset:" + offset).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int decodeSearchCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) return 0;
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith("offset:")) {
+                throw new BadRequestException("Invalid pagination cursor");
+            }
+            int offset = Integer.parseInt(decoded.substring(7));
+            if (offset < 0) {
+                throw new BadRequestException("Invalid pagination cursor");
+            }
+            return offset;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid pagination cursor", e);
         }
     }
 
@@ -0,0 +1,44 @@
+package com.example.customeridentitydemo.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Fills in created_at and updated_at of customers created before the timestamp columns existed. Rows that already
+ * have both timestamps are left alone.
+ */
+@Component
+public class CustomerTimestampsBackfill implements Backfill {
+
+    private final CustomerService customerService;
+
+    public CustomerTimestampsBackfill(CustomerService customerService) {
+        this.customerService = customerService;
+    }
+
+    @Override
+    public String name() {
+        return "customer-timestamps";
+    }
+
+    @Override
+    public String table() {
+        return "customers";
+    }
+
+    @Override
+    public String chunkSql() {
+        return """
+                UPDATE customers
+                SET created_at = COALESCE(created_at, LOCALTIMESTAMP), updated_at = COALESCE(updated_at, LOCALTIMESTAMP)
+                WHERE id BETWEEN :from_id AND :to_id AND (created_at IS NULL OR updated_at IS NULL)
+                RETURNING id
+                """;
+    }
+
+    @Override
+    public void afterChunk(List<Long> updatedIds) {
+        customerService.evictCachedCustomers(updatedIds);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.customeridentitydemo.service;
+
+import com.example.customeridentitydemo.dto.CustomerResponseDTO;
+import com.example.customeridentitydemo.dto.PartialCustomerResponseDTO;
+import com.example.customeridentitydemo.exception.BadRequestException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The parts of a customer a read asks for, parsed from the {@code fields} and {@code expand} query parameters.
+ * Without either parameter a read returns what it always has ({@link #FULL}). Once either is given, only the listed
+ * fields and expansions are returned, plus {@code id} and {@code updatedAt}, which identify the customer and its
+ * version. Columns, addresses and orders that are not asked for are never read.
+ */
+public final class CustomerView {
+
+    // Response fields by their customers column; also the whitelist of selectable columns
+    private static final Map<String, String> COLUMNS_BY_FIELD = new LinkedHashMap<>();
+
+    static {
+        COLUMNS_BY_FIELD.put("id", "id");
+        COLUMNS_BY_FIELD.put("firstName", "first_name");
+        COLUMNS_BY_FIELD.put("lastName", "last_name");
+        COLUMNS_BY_FIELD.put("email", "email");
+        COLUMNS_BY_FIELD.put("ssn", "ssn");
+        COLUMNS_BY_FIELD.put("phone", "phone");
+        COLUMNS_BY_FIELD.put("status", "status");
+        COLUMNS_BY_FIELD.put("createdAt", "created_at");
+        COLUMNS_BY_FIELD.put("updatedAt", "updated_at");
+    }
+
+    private static final Set<String> ALWAYS_INCLUDED = Set.of("id", "updatedAt");
+
+    public static final CustomerView FULL = new CustomerView(COLUMNS_BY_FIELD.keySet(), true, true);
+
+    private final Set<String> fields;
+    private final boolean addresses;
+    private final boolean orders;
+
+    private CustomerView(Set<String> fields, boolean addresses, boolean orders) {
+        this.fields = Collections.unmodifiableSet(fields);
+        this.addresses = addresses;
+        this.orders = orders;
+    }
+
+    /**
+     * @param fields comma-separated response fields, or null for all of them
+     * @param expand comma-separated expansions ({@code addresses}, {@code orders}), or null for none
+     * @throws BadRequestException for unknown field or expansion names
+     */
+    public static CustomerView parse(String fields, String expand) {
+        if (fields == null && expand == null) {
+            return FULL;
+        }
+        Set<String> selected = new LinkedHashSet<>(ALWAYS_INCLUDED);
+        if (fields != null) {
+            for (String field : split(fields)) {
+                if (!COLUMNS_BY_FIELD.containsKey(field)) {
+                    throw new BadRequestException("Unknown field '" + field + "'; valid fields are "
+                            + String.join(", ", COLUMNS_BY_FIELD.keySet()));
+                }
+                selected.add(field);
+            }
+        } else {
+            selected.addAll(COLUMNS_BY_FIELD.keySet());
+        }
+        boolean addresses = false;
+        boolean orders = false;
+        for (String expansion : expand != null ? split(expand) : Set.<String>of()) {
+            switch (expansion) {
+                case "addresses" -> addresses = true;
+                case "orders" -> orders = true;
+                default -> throw new BadRequestException(
+                        "Unknown expansion '" + expansion + "'; valid expansions are addresses, orders");
+            }
+        }
+        return new CustomerView(selected, addresses, orders);
+    }
+
+    public boolean includesAddresses() {
+        return addresses;
+    }
+
+    public boolean includesOrders() {
+        return orders;
+    }
+
+    public boolean includesAllFields() {
+        return fields.size() == COLUMNS_BY_FIELD.size();
+    }
+
+    /** The customers columns backing the selected fields. */
+    public Set<String> columns() {
+        return fields.stream().map(COLUMNS_BY_FIELD::get).collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * Clears the fields and expansions not asked for and returns the customer as a {@link PartialCustomerResponseDTO},
+     * which leaves them out of the JSON. The full view is returned as is, null fields included.
+     */
+    public CustomerResponseDTO apply(CustomerResponseDTO customer) {
+        if (this == FULL) {
+            return customer;
+        }
+        if (!fields.contains("firstName")) customer.setFirstName(null);
+        if (!fields.contains("lastName")) customer.setLastName(null);
+        if (!fields.contains("email")) customer.setEmail(null);
+        if (!fields.contains("ssn")) customer.setSsn(null);
+        if (!fields.contains("phone")) customer.setPhone(null);
+        if (!fields.contains("status")) customer.setStatus(null);
+        if (!fields.contains("createdAt")) customer.setCreatedAt(null);
+        if (!addresses) customer.setAddresses(null);
+        if (!orders) customer.setOrders(null);
+        return new PartialCustomerResponseDTO(customer);
+    }
+
+    private static Set<String> split(String list) {
+        return Arrays.stream(list.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+}
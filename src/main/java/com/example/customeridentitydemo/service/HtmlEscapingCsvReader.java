@@ -0,0 +1,127 @@
+package com.example.customeridentitydemo.service;
+
+import org.springframework.web.util.HtmlUtils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Objects;
+
+/**
+ * Reads CSV with every value HTML-escaped like {@link CustomerService#sanitizeInput} escapes API input, in one pass:
+ * each character is looked up once in a table of the entity references {@link HtmlUtils#htmlEscape} uses. Quotes
+ * that delimit values are CSV syntax and pass through; a doubled quote inside a quoted value is a quote character and
+ * is escaped. As in Postgres' CSV COPY, a quote anywhere outside a quoted section opens one. Escaping neither adds
+ * nor removes the characters {@link String#trim} strips, so values may still be trimmed afterwards.
+ */
+final class HtmlEscapingCsvReader extends Reader {
+
+    private static final int INPUT_BUFFER_SIZE = 8192;
+
+    // Entity reference by character for every character htmlEscape changes; all of them are in the BMP
+    private static final String[] ESCAPES = htmlEscapes();
+
+    private final Reader in;
+    private final char[] input = new char[INPUT_BUFFER_SIZE];
+    private final StringBuilder output = new StringBuilder();
+    private int outputPosition;
+    // 1 when a high surrogate that ended the last chunk was held back in input[0] to be escaped with its pair
+    private int carried;
+    private boolean inQuotes;
+    // A quote inside a quoted section: it closes the section unless the next character is a quote too
+    private boolean quotePending;
+    private boolean eof;
+
+    HtmlEscapingCsvReader(Reader in) {
+        this.in = in;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cbuf.length);
+        if (len == 0) return 0;
+        while (outputPosition == output.length()) {
+            if (eof) return -1;
+            fill();
+        }
+        int available = output.length() - outputPosition;
+        int n = Math.min(len, available);
+        // The driver encodes every read on its own, so a read must not end between the halves of a surrogate pair
+        if (n > 1 && n < available && Character.isHighSurrogate(output.charAt(outputPosition + n - 1))) {
+            n--;
+        }
+        output.getChars(outputPosition, outputPosition + n, cbuf, off);
+        outputPosition += n;
+        return n;
+    }
+
+    private void fill() throws IOException {
+        output.setLength(0);
+        outputPosition = 0;
+        int read = in.read(input, carried, input.length - carried);
+        if (read < 0) {
+            eof = true;
+            read = 0;
+        }
+        int end = carried + read;
+        carried = 0;
+        if (!eof && end > 0 && Character.isHighSurrogate(input[end - 1])) {
+            end--;
+            carried = 1;
+        }
+        for (int i = 0; i < end; i++) {
+            escape(input[i]);
+        }
+        if (carried == 1) {
+            input[0] = input[end];
+        }
+        if (eof && quotePending) {
+            quotePending = false;
+            output.append('"');
+        }
+    }
+
+    private void escape(char c) {
+        if (quotePending) {
+            quotePending = false;
+            if (c == '"') {
+                output.append("&quot;");
+                return;
+            }
+            inQuotes = false;
+            output.append('"');
+        }
+        if (c == '"') {
+            if (inQuotes) {
+                quotePending = true;
+            } else {
+                inQuotes = true;
+                output.append('"');
+            }
+            return;
+        }
+        String escaped = ESCAPES[c];
+        if (escaped != null) {
+            output.append(escaped);
+        } else {
+            output.append(c);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private static String[] htmlEscapes() {
+        String[] escapes = new String[Character.MAX_VALUE + 1];
+        for (char c = 1; c < Character.MAX_VALUE; c++) {
+            if (Character.isSurrogate(c)) continue;
+            String character = String.valueOf(c);
+            String escaped = HtmlUtils.htmlEscape(character);
+            if (!escaped.equals(character)) {
+                escapes[c] = escaped;
+            }
+        }
+        return escapes;
+    }
+}
@@ -0,0 +1,349 @@
+package com.example.customeridentitydemo.service;
+
+import com.example.customeridentitydemo.dto.DataGenerationResponseDTO;
+import com.example.customeridentitydemo.exception.BadRequestException;
+import com.example.customeridentitydemo.model.AddressType;
+import com.example.customeridentitydemo.model.CustomerStatus;
+import com.example.customeridentitydemo.repository.JdbcBulkLoadRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Reader;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Loads seeded synthetic customers and addresses through COPY, for benchmarks, plan tests and reproducing problems
+ * at production scale. The n-th customer of a run is a function of the seed and n alone, so a seed always yields the
+ * same dataset; only the ids continue the customers sequence, and emails and SSNs embed the id so that repeated runs
+ * never collide.
+ * <p>
+ * Customers are created in id order over {@code data-generator.created-from} to {@code created-to}; 40% were
+ * updated later, {@code data-generator.deleted-ratio} are soft-deleted. Names follow a Zipf distribution over a few
+ * thousand first names and tens of thousands of last names, like real name data. Customers have 0 to 5 addresses,
+ * most of them one.
+ */
+@Component
+@Slf4j
+public class SyntheticDataGenerator {
+
+    private static final String CUSTOMER_COPY = "COPY customers (id, first_name, last_name, email, ssn, phone, status, "
+            + "created_at, updated_at, deleted_at) FROM STDIN";
+    private static final String ADDRESS_COPY = "COPY addresses (customer_id, street, city, state, zip_code, "
+            + "address_type, created_at, updated_at) FROM STDIN";
+
+    private static final double UPDATED_SHARE = 0.4;
+    private static final double PHONE_SHARE = 0.85;
+    private static final long MAX_DELETION_DELAY_SECONDS = Duration.ofDays(30).toSeconds();
+    // Separates the address draws of a customer from its own
+    private static final long ADDRESS_STREAM = 0x5DEECE66DL;
+
+    // Percent of customers with 0, 1, ... 5 addresses
+    private static final WeightedPool ADDRESS_COUNTS =
+            new WeightedPool(new String[] {"0", "1", "2", "3", "4", "5"}, new double[] {8, 60, 22, 7, 2, 1});
+    // Long-tail names are spelled from these; must precede the name pools, which are built from them
+    private static final String[] SYLLABLES = {"ka", "ren", "mo", "li", "sa", "tor", "vel", "an", "ni", "bo", "dre",
+            "la", "mi", "ros", "te", "gar", "el", "sun", "da", "ho", "fin", "ma", "ber", "yo"};
+    private static final WeightedPool FIRST_NAMES = WeightedPool.zipf(new String[] {
+            "James", "Mary", "Michael", "Patricia", "John", "Jennifer", "Robert", "Linda", "David", "Elizabeth",
+            "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Christopher", "Karen",
+            "Charles", "Lisa", "Daniel", "Nancy", "Matthew", "Betty", "Anthony", "Sandra", "Mark", "Margaret",
+            "Donald", "Ashley", "Steven", "Kimberly", "Andrew", "Emily", "Paul", "Donna", "Joshua", "Michelle",
+            "Maria", "Jose", "Wei", "Priya", "Mohammed", "Sofia", "Juan", "Olga", "Hiroshi", "Aisha"}, 5_000, 0.8);
+    private static final WeightedPool LAST_NAMES = WeightedPool.zipf(new String[] {
+            "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+            "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore", "Jackson", "Martin",
+            "Lee", "Perez", "Thompson", "White", "Harris", "Sanchez", "Clark", "Ramirez", "Lewis", "Robinson",
+            "Walker", "Young", "Allen", "King", "Wright", "Scott", "Torres", "Nguyen", "Hill", "Flores",
+            "Green", "Adams", "Nelson", "Baker", "Hall", "Rivera", "Campbell", "Mitchell", "Carter", "Roberts",
+            "Kim", "Patel", "Chen", "Wang", "Singh", "Cohen", "Murphy", "Schmidt", "Kowalski", "Okafor"}, 50_000, 0.8);
+    private static final WeightedPool EMAIL_DOMAINS = new WeightedPool(
+            new String[] {"gmail.com", "yahoo.com", "outlook.com", "hotmail.com", "icloud.com", "aol.com", "example.com"},
+            new double[] {40, 12, 10, 8, 6, 3, 21});
+    // City, state and the first three zip code digits
+    private static final WeightedPool CITIES = WeightedPool.zipf(new String[] {
+            "New York|NY|100", "Los Angeles|CA|900", "Chicago|IL|606", "Houston|TX|770", "Phoenix|AZ|850",
+            "Philadelphia|PA|191", "San Antonio|TX|782", "San Diego|CA|921", "Dallas|TX|752", "San Jose|CA|951",
+            "Austin|TX|787", "Jacksonville|FL|322", "Columbus|OH|432", "Charlotte|NC|282", "Indianapolis|IN|462",
+            "Seattle|WA|981", "Denver|CO|802", "Boston|MA|021", "Nashville|TN|372", "Portland|OR|972",
+            "Las Vegas|NV|891", "Detroit|MI|482", "Atlanta|GA|303", "Miami|FL|331", "Minneapolis|MN|554",
+            "Springfield|IL|627", "Madison|WI|537", "Boise|ID|837", "Burlington|VT|054", "Anchorage|AK|995"}, 30, 1.0);
+    private static final WeightedPool STREETS = WeightedPool.zipf(new String[] {
+            "Main", "Oak", "Pine", "Maple", "Cedar", "Elm", "Washington", "Lake", "Hill", "Park", "Walnut", "Sunset",
+            "Lincoln", "Jackson", "Church", "River", "Highland", "Mill", "Center", "Forest", "Spring", "Ridge"}, 22, 0.8);
+    private static final String[] STREET_SUFFIXES = {"St", "Ave", "Rd", "Blvd", "Ln", "Dr", "Ct", "Way", "Pl"};
+    private static final AddressType[] SECONDARY_ADDRESS_TYPES = {AddressType.SHIPPING, AddressType.BILLING, AddressType.WORK};
+
+    private final JdbcBulkLoadRepository bulkLoadRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long maxCustomers;
+    private final double deletedRatio;
+    private final long createdFrom;
+    private final long createdTo;
+
+    public SyntheticDataGenerator(JdbcBulkLoadRepository bulkLoadRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${data-generator.batch-size:100000}") int batchSize,
+                                  @Value("${data-generator.max-customers:100000000}") long maxCustomers,
+                                  @Value("${data-generator.deleted-ratio:0.04}") double deletedRatio,
+                                  @Value("${data-generator.created-from:2023-01-01}") String createdFrom,
+                                  @Value("${data-generator.created-to:2025-01-01}") String createdTo) {
+        this.bulkLoadRepository = bulkLoadRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxCustomers = maxCustomers;
+        this.deletedRatio = deletedRatio;
+        this.createdFrom = LocalDate.parse(createdFrom).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        this.createdTo = LocalDate.parse(createdTo).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        if (this.createdTo <= this.createdFrom) {
+            throw new IllegalArgumentException("data-generator.created-to must be after created-from");
+        }
+    }
+
+    /**
+     * Generates {@code customers} customers with their addresses from {@code seed}, committing every
+     * {@code data-generator.batch-size} customers, then refreshes the planner statistics of both tables.
+     */
+    public DataGenerationResponseDTO generate(long customers, long seed) {
+        if (customers < 1 || customers > maxCustomers) {
+            throw new BadRequestException("customers must be between 1 and " + maxCustomers);
+        }
+        long started = System.nanoTime();
+        long firstId = transactionTemplate.execute(status -> bulkLoadRepository.reserveCustomerIds(customers));
+        long addresses = 0;
+        long deleted = 0;
+        for (long from = 0; from < customers; from += batchSize) {
+            var customerRows = new CustomerRows(seed, customers, firstId, from, Math.min(from + batchSize, customers));
+            var addressRows = new AddressRows(seed, customers, firstId, from, Math.min(from + batchSize, customers));
+            transactionTemplate.executeWithoutResult(status -> {
+                bulkLoadRepository.copyIn("customers", CUSTOMER_COPY, customerRows);
+                bulkLoadRepository.copyIn("addresses", ADDRESS_COPY, addressRows);
+            });
+            deleted += customerRows.deleted;
+            addresses += addressRows.addresses;
+            log.debug("Generated {} of {} customers", Math.min(from + batchSize, customers), customers);
+        }
+        bulkLoadRepository.analyze("customers");
+        bulkLoadRepository.analyze("addresses");
+
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - started).toMillis();
+        log.info("Generated {} customers ({} deleted) and {} addresses from seed {} in {} ms",
+                customers, deleted, addresses, seed, elapsedMillis);
+        return new DataGenerationResponseDTO(seed, customers, deleted, addresses,
+                firstId, firstId + customers - 1, elapsedMillis);
+    }
+
+    /** COPY text rows of customers {@code from} (inclusive) to {@code to} of a run, produced as they are read. */
+    Reader customerRows(long seed, long customers, long firstId, long from, long to) {
+        return new CustomerRows(seed, customers, firstId, from, to);
+    }
+
+    /** COPY text rows of the addresses of customers {@code from} (inclusive) to {@code to} of a run. */
+    Reader addressRows(long seed, long customers, long firstId, long from, long to) {
+        return new AddressRows(seed, customers, firstId, from, to);
+    }
+
+    // The n-th customer of a run; created_at grows with n, with jitter within each customer's time slot
+    private SyntheticCustomer customer(long seed, long customers, long firstId, long n) {
+        SplittableRandom random = new SplittableRandom(rowSeed(seed, n));
+        long id = firstId + n;
+        String firstName = FIRST_NAMES.pick(random);
+        String lastName = LAST_NAMES.pick(random);
+        String email = (firstName + "." + lastName + "." + id + "@" + EMAIL_DOMAINS.pick(random)).toLowerCase(Locale.ROOT);
+
+        double statusDraw = random.nextDouble();
+        CustomerStatus status = statusDraw < 0.80 ? CustomerStatus.ACTIVE
+                : statusDraw < 0.95 ? CustomerStatus.PENDING_VERIFICATION : CustomerStatus.INACTIVE;
+        String phone = random.nextDouble() < PHONE_SHARE
+                ? "555-" + pad(random.nextInt(1000), 3) + "-" + pad(random.nextInt(10_000), 4) : null;
+
+        long span = createdTo - createdFrom;
+        long createdAt = createdFrom + (long) ((double) n / customers * span) + random.nextLong(Math.max(1, span / customers));
+        long updatedAt = random.nextDouble() < UPDATED_SHARE ? createdAt + random.nextLong(createdTo - createdAt + 1) : createdAt;
+        Long deletedAt = random.nextDouble() < deletedRatio
+                ? Math.min(createdTo, updatedAt + random.nextLong(MAX_DELETION_DELAY_SECONDS)) : null;
+        return new SyntheticCustomer(id, firstName, lastName, email, ssn(id), phone, status, createdAt, updatedAt, deletedAt);
+    }
+
+    private record SyntheticCustomer(long id, String firstName, String lastName, String email, String ssn, String phone,
+                                     CustomerStatus status, long createdAt, long updatedAt, Long deletedAt) {
+    }
+
+    private static long rowSeed(long seed, long n) {
+        return seed * 0x9E3779B97F4A7C15L + n;
+    }
+
+    // 9xx area numbers are never issued, so generated SSNs cannot be real ones; ids above 10^8 get a longer serial
+    private static String ssn(long id) {
+        String digits = pad(id, 8);
+        return "9" + digits.substring(0, 2) + "-" + digits.substring(2, 4) + "-" + digits.substring(4);
+    }
+
+    private static String pad(long value, int width) {
+        String digits = Long.toString(value);
+        return digits.length() >= width ? digits : "0".repeat(width - digits.length()) + digits;
+    }
+
+    private static String timestamp(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC).toString();
+    }
+
+    // Generated values never contain tabs, newlines or backslashes, so they need no COPY escaping
+    private static void appendField(StringBuilder row, Object value) {
+        if (!row.isEmpty() && row.charAt(row.length() - 1) != '\n') row.append('\t');
+        row.append(value == null ? "\\N" : value.toString());
+    }
+
+    private final class CustomerRows extends RowReader {
+        private final long seed, customers, firstId, to;
+        private long next;
+        private long deleted;
+
+        CustomerRows(long seed, long customers, long firstId, long from, long to) {
+            this.seed = seed;
+            this.customers = customers;
+            this.firstId = firstId;
+            this.next = from;
+            this.to = to;
+        }
+
+        @Override
+        boolean nextRows(StringBuilder rows) {
+            if (next >= to) return false;
+            SyntheticCustomer customer = customer(seed, customers, firstId, next++);
+            appendField(rows, customer.id());
+            appendField(rows, customer.firstName());
+            appendField(rows, customer.lastName());
+            appendField(rows, customer.email());
+            appendField(rows, customer.ssn());
+            appendField(rows, customer.phone());
+            appendField(rows, customer.status());
+            appendField(rows, timestamp(customer.createdAt()));
+            appendField(rows, timestamp(customer.updatedAt()));
+            appendField(rows, customer.deletedAt() != null ? timestamp(customer.deletedAt()) : null);
+            rows.append('\n');
+            if (customer.deletedAt() != null) deleted++;
+            return true;
+        }
+    }
+
+    // Addresses are drawn from their own stream, so they do not shift when the customer's fields change
+    private final class AddressRows extends RowReader {
+        private final long seed, customers, firstId, to;
+        private long next;
+        private long addresses;
+
+        AddressRows(long seed, long customers, long firstId, long from, long to) {
+            this.seed = seed;
+            this.customers = customers;
+            this.firstId = firstId;
+            this.next = from;
+            this.to = to;
+        }
+
+        @Override
+        boolean nextRows(StringBuilder rows) {
+            if (next >= to) return false;
+            SyntheticCustomer customer = customer(seed, customers, firstId, next);
+            SplittableRandom random = new SplittableRandom(rowSeed(seed, next++) ^ ADDRESS_STREAM);
+            int count = ADDRESS_COUNTS.pickIndex(random);
+            for (int i = 0; i < count; i++) {
+                String[] city = CITIES.pick(random).split("\\|");
+                appendField(rows, customer.id());
+                appendField(rows, (1 + random.nextInt(9999)) + " " + STREETS.pick(random) + " "
+                        + STREET_SUFFIXES[random.nextInt(STREET_SUFFIXES.length)]);
+                appendField(rows, city[0]);
+                appendField(rows, city[1]);
+                appendField(rows, city[2] + pad(random.nextInt(100), 2));
+                appendField(rows, i == 0 ? AddressType.HOME
+                        : SECONDARY_ADDRESS_TYPES[random.nextInt(SECONDARY_ADDRESS_TYPES.length)]);
+                appendField(rows, timestamp(customer.createdAt()));
+                appendField(rows, timestamp(customer.updatedAt()));
+                rows.append('\n');
+            }
+            addresses += count;
+            return true;
+        }
+    }
+
+    // Produces COPY rows as the driver reads them, so a batch is never held in memory as a whole
+    private abstract static class RowReader extends Reader {
+        private final StringBuilder rows = new StringBuilder(1024);
+        private int position;
+
+        // Appends the rows of the next customer, which may be none; false when the batch is done
+        abstract boolean nextRows(StringBuilder rows);
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (length == 0) return 0;
+            while (position == rows.length()) {
+                rows.setLength(0);
+                position = 0;
+                if (!nextRows(rows)) return -1;
+            }
+            int read = Math.min(length, rows.length() - position);
+            rows.getChars(position, position + read, buffer, offset);
+            position += read;
+            return read;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    // Values drawn with the given relative weights
+    private static final class WeightedPool {
+        private final String[] values;
+        private final double[] cumulative;
+
+        WeightedPool(String[] values, double[] weights) {
+            this.values = values;
+            this.cumulative = new double[weights.length];
+            double total = Arrays.stream(weights).sum();
+            double sum = 0;
+            for (int i = 0; i < weights.length; i++) {
+                sum += weights[i];
+                cumulative[i] = sum / total;
+            }
+        }
+
+        // The given values first, then generated ones up to size, with weights 1 / rank^exponent
+        static WeightedPool zipf(String[] common, int size, double exponent) {
+            String[] values = new String[size];
+            double[] weights = new double[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = i < common.length ? common[i] : syllableName(i);
+                weights[i] = 1 / Math.pow(i + 1, exponent);
+            }
+            return new WeightedPool(values, weights);
+        }
+
+        String pick(SplittableRandom random) {
+            return values[pickIndex(random)];
+        }
+
+        int pickIndex(SplittableRandom random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(index >= 0 ? index + 1 : -index - 1, values.length - 1);
+        }
+    }
+
+    // Name number i spelled as syllables, e.g. "Moren"
+    private static String syllableName(int i) {
+        StringBuilder name = new StringBuilder();
+        for (int k = i; k > 0; k /= SYLLABLES.length) {
+            name.append(SYLLABLES[k % SYLLABLES.length]);
+        }
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
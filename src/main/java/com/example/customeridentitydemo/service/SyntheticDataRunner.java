@@ -0,0 +1,40 @@
+package com.example.customeridentitydemo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Generates synthetic data from the command line and exits, e.g.
+ * {@code java -jar app.jar --data-generator.run.customers=10000000 --data-generator.run.seed=42
+ * --spring.main.web-application-type=none}.
+ */
+@Component
+@ConditionalOnProperty("data-generator.run.customers")
+public class SyntheticDataRunner implements ApplicationRunner {
+
+    private final SyntheticDataGenerator syntheticDataGenerator;
+    private final ConfigurableApplicationContext context;
+    private final long customers;
+    private final long seed;
+
+    public SyntheticDataRunner(SyntheticDataGenerator syntheticDataGenerator,
+                               ConfigurableApplicationContext context,
+                               @Value("${data-generator.run.customers}") long customers,
+                               @Value("${data-generator.run.seed:42}") long seed) {
+        this.syntheticDataGenerator = syntheticDataGenerator;
+        this.context = context;
+        this.customers = customers;
+        this.seed = seed;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        syntheticDataGenerator.generate(customers, seed);
+        System.exit(SpringApplication.exit(context));
+    }
+}
@@ -0,0 +1,4 @@
+-- V4__Add_customers_live_id_index.sql
+-- Supports keyset pagination over live customers (WHERE deleted_at IS NULL AND id > :after_id ORDER BY id)
+
+CREATE INDEX idx_customers_live_id ON customers(id) WHERE deleted_at IS NULL;
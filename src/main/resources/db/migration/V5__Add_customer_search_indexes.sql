@@ -0,0 +1,27 @@
+-- V5__Add_customer_search_indexes.sql
+-- Supports GET /api/v1/customers/search over live customers with indexes that return each branch's rows already in
+-- order, so a branch stops after max-results rows instead of collecting and sorting every match:
+--   prefix matches: lower(column) COLLATE "C" LIKE 'abc%' ORDER BY lower(column) COLLATE "C" LIMIT n. A plain btree
+--                   in the C collation serves both the LIKE range and the ORDER BY
+--   fuzzy matches:  ORDER BY :q <<-> lower(first_name || ' ' || last_name || ' ' || email) LIMIT n, a nearest-neighbour
+--                   scan of a GiST trigram index; GIN cannot return rows by distance
+--   "first last" prefixes share the trigram index, which also serves LIKE 'john d%'
+-- The expressions must stay identical to the ones in JdbcCustomerRepository.search for the planner to use them.
+--
+-- Every index is built CONCURRENTLY, so Flyway applies this script outside a transaction (spring.flyway.mixed) and
+-- writes to customers go on while the indexes build. If a build fails, drop the INVALID index it leaves behind and
+-- rerun the migration. V6 builds its indexes the same way.
+
+-- Trusted extension: the database owner can create it without superuser rights
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_customers_live_email_c
+    ON customers (lower(email) COLLATE "C") WHERE deleted_at IS NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_customers_live_last_name_c
+    ON customers (lower(last_name) COLLATE "C") WHERE deleted_at IS NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_customers_live_first_name_c
+    ON customers (lower(first_name) COLLATE "C") WHERE deleted_at IS NULL;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_customers_live_search_gist
+    ON customers USING gist (lower(first_name || ' ' || last_name || ' ' || email) gist_trgm_ops)
+    WHERE deleted_at IS NULL;
@@ -0,0 +1,17 @@
+-- V6__Add_customer_filter_indexes.sql
+-- Supports filtered listing of live customers (JdbcCustomerRepository.findPage with a CustomerFilter). A time-range
+-- listing is ordered by the range's column and id, and each page resumes with
+--   (created_at, id) > (:after_time, :after_id) ORDER BY created_at, id LIMIT n
+-- so every page is one seek plus n rows, however deep the page or broad the range:
+--   status + created range  -> idx_customers_live_status_created_id
+--   created range           -> idx_customers_live_created_id
+--   updatedSince            -> idx_customers_live_updated_id
+-- Every update sets updated_at, so indexing it rules out HOT updates of customers; updates are rare next to reads.
+-- Built CONCURRENTLY, as V5 describes.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_customers_live_status_created_id
+    ON customers (status, created_at, id) WHERE deleted_at IS NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_customers_live_created_id
+    ON customers (created_at, id) WHERE deleted_at IS NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_customers_live_updated_id
+    ON customers (updated_at, id) WHERE deleted_at IS NULL;
@@ -0,0 +1,17 @@
+-- V7__Create_backfill_jobs_table.sql
+-- Checkpoints of chunked data backfills (BackfillService). next_id is advanced in the same transaction as each
+-- chunk's UPDATE, so a job resumes after a crash exactly where it stopped.
+
+CREATE TABLE backfill_jobs (
+    name VARCHAR(100) PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    first_id BIGINT NOT NULL,
+    next_id BIGINT NOT NULL,
+    max_id BIGINT NOT NULL,
+    rows_updated BIGINT NOT NULL DEFAULT 0,
+    chunks_done BIGINT NOT NULL DEFAULT 0,
+    last_error TEXT,
+    started_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    finished_at TIMESTAMP
+);
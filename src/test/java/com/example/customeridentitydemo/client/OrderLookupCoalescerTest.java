@@ -0,0 +1,178 @@
+package com.example.customeridentitydemo.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs concurrent order lookups with batching enabled against a local stub order service that answers bulk requests
+ * with one order per requested customer (order id = customer id) and omits customers ending in 0.
+ */
+@SpringBootTest(properties = {
+        "order-service.cache.enabled=false",
+        "order-service.batch.enabled=true",
+        "order-service.batch.window=50ms",
+        "order-service.batch.max-size=20",
+        "resilience4j.bulkhead.instances.order-service.max-concurrent-calls=50"
+})
+class OrderLookupCoalescerTest {
+
+    private static final HttpServer ORDER_SERVICE = startOrderService();
+    private static final AtomicInteger BULK_REQUESTS = new AtomicInteger();
+    private static final AtomicInteger SINGLE_REQUESTS = new AtomicInteger();
+    private static final AtomicLong CUSTOMER_IDS = new AtomicLong();
+    private static volatile int latencyMillis;
+
+    @Autowired
+    private ResilientOrderServiceClient client;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @DynamicPropertySource
+    static void orderServiceUrl(DynamicPropertyRegistry registry) {
+        registry.add("order-service.url", () -> "http://127.0.0.1:" + ORDER_SERVICE.getAddress().getPort());
+    }
+
+    @AfterAll
+    static void stopOrderService() {
+        ORDER_SERVICE.stop(0);
+    }
+
+    @BeforeEach
+    void setUp() {
+        circuitBreakerRegistry.circuitBreaker(ResilientOrderServiceClient.INSTANCE).reset();
+        BULK_REQUESTS.set(0);
+        SINGLE_REQUESTS.set(0);
+        latencyMillis = 0;
+    }
+
+    @Test
+    void getOrdersByCustomerId_shouldCoalesceConcurrentLookupsIntoBulkCalls() {
+        // Skip to the next multiple of 10 so exactly every tenth customer has no orders
+        long first = CUSTOMER_IDS.addAndGet(200) / 10 * 10 + 1;
+        List<Long> customerIds = LongStream.range(first, first + 100).boxed().toList();
+
+        Map<Long, List<OrderResponseDTO>> ordersByCustomer = lookUpConcurrently(customerIds);
+
+        assertEquals(0, SINGLE_REQUESTS.get());
+        // 100 ids at up to 20 per batch; a little more if a window closes early
+        assertTrue(BULK_REQUESTS.get() >= 5 && BULK_REQUESTS.get() <= 20,
+                "100 lookups should need a handful of bulk calls, made " + BULK_REQUESTS.get());
+        customerIds.forEach(id -> {
+            List<OrderResponseDTO> orders = ordersByCustomer.get(id);
+            if (id % 10 == 0) {
+                assertTrue(orders.isEmpty(), "customer " + id + " has no orders");
+            } else {
+                assertEquals(1, orders.size());
+                assertEquals(id, orders.get(0).getOrderId());
+            }
+        });
+    }
+
+    @Test
+    void getOrdersByCustomerId_shouldShareOneCall_forConcurrentLookupsOfSameCustomer() {
+        latencyMillis = 100;
+        long customerId = CUSTOMER_IDS.addAndGet(10) / 10 * 10 + 1;
+        List<Long> customerIds = LongStream.range(0, 30).mapToObj(i -> customerId).toList();
+
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<CompletableFuture<List<OrderResponseDTO>>> calls = customerIds.stream()
+                    .map(id -> CompletableFuture.supplyAsync(() -> client.getOrdersByCustomerId(id), callers))
+                    .toList();
+            calls.forEach(call -> assertEquals(customerId, call.join().get(0).getOrderId()));
+        }
+
+        assertEquals(1, BULK_REQUESTS.get());
+    }
+
+    @Test
+    void getOrdersByCustomerId_shouldDegradeEveryLookupInBatch_whenBulkCallTimesOut() {
+        latencyMillis = 3000;
+        List<Long> customerIds = LongStream.range(0, 5).mapToObj(i -> CUSTOMER_IDS.incrementAndGet() * 10 + 1).toList();
+
+        Map<Long, List<OrderResponseDTO>> ordersByCustomer = lookUpConcurrently(customerIds);
+
+        assertTrue(ordersByCustomer.values().stream().allMatch(List::isEmpty));
+        assertEquals(1, BULK_REQUESTS.get());
+    }
+
+    private Map<Long, List<OrderResponseDTO>> lookUpConcurrently(List<Long> customerIds) {
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            Map<Long, CompletableFuture<List<OrderResponseDTO>>> calls = customerIds.stream().collect(Collectors.toMap(
+                    Function.identity(),
+                    id -> CompletableFuture.supplyAsync(() -> client.getOrdersByCustomerId(id), callers)));
+            return calls.entrySet().stream()
+                    .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().join()));
+        }
+    }
+
+    private static HttpServer startOrderService() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.createContext("/orders/customers", exchange -> {
+                BULK_REQUESTS.incrementAndGet();
+                sleep(latencyMillis);
+                String ids = exchange.getRequestURI().getQuery().replaceFirst("^ids=", "");
+                String body = Arrays.stream(ids.split("(,|%2C|&ids=)"))
+                        .filter(id -> !id.endsWith("0"))
+                        .map(id -> "\"" + id + "\":[{\"orderId\":" + id + ",\"amount\":10.00,\"orderStatus\":\"SHIPPED\"}]")
+                        .collect(Collectors.joining(",", "{", "}"));
+                respond(exchange, body);
+            });
+            server.createContext("/orders/customer/", exchange -> {
+                SINGLE_REQUESTS.incrementAndGet();
+                respond(exchange, "[]");
+            });
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        } catch (IOException e) {
+            // Client gave up (read timeout)
+        }
+    }
+
+    private static void sleep(int millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.example.customeridentitydemo.client;
+
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs the Feign client, timeouts, bulkhead and circuit breaker against a local stub order service whose latency
+ * and status are set per test.
+ */
+@SpringBootTest(properties = {
+        "spring.cloud.openfeign.client.config.order-service.read-timeout=1000",
+        "resilience4j.circuitbreaker.instances.order-service.sliding-window-size=4",
+        "resilience4j.circuitbreaker.instances.order-service.minimum-number-of-calls=4",
+        "resilience4j.circuitbreaker.instances.order-service.wait-duration-in-open-state=60s",
+        "resilience4j.circuitbreaker.instances.order-service.slow-call-duration-threshold=5s",
+        "resilience4j.bulkhead.instances.order-service.max-concurrent-calls=2",
+        "order-service.cache.refresh-after=200ms",
+        "order-service.cache.ttl=1m",
+        "order-service.cache.refresh-pool-size=1",
+        "order-service.cache.refresh-queue-capacity=1"
+})
+@AutoConfigureMockMvc
+class ResilientOrderServiceClientTest {
+
+    private static final HttpServer ORDER_SERVICE = startOrderService();
+    private static final AtomicInteger REQUESTS = new AtomicInteger();
+    // Each test reads its own customers so cached order lists never leak between tests
+    private static final AtomicLong CUSTOMER_IDS = new AtomicLong();
+    private static volatile int latencyMillis;
+    private static volatile int status;
+    private static volatile String orderStatus;
+
+    private long customerId;
+
+    @Autowired
+    private ResilientOrderServiceClient client;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    @Qualifier("orderRefreshExecutor")
+    private ExecutorService refreshExecutor;
+
+    @DynamicPropertySource
+    static void orderServiceUrl(DynamicPropertyRegistry registry) {
+        registry.add("order-service.url", () -> "http://127.0.0.1:" + ORDER_SERVICE.getAddress().getPort());
+    }
+
+    @AfterAll
+    static void stopOrderService() {
+        ORDER_SERVICE.stop(0);
+    }
+
+    @BeforeEach
+    void setUp() {
+        circuitBreakerRegistry.circuitBreaker(ResilientOrderServiceClient.INSTANCE).reset();
+        REQUESTS.set(0);
+        latencyMillis = 0;
+        status = 200;
+        orderStatus = "SHIPPED";
+        customerId = CUSTOMER_IDS.incrementAndGet();
+    }
+
+    @Test
+    void getOrdersByCustomerId_shouldReturnOrders_whenOrderServiceIsHealthy() {
+        List<OrderResponseDTO> orders = client.getOrdersByCustomerId(customerId);
+
+        assertEquals(1, orders.size());
+        assertEquals(101L, orders.get(0).getOrderId());
+        assertEquals("SHIPPED", orders.get(0).getOrderStatus());
+    }
+
+    @Test
+    void getOrdersByCustomerId_shouldDegradeAtReadTimeout_whenOrderServiceIsSlow() {
+        latencyMillis = 3000;
+        double timeoutsBefore = degraded("timeout");
+
+        long start = System.nanoTime();
+        List<OrderResponseDTO> orders = client.getOrdersByCustomerId(customerId);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(orders.isEmpty());
+        assertTrue(elapsedMillis < 2500, "call should give up at the read timeout, took " + elapsedMillis + " ms");
+        assertEquals(timeoutsBefore + 1, degraded("timeout"));
+    }
+
+    @Test
+    void getOrdersByCustomerId_shouldOpenCircuitAndFailFast_afterRepeatedFailures() throws Exception {
+        status = 500;
+        double openBefore = degraded("circuit_open");
+        // Failed loads are not cached, so every read goes to the service until the circuit opens
+        for (int i = 0; i < 4; i++) {
+            assertTrue(client.getOrdersByCustomerId(customerId).isEmpty());
+        }
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(ResilientOrderServiceClient.INSTANCE);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        status = 200;
+        int requestsWhenOpened = REQUESTS.get();
+        assertTrue(client.getOrdersByCustomerId(customerId).isEmpty());
+
+        assertEquals(requestsWhenOpened, REQUESTS.get(), "an open circuit must not call the order service");
+        // A background refresh left over from another test may also have hit the open circuit
+        assertTrue(degraded("circuit_open") >= openBefore + 1);
+        mockMvc.perform(get("/actuator/circuitbreakers"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.circuitBreakers.order-service.state").value("OPEN"));
+    }
+
+    @Test
+    void getOrdersByCustomerId_shouldRejectCallsBeyondBulkheadLimit() {
+        latencyMillis = 150;
+        double rejectedBefore = degraded("bulkhead_full");
+
+        long served;
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            // Distinct customers: concurrent reads of one customer would share a single cache load
+            List<CompletableFuture<List<OrderResponseDTO>>> calls = IntStream.range(0, 6)
+                    .mapToObj(i -> CUSTOMER_IDS.incrementAndGet())
+                    .map(id -> CompletableFuture.supplyAsync(() -> client.getOrdersByCustomerId(id), callers))
+                    .toList();
+            served = calls.stream().map(CompletableFuture::join).filter(orders -> !orders.isEmpty()).count();
+        }
+
+        assertTrue(served >= 2 && served < 6, "only the bulkhead's permits should reach the service, served " + served);
+        assertEquals(rejectedBefore + (6 - served), degraded("bulkhead_full"));
+        assertEquals(CircuitBreaker.State.CLOSED,
+                circuitBreakerRegistry.circuitBreaker(ResilientOrderServiceClient.INSTANCE).getState());
+    }
+
+    @Test
+    void getOrdersByCustomerId_shouldServeRepeatReadsFromCache() {
+        client.getOrdersByCustomerId(customerId);
+        List<OrderResponseDTO> orders = client.getOrdersByCustomerId(customerId);
+
+        assertEquals("SHIPPED", orders.get(0).getOrderStatus());
+        assertEquals(1, REQUESTS.get());
+    }
+
+    @Test
+    void getOrdersByCustomerId_shouldServeStaleWhileRevalidating() throws Exception {
+        client.getOrdersByCustomerId(customerId);
+        Thread.sleep(300);
+        orderStatus = "DELIVERED";
+
+        assertEquals("SHIPPED", client.getOrdersByCustomerId(customerId).get(0).getOrderStatus());
+        awaitRequests(2);
+
+        awaitOrderStatus("DELIVERED");
+    }
+
+    @Test
+    void getOrdersByCustomerId_shouldKeepServingCachedOrders_whenRefreshFails() throws Exception {
+        double failedRefreshesBefore = refreshes("failure");
+        client.getOrdersByCustomerId(customerId);
+        Thread.sleep(300);
+        status = 500;
+
+        assertEquals("SHIPPED", client.getOrdersByCustomerId(customerId).get(0).getOrderStatus());
+        awaitRequests(2);
+        awaitCounter(() -> refreshes("failure"), failedRefreshesBefore + 1);
+
+        assertEquals("SHIPPED", client.getOrdersByCustomerId(customerId).get(0).getOrderStatus());
+    }
+
+    @Test
+    void getOrdersByCustomerId_shouldKeepServingCachedOrders_whenRefreshExecutorIsFull() throws Exception {
+        double rejectedRefreshesBefore = refreshes("rejected");
+        client.getOrdersByCustomerId(customerId);
+        Thread.sleep(300);
+        orderStatus = "DELIVERED";
+
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            fillRefreshExecutor(release);
+
+            assertEquals("SHIPPED", client.getOrdersByCustomerId(customerId).get(0).getOrderStatus());
+            assertEquals(rejectedRefreshesBefore + 1, refreshes("rejected"));
+            assertEquals(1, REQUESTS.get(), "a rejected refresh must not call the order service");
+        } finally {
+            release.countDown();
+        }
+
+        // The skipped refresh left the entry due, so a later read refreshes it
+        awaitOrderStatus("DELIVERED");
+    }
+
+    // Occupies the refresh executor's thread and queue until release is counted down
+    private void fillRefreshExecutor(CountDownLatch release) {
+        for (int i = 0; i < 100; i++) {
+            try {
+                refreshExecutor.execute(() -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                return;
+            }
+        }
+        fail("refresh executor never filled up");
+    }
+
+    private void awaitRequests(int expected) throws InterruptedException {
+        awaitCounter(REQUESTS::get, expected);
+    }
+
+    private void awaitOrderStatus(String expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!expected.equals(client.getOrdersByCustomerId(customerId).get(0).getOrderStatus())) {
+            assertTrue(System.nanoTime() < deadline, "cached orders were never refreshed");
+            Thread.sleep(20);
+        }
+    }
+
+    private void awaitCounter(DoubleSupplier counter, double expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (counter.getAsDouble() < expected) {
+            assertTrue(System.nanoTime() < deadline, "expected " + expected + " but was " + counter.getAsDouble());
+            Thread.sleep(20);
+        }
+    }
+
+    private double refreshes(String outcome) {
+        Counter counter = meterRegistry.find("order.lookup.refresh").tag("outcome", outcome).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private double degraded(String reason) {
+        Counter counter = meterRegistry.find("order.lookup.degraded").tag("reason", reason).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private static HttpServer startOrderService() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.createContext("/orders/customer/", exchange -> {
+                REQUESTS.incrementAndGet();
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = ("[{\"orderId\":101,\"amount\":25.50,\"orderStatus\":\"" + orderStatus + "\"}]")
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                } catch (IOException e) {
+                    // Client gave up (read timeout)
+                }
+            });
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
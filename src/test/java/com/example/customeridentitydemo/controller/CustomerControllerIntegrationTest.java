@@ -2,12 +2,17 @@ package com.example.customeridentitydemo.controller;
 
 import com.example.customeridentitydemo.dto.AddressRequestDTO;
 import com.example.customeridentitydemo.dto.AddressResponseDTO;
+import com.example.customeridentitydemo.dto.CustomerPageResponseDTO;
 import com.example.customeridentitydemo.dto.CustomerRequestDTO;
 import com.example.customeridentitydemo.dto.CustomerResponseDTO;
+import com.example.customeridentitydemo.exception.PreconditionFailedException;
 import com.example.customeridentitydemo.exception.ResourceNotFoundException;
 import com.example.customeridentitydemo.model.AddressType;
 import com.example.customeridentitydemo.model.CustomerStatus;
+import com.example.customeridentitydemo.repository.CustomerFilter;
+import com.example.customeridentitydemo.service.CustomerETags;
 import com.example.customeridentitydemo.service.CustomerService;
+import com.example.customeridentitydemo.service.CustomerView;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,26 +20,37 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasKey;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -87,17 +103,107 @@ class CustomerControllerIntegrationTest {
     @Test
     @WithMockUser
     void getAllCustomers_shouldReturnListOfCustomerResponseDTOs() throws Exception {
-        when(customerService.getAllCustomers()).thenReturn(Arrays.asList(customerResponseDTO));
+        when(customerService.getAllCustomers(isNull(), eq(50), eq(CustomerView.FULL), eq(CustomerFilter.NONE)))
+                .thenReturn(new CustomerPageResponseDTO(Arrays.asList(customerResponseDTO), "aWQ6MQ", 50));
 
         mockMvc.perform(get("/api/v1/customers")
                         .with(user("user").password("password").roles("USER")) // Explicitly set user
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].firstName", is("John")))
-                .andExpect(jsonPath("$[0].addresses", hasSize(1)))
-                .andExpect(jsonPath("$[0].addresses[0].street", is("123 Main St")));
+                .andExpect(jsonPath("$.content[0].firstName", is("John")))
+                .andExpect(jsonPath("$.content[0].addresses", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].addresses[0].street", is("123 Main St")))
+                .andExpect(jsonPath("$.next", is("aWQ6MQ")));
 
-        verify(customerService, times(1)).getAllCustomers();
+        verify(customerService, times(1)).getAllCustomers(isNull(), eq(50), eq(CustomerView.FULL), eq(CustomerFilter.NONE));
+    }
+
+    @Test
+    @WithMockUser
+    void getAllCustomers_shouldPassCursorAndLimit() throws Exception {
+        when(customerService.getAllCustomers("aWQ6MQ", 10, CustomerView.FULL, CustomerFilter.NONE))
+                .thenReturn(new CustomerPageResponseDTO(Collections.emptyList(), null, 10));
+
+        mockMvc.perform(get("/api/v1/customers")
+                        .param("limit", "10")
+                        .param("after", "aWQ6MQ")
+                        .with(user("user").password("password").roles("USER"))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(0)))
+                .andExpect(jsonPath("$.limit", is(10)));
+
+        verify(customerService, times(1)).getAllCustomers("aWQ6MQ", 10, CustomerView.FULL, CustomerFilter.NONE);
+    }
+
+    @Test
+    @WithMockUser
+    void getAllCustomers_shouldPassFilters() throws Exception {
+        CustomerFilter filter = new CustomerFilter(CustomerStatus.PENDING_VERIFICATION,
+                LocalDateTime.of(2024, 6, 3, 0, 0), LocalDateTime.of(2024, 6, 10, 0, 0), null);
+        when(customerService.getAllCustomers(null, 50, CustomerView.FULL, filter))
+                .thenReturn(new CustomerPageResponseDTO(Collections.emptyList(), null, 50));
+
+        mockMvc.perform(get("/api/v1/customers")
+                        .param("status", "PENDING_VERIFICATION")
+                        .param("createdFrom", "2024-06-03T00:00:00")
+                        .param("createdTo", "2024-06-10T00:00:00")
+                        .with(user("user").password("password").roles("USER")))
+                .andExpect(status().isOk());
+
+        verify(customerService, times(1)).getAllCustomers(null, 50, CustomerView.FULL, filter);
+    }
+
+    @Test
+    @WithMockUser
+    void getAllCustomers_shouldReturnBadRequest_forUnknownStatus() throws Exception {
+        mockMvc.perform(get("/api/v1/customers")
+                        .param("status", "DELETED")
+                        .with(user("user").password("password").roles("USER")))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", containsString("status")));
+
+        verifyNoInteractions(customerService);
+    }
+
+    @Test
+    @WithMockUser
+    void searchCustomers_shouldRouteToSearch_notToGetById() throws Exception {
+        when(customerService.searchCustomers("doe", null, 20))
+                .thenReturn(new CustomerPageResponseDTO(Arrays.asList(customerResponseDTO), null, 20));
+
+        mockMvc.perform(get("/api/v1/customers/search")
+                        .param("q", "doe")
+                        .with(user("user").password("password").roles("USER"))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].lastName", is("Doe")))
+                .andExpect(jsonPath("$.limit", is(20)));
+
+        verify(customerService, times(1)).searchCustomers("doe", null, 20);
+    }
+
+    @Test
+    @WithMockUser
+    void exportCustomers_shouldStreamNdjson() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream outputStream = invocation.getArgument(0);
+            outputStream.write(objectMapper.writeValueAsBytes(customerResponseDTO));
+            outputStream.write('\n');
+            return 1L;
+        }).when(customerService).exportCustomers(any(OutputStream.class));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/customers/export")
+                        .with(user("user").password("password").roles("USER")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(containsString("\"firstName\":\"John\"")));
+
+        verify(customerService, times(1)).exportCustomers(any(OutputStream.class));
     }
 
     @Test
@@ -137,7 +243,7 @@ class CustomerControllerIntegrationTest {
     @Test
     @WithMockUser
     void getCustomerById_shouldReturnCustomerResponseDTO_whenCustomerExists() throws Exception {
-        when(customerService.getCustomerById(anyLong())).thenReturn(customerResponseDTO);
+        when(customerService.getCustomerById(anyLong(), eq(CustomerView.FULL))).thenReturn(customerResponseDTO);
 
         mockMvc.perform(get("/api/v1/customers/{id}", 1L)
                         .with(user("user").password("password").roles("USER")) // Explicitly set user
@@ -148,13 +254,112 @@ class CustomerControllerIntegrationTest {
                 .andExpect(jsonPath("$.addresses", hasSize(1)))
                 .andExpect(jsonPath("$.addresses[0].street", is("123 Main St")));
 
-        verify(customerService, times(1)).getCustomerById(anyLong());
+        verify(customerService, times(1)).getCustomerById(anyLong(), eq(CustomerView.FULL));
+    }
+
+    @Test
+    @WithMockUser
+    void getCustomerById_shouldReturnETag() throws Exception {
+        when(customerService.getCustomerById(1L, CustomerView.FULL)).thenReturn(customerResponseDTO);
+
+        mockMvc.perform(get("/api/v1/customers/{id}", 1L)
+                        .with(user("user").password("password").roles("USER")))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, CustomerETags.of(1L, customerResponseDTO.getUpdatedAt())))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"));
+    }
+
+    @Test
+    @WithMockUser
+    void getCustomerById_shouldReturnPartialViewUnderWeakETag_whenFieldsRequested() throws Exception {
+        when(customerService.getCustomerById(eq(1L), argThat(view -> !view.includesAllFields() && !view.includesOrders())))
+                .thenReturn(CustomerView.parse("email", null).apply(customerResponseDTO));
+
+        mockMvc.perform(get("/api/v1/customers/{id}", 1L)
+                        .param("fields", "email")
+                        .with(user("user").password("password").roles("USER")))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/" + CustomerETags.of(1L, customerResponseDTO.getUpdatedAt())))
+                .andExpect(jsonPath("$.email", is(customerResponseDTO.getEmail())))
+                .andExpect(jsonPath("$.firstName").doesNotExist())
+                .andExpect(jsonPath("$.addresses").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser
+    void getCustomerById_shouldKeepNullFieldsInFullView() throws Exception {
+        customerResponseDTO.setPhone(null);
+        when(customerService.getCustomerById(1L, CustomerView.FULL)).thenReturn(customerResponseDTO);
+
+        mockMvc.perform(get("/api/v1/customers/{id}", 1L)
+                        .with(user("user").password("password").roles("USER")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasKey("phone")))
+                .andExpect(jsonPath("$", hasKey("orders")))
+                .andExpect(jsonPath("$.phone", nullValue()))
+                .andExpect(jsonPath("$.orders", nullValue()));
+    }
+
+    @Test
+    @WithMockUser
+    void getCustomerById_shouldReturnBadRequest_forUnknownField() throws Exception {
+        mockMvc.perform(get("/api/v1/customers/{id}", 1L)
+                        .param("fields", "email,password")
+                        .with(user("user").password("password").roles("USER")))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(customerService);
+    }
+
+    @Test
+    @WithMockUser
+    void getCustomerById_shouldReturnNotModified_withoutLoadingCustomer_whenETagMatches() throws Exception {
+        String etag = CustomerETags.of(1L, customerResponseDTO.getUpdatedAt());
+        when(customerService.getCustomerETag(1L)).thenReturn(etag);
+
+        mockMvc.perform(get("/api/v1/customers/{id}", 1L)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"1-0\", " + etag)
+                        .with(user("user").password("password").roles("USER")))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+
+        verify(customerService, never()).getCustomerById(anyLong(), any());
+    }
+
+    @Test
+    @WithMockUser
+    void getCustomerById_shouldReturnBody_whenETagIsStale() throws Exception {
+        when(customerService.getCustomerETag(1L)).thenReturn(CustomerETags.of(1L, customerResponseDTO.getUpdatedAt()));
+        when(customerService.getCustomerById(1L, CustomerView.FULL)).thenReturn(customerResponseDTO);
+
+        mockMvc.perform(get("/api/v1/customers/{id}", 1L)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"1-0\"")
+                        .with(user("user").password("password").roles("USER")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firstName", is("John")));
+    }
+
+    @Test
+    @WithMockUser
+    void updateCustomer_shouldReturnPreconditionFailed_whenIfMatchIsStale() throws Exception {
+        when(customerService.updateCustomer(eq(1L), any(CustomerRequestDTO.class), eq("\"1-0\"")))
+                .thenThrow(new PreconditionFailedException("Customer 1 has been modified"));
+
+        mockMvc.perform(put("/api/v1/customers/{id}", 1L)
+                        .header(HttpHeaders.IF_MATCH, "\"1-0\"")
+                        .with(user("user").password("password").roles("USER"))
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(customerRequestDTO)))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.message", is("Customer 1 has been modified")));
     }
 
     @Test
     @WithMockUser
     void getCustomerById_shouldReturnNotFound_whenCustomerDoesNotExist() throws Exception {
-        doThrow(new ResourceNotFoundException("Customer not found")).when(customerService).getCustomerById(anyLong());
+        doThrow(new ResourceNotFoundException("Customer not found")).when(customerService).getCustomerById(anyLong(), eq(CustomerView.FULL));
 
         mockMvc.perform(get("/api/v1/customers/{id}", 99L)
                         .with(user("user").password("password").roles("USER")) // Explicitly set user
@@ -162,13 +367,13 @@ class CustomerControllerIntegrationTest {
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath("$.message", is("Customer not found")));
 
-        verify(customerService, times(1)).getCustomerById(anyLong());
+        verify(customerService, times(1)).getCustomerById(anyLong(), eq(CustomerView.FULL));
     }
 
     @Test
     @WithMockUser
     void deleteCustomer_shouldReturnNoContent_whenCustomerExists() throws Exception {
-        doNothing().when(customerService).deleteCustomer(anyLong());
+        doNothing().when(customerService).deleteCustomer(anyLong(), isNull());
 
         mockMvc.perform(delete("/api/v1/customers/{id}", 1L)
                         .with(user("user").password("password").roles("USER")) // Explicitly set user
@@ -176,13 +381,13 @@ class CustomerControllerIntegrationTest {
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNoContent());
 
-        verify(customerService, times(1)).deleteCustomer(anyLong());
+        verify(customerService, times(1)).deleteCustomer(anyLong(), isNull());
     }
 
     @Test
     @WithMockUser
     void deleteCustomer_shouldReturnNotFound_whenCustomerDoesNotExist() throws Exception {
-        doThrow(new ResourceNotFoundException("Customer not found")).when(customerService).deleteCustomer(anyLong());
+        doThrow(new ResourceNotFoundException("Customer not found")).when(customerService).deleteCustomer(anyLong(), isNull());
 
         mockMvc.perform(delete("/api/v1/customers/{id}", 99L)
                         .with(user("user").password("password").roles("USER")) // Explicitly set user
@@ -191,6 +396,6 @@ class CustomerControllerIntegrationTest {
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath("$.message", is("Customer not found")));
 
-        verify(customerService, times(1)).deleteCustomer(anyLong());
+        verify(customerService, times(1)).deleteCustomer(anyLong(), isNull());
     }
 }
@@ -0,0 +1,59 @@
+package com.example.customeridentitydemo.repository;
+
+import com.example.customeridentitydemo.model.Address;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class JdbcAddressRepositoryTest {
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Spy
+    private JdbcStatementMetrics statementMetrics =
+            new JdbcStatementMetrics(new SimpleMeterRegistry(), true, Duration.ofMillis(200));
+
+    @InjectMocks
+    private JdbcAddressRepository addressRepository;
+
+    @Test
+    void findByCustomerIds_shouldIssueOneQueryPerChunkOfIds() {
+        List<Long> customerIds = LongStream.rangeClosed(1, 2 * JdbcAddressRepository.ID_BATCH_SIZE + 1)
+                .boxed()
+                .toList();
+
+        addressRepository.findByCustomerIds(customerIds);
+
+        verify(jdbcTemplate, times(3)).query(anyString(), anyMap(), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void findByCustomerIds_shouldNotQuery_whenNoIdsGiven() {
+        Map<Long, List<Address>> result = addressRepository.findByCustomerIds(Collections.emptyList());
+
+        assertTrue(result.isEmpty());
+        verify(jdbcTemplate, never()).query(anyString(), anyMap(), any(RowCallbackHandler.class));
+    }
+}
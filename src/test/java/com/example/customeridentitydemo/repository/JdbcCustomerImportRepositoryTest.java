@@ -0,0 +1,298 @@
+package com.example.customeridentitydemo.repository;
+
+import com.example.customeridentitydemo.repository.JdbcCustomerImportRepository.MergedCustomer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the set-based statements of the CSV import against Postgres: sanitizing is checked against
+ * {@code CustomerService.sanitizeInput}, so imported and API-created customers store the same values (the values
+ * reach the staging table HTML-escaped already), and rows are staged to check what validating and merging reject and
+ * write. Needs the same local Postgres as the integration tests; the schema is rebuilt on every run.
+ */
+class JdbcCustomerImportRepositoryTest {
+
+    private static final String SCHEMA = "import_test";
+    private static final Timestamp LONG_AGO = Timestamp.valueOf("2020-01-01 00:00:00");
+
+    private static DriverManagerDataSource dataSource;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    private final JdbcCustomerImportRepository importRepository = new JdbcCustomerImportRepository(jdbcTemplate,
+            new JdbcStatementMetrics(new SimpleMeterRegistry(), false, Duration.ofSeconds(1)));
+
+    private String table;
+
+    @BeforeAll
+    static void migrate() {
+        String url = System.getProperty("plan-test.url", "jdbc:postgresql://localhost:5432/customer_identity_db");
+        String username = System.getProperty("plan-test.username", "demo_user");
+        String password = System.getProperty("plan-test.password", "demo_pass");
+
+        var admin = new NamedParameterJdbcTemplate(new DriverManagerDataSource(url, username, password));
+        admin.getJdbcTemplate().execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        Flyway.configure()
+                .dataSource(url, username, password)
+                .schemas(SCHEMA)
+                .locations("classpath:db/migration")
+                // As in application.yml: V5 mixes an extension with CONCURRENTLY index builds, which a
+                // transactional lock would block
+                .mixed(true)
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .load()
+                .migrate();
+
+        // public stays on the path for pg_trgm, which lives there when another schema created it first
+        dataSource = new DriverManagerDataSource(url + "?currentSchema=" + SCHEMA + ",public", username, password);
+    }
+
+    @AfterAll
+    static void dropSchema() {
+        new NamedParameterJdbcTemplate(dataSource).getJdbcTemplate()
+                .execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+    }
+
+    @BeforeEach
+    void createStagingTable() {
+        jdbcTemplate.getJdbcTemplate().execute("TRUNCATE customers, addresses RESTART IDENTITY");
+        table = importRepository.createStagingTable();
+    }
+
+    @AfterEach
+    void dropStagingTable() {
+        importRepository.dropStagingTable(table);
+    }
+
+    // What CustomerService.sanitizeInput stores for a value escaped already; the import stores blank values as NULL
+    private static String sanitizeInput(String value) {
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    // Stages a row for last name Doe and phone 555-0100, with the five address values or without an address
+    private void stage(String firstName, String email, String ssn, String... address) {
+        var values = new MapSqlParameterSource()
+                .addValue("first_name", firstName)
+                .addValue("email", email)
+                .addValue("ssn", ssn);
+        List<String> addressColumns = List.of("street", "city", "state", "zip_code", "address_type");
+        for (int i = 0; i < addressColumns.size(); i++) {
+            values.addValue(addressColumns.get(i), address.length > 0 ? address[i] : null);
+        }
+        jdbcTemplate.update("INSERT INTO " + table + " (first_name, last_name, email, ssn, phone, street, city, state, "
+                + "zip_code, address_type) VALUES (:first_name, 'Doe', :email, :ssn, '555-0100', :street, :city, "
+                + ":state, :zip_code, :address_type)", values);
+    }
+
+    private static String[] address(String street) {
+        return new String[] {street, "Springfield", "IL", "62701", "home"};
+    }
+
+    // A customer last updated long ago, with the values stage() gives its rows
+    private long insertCustomer(String firstName, String email, String ssn, boolean deleted) {
+        var params = new MapSqlParameterSource()
+                .addValue("first_name", firstName)
+                .addValue("email", email)
+                .addValue("ssn", ssn)
+                .addValue("long_ago", LONG_AGO)
+                .addValue("deleted_at", deleted ? LONG_AGO : null);
+        return jdbcTemplate.queryForObject("""
+                INSERT INTO customers (first_name, last_name, email, ssn, phone, created_at, updated_at, deleted_at)
+                VALUES (:first_name, 'Doe', :email, :ssn, '555-0100', :long_ago, :long_ago, :deleted_at)
+                RETURNING id
+                """, params, Long.class);
+    }
+
+    private void insertAddress(long customerId, String street, boolean deleted) {
+        var params = new MapSqlParameterSource()
+                .addValue("customer_id", customerId)
+                .addValue("street", street)
+                .addValue("deleted_at", deleted ? LONG_AGO : null);
+        jdbcTemplate.update("""
+                INSERT INTO addresses (customer_id, street, city, state, zip_code, address_type, deleted_at)
+                VALUES (:customer_id, :street, 'Springfield', 'IL', '62701', 'HOME', :deleted_at)
+                """, params);
+    }
+
+    private Map<String, Object> customer(String email) {
+        return jdbcTemplate.queryForMap("SELECT * FROM customers WHERE email = :email", Map.of("email", email));
+    }
+
+    private List<String> liveStreets(long customerId) {
+        return jdbcTemplate.queryForList(
+                "SELECT street FROM addresses WHERE customer_id = :id AND deleted_at IS NULL ORDER BY street",
+                Map.of("id", customerId), String.class);
+    }
+
+    // Reject reasons by row number after sanitizing and validating the staged rows
+    private Map<Long, String> validate() {
+        importRepository.sanitize(table);
+        importRepository.validate(table);
+        Map<Long, String> rejects = new HashMap<>();
+        importRepository.findRejected(table, 100).forEach(reject -> rejects.put(reject.row(), reject.reason()));
+        assertEquals(rejects.size(), importRepository.countRejected(table));
+        return rejects;
+    }
+
+    @Test
+    void sanitize_shouldTrimLikeSanitizeInput() {
+        List<String> values = List.of(
+                "Jos&eacute; M&uuml;ller",
+                "  &lt;b&gt;O&#39;Neil &amp; &quot;Co&quot;&lt;/b&gt;\t\r\n",
+                "\u0001\u001f Zo&euml;  ",
+                " \t ",
+                "Plain Ascii",
+                "Łukasz 张伟 😀");
+        for (String value : values) {
+            jdbcTemplate.update("INSERT INTO " + table + " (first_name) VALUES (:value)", Map.of("value", value));
+        }
+
+        importRepository.sanitize(table);
+
+        List<String> actual = jdbcTemplate.queryForList(
+                "SELECT first_name FROM " + table + " ORDER BY row_num", Collections.emptyMap(), String.class);
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(sanitizeInput(values.get(i)), actual.get(i), "value " + i);
+        }
+    }
+
+    @Test
+    void validate_shouldRejectInvalidFields_andIncompleteAddresses() {
+        stage("Jane", "jane@example.com", "111-11-1111", address("1 Elm St"));
+        stage("Nobody", "not-an-email", "222-22-2222");
+        stage(" ", "blank@example.com", "333-33-3333");
+        stage("John", "john@example.com", "444-44-4444", "1 Elm St", null, "IL", "62701", "HOME");
+        stage("Joan", "joan@example.com", "555-55-5555", "1 Elm St", "Springfield", "IL", "62701", "CASTLE");
+
+        assertEquals(Map.of(
+                2L, "email: Email should be valid",
+                3L, "firstName: First name is required",
+                4L, "city: City is required",
+                5L, "addressType: Address Type must be one of BILLING, SHIPPING, HOME, WORK"), validate());
+    }
+
+    @Test
+    void validate_shouldRejectSsnOfEarlierRowForAnotherEmail() {
+        stage("Jane", "jane@example.com", "111-11-1111");
+        stage("John", "john@example.com", "111-11-1111");
+        // The same customer again: its later row updates it
+        stage("Janet", "jane@example.com", "111-11-1111");
+        // Invalid rows do not claim their SSN
+        stage("Nobody", "not-an-email", "222-22-2222");
+        stage("Joan", "joan@example.com", "222-22-2222");
+
+        assertEquals(Map.of(
+                2L, "ssn: SSN appears more than once in the file",
+                4L, "email: Email should be valid"), validate());
+    }
+
+    @Test
+    void validate_shouldRejectEmailsOfDeletedCustomers_andSsnsOfOtherCustomers() {
+        insertCustomer("Gone", "gone@example.com", "111-11-1111", true);
+        insertCustomer("Taken", "taken@example.com", "222-22-2222", false);
+        stage("Gone", "gone@example.com", "999-99-9999");
+        stage("Other", "other@example.com", "222-22-2222");
+        // A deleted customer's SSN stays taken
+        stage("Another", "another@example.com", "111-11-1111");
+        // The SSN's own customer may keep it
+        stage("Taken", "taken@example.com", "222-22-2222");
+
+        assertEquals(Map.of(
+                1L, "email: Customer with this email address is deleted",
+                2L, "ssn: SSN already exists.",
+                3L, "ssn: SSN already exists."), validate());
+    }
+
+    @Test
+    void mergeCustomers_shouldInsertNewEmails_andUpdateExistingOnes_withTheLastRowWinning() {
+        long janeId = insertCustomer("Jane", "jane@example.com", "111-11-1111", false);
+        stage("Janet", "jane@example.com", "111-11-1111");
+        stage("Neil", "neil@example.com", "222-22-2222");
+        stage("Janine", "jane@example.com", "111-11-1111");
+        stage("Nobody", "not-an-email", "333-33-3333");
+        assertEquals(Set.of(4L), validate().keySet());
+
+        List<MergedCustomer> merged = importRepository.mergeCustomers(table, 1, 4);
+
+        long neilId = ((Number) customer("neil@example.com").get("id")).longValue();
+        assertEquals(Set.of(new MergedCustomer(janeId, false), new MergedCustomer(neilId, true)), Set.copyOf(merged));
+        Map<String, Object> jane = customer("jane@example.com");
+        assertEquals("Janine", jane.get("first_name"));
+        assertTrue(((Timestamp) jane.get("updated_at")).after(LONG_AGO));
+        assertEquals(LONG_AGO, jane.get("created_at"));
+        Map<String, Object> neil = customer("neil@example.com");
+        assertEquals("Neil", neil.get("first_name"));
+        assertEquals("PENDING_VERIFICATION", neil.get("status"));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT count(*) FROM customers", Map.of(), Long.class));
+    }
+
+    @Test
+    void mergeCustomers_shouldNotTouchCustomersWhoseValuesDoNotChange() {
+        insertCustomer("Jane", "jane@example.com", "111-11-1111", false);
+        stage("Jane", "jane@example.com", "111-11-1111");
+        validate();
+
+        assertTrue(importRepository.mergeCustomers(table, 1, 1).isEmpty());
+        assertEquals(LONG_AGO, customer("jane@example.com").get("updated_at"));
+    }
+
+    @Test
+    void mergeCustomers_shouldOnlyMergeTheGivenRows() {
+        stage("Jane", "jane@example.com", "111-11-1111");
+        stage("Neil", "neil@example.com", "222-22-2222");
+        validate();
+
+        assertEquals(1, importRepository.mergeCustomers(table, 2, 2).size());
+        assertEquals(List.of("neil@example.com"),
+                jdbcTemplate.queryForList("SELECT email FROM customers", Map.of(), String.class));
+    }
+
+    @Test
+    void mergeAddresses_shouldAddOnlyAddressesTheCustomerDoesNotHaveYet() {
+        long janeId = insertCustomer("Jane", "jane@example.com", "111-11-1111", false);
+        insertAddress(janeId, "1 Elm St", false);
+        insertAddress(janeId, "2 Oak St", true);
+        stage("Jane", "jane@example.com", "111-11-1111", address("1 Elm St"));
+        // Only a deleted address matches, so it is added again; the repeated row adds it once
+        stage("Jane", "jane@example.com", "111-11-1111", address("2 Oak St"));
+        stage("Jane", "jane@example.com", "111-11-1111", address("2 Oak St"));
+        stage("Jane", "jane@example.com", "111-11-1111");
+        stage("Neil", "neil@example.com", "222-22-2222", address("3 Pine St"));
+        // Rejected rows add no address
+        stage("Nobody", "not-an-email", "333-33-3333", address("4 Ash St"));
+        validate();
+
+        importRepository.mergeCustomers(table, 1, 6);
+        List<Long> customerIds = importRepository.mergeAddresses(table, 1, 6);
+
+        long neilId = ((Number) customer("neil@example.com").get("id")).longValue();
+        assertEquals(List.of(janeId, neilId), customerIds.stream().sorted().collect(Collectors.toList()));
+        assertEquals(List.of("1 Elm St", "2 Oak St"), liveStreets(janeId));
+        assertEquals(List.of("3 Pine St"), liveStreets(neilId));
+        assertEquals("HOME", jdbcTemplate.queryForObject("SELECT address_type FROM addresses WHERE customer_id = :id",
+                Map.of("id", neilId), String.class));
+        assertEquals(4, jdbcTemplate.queryForObject("SELECT count(*) FROM addresses", Map.of(), Long.class));
+
+        // Importing the same file again adds nothing
+        assertTrue(importRepository.mergeAddresses(table, 1, 6).isEmpty());
+    }
+}
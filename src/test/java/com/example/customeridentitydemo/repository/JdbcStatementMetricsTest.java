@@ -0,0 +1,61 @@
+package com.example.customeridentitydemo.repository;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcStatementMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final JdbcStatementMetrics statementMetrics =
+            new JdbcStatementMetrics(meterRegistry, true, Duration.ofMillis(200));
+
+    @Test
+    void time_shouldRecordStatementByNameAndOutcome() {
+        assertEquals("row", statementMetrics.time("customer.findById", Map.of("id", 1L), () -> "row"));
+        assertThrows(IllegalStateException.class, () -> statementMetrics.time("customer.findById", Map.of("id", 2L),
+                () -> {
+                    throw new IllegalStateException("connection refused");
+                }));
+
+        assertEquals(1, timer("customer.findById", "success").count());
+        assertEquals(1, timer("customer.findById", "error").count());
+    }
+
+    @Test
+    void shape_shouldDescribeParameterTypesAndSizesWithoutValues() {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("ssn", "123-45-6789");
+        params.put("email", "jane@example.com");
+        params.put("phone", null);
+        params.put("ids", new Long[]{1L, 2L, 3L});
+        params.put("names", List.of("Jane", "John"));
+
+        String shape = JdbcStatementMetrics.shape(params);
+
+        assertTrue(shape.contains("ssn=String") && shape.contains("phone=null") && shape.contains("ids=Long[3]"), shape);
+        assertTrue(shape.contains("names=") && shape.contains("[2]"), shape);
+        assertFalse(shape.contains("6789") || shape.contains("jane") || shape.contains("John"), shape);
+    }
+
+    @Test
+    void shape_shouldDescribeBatchRows() {
+        MapSqlParameterSource row = new MapSqlParameterSource()
+                .addValue("email", "jane@example.com")
+                .addValue("customer_id", 7L);
+
+        assertEquals("{customer_id=Long, email=String}", JdbcStatementMetrics.shape(row));
+    }
+
+    private Timer timer(String statement, String outcome) {
+        return meterRegistry.get("db.statement").tag("statement", statement).tag("outcome", outcome).timer();
+    }
+}
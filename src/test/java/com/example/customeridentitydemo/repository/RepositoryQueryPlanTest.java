@@ -0,0 +1,344 @@
+package com.example.customeridentitydemo.repository;
+
+import com.example.customeridentitydemo.model.Address;
+import com.example.customeridentitydemo.model.AddressType;
+import com.example.customeridentitydemo.model.Customer;
+import com.example.customeridentitydemo.model.CustomerStatus;
+import com.example.customeridentitydemo.service.CustomerTimestampsBackfill;
+import com.example.customeridentitydemo.service.SyntheticDataGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Guards the plans of the repository statements. Each statement is run through the repository exactly as the service
+ * issues it, against a schema migrated by Flyway and seeded with {@code plan-test.customers} customers, and its
+ * {@code EXPLAIN (FORMAT JSON)} is checked for the expected index, no sequential scan of customers or addresses and
+ * an estimated cost below a ceiling. A migration that drops or changes an index these statements rely on fails here.
+ * Needs the same local Postgres as the integration tests; the schema is rebuilt on every run.
+ */
+class RepositoryQueryPlanTest {
+
+    private static final String SCHEMA = "plan_test";
+    private static final Set<String> LARGE_TABLES = Set.of("customers", "addresses");
+
+    // Live customers by id: either index is a single-row lookup, the partial one is merely smaller
+    private static final String LIVE_CUSTOMER_BY_ID = "customers_pkey|idx_customers_live_id";
+
+    private static final Set<String> SEARCH_INDEXES = Set.of("idx_customers_live_email_c",
+            "idx_customers_live_last_name_c", "idx_customers_live_first_name_c", "idx_customers_live_search_gist");
+
+    // Seed data spans 2023-2024 (see seed())
+    private static final LocalDateTime SEED_END = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private static DriverManagerDataSource dataSource;
+
+    private final RecordingJdbcTemplate recordingTemplate = new RecordingJdbcTemplate(dataSource);
+    private final NamedParameterJdbcTemplate jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    private final JdbcStatementMetrics statementMetrics =
+            new JdbcStatementMetrics(new SimpleMeterRegistry(), false, Duration.ofSeconds(1));
+    private final JdbcCustomerRepository customerRepository =
+            new JdbcCustomerRepository(recordingTemplate, statementMetrics);
+    private final JdbcAddressRepository addressRepository =
+            new JdbcAddressRepository(recordingTemplate, statementMetrics);
+    private final JdbcBackfillRepository backfillRepository =
+            new JdbcBackfillRepository(recordingTemplate, statementMetrics);
+    private final TransactionTemplate transactionTemplate =
+            new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeAll
+    static void migrateAndSeed() {
+        String url = System.getProperty("plan-test.url", "jdbc:postgresql://localhost:5432/customer_identity_db");
+        String username = System.getProperty("plan-test.username", "demo_user");
+        String password = System.getProperty("plan-test.password", "demo_pass");
+        int customers = Integer.getInteger("plan-test.customers", 100_000);
+
+        var admin = new NamedParameterJdbcTemplate(new DriverManagerDataSource(url, username, password));
+        admin.getJdbcTemplate().execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        Flyway.configure()
+                .dataSource(url, username, password)
+                .schemas(SCHEMA)
+                .locations("classpath:db/migration")
+                // As in application.yml: V5 mixes an extension with CONCURRENTLY index builds, which a
+                // transactional lock would block
+                .mixed(true)
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .load()
+                .migrate();
+
+        // public stays on the path for pg_trgm, which lives there when another schema created it first
+        dataSource = new DriverManagerDataSource(url + "?currentSchema=" + SCHEMA + ",public", username, password);
+        seed(dataSource, customers);
+    }
+
+    @AfterAll
+    static void dropSchema() {
+        new NamedParameterJdbcTemplate(dataSource).getJdbcTemplate()
+                .execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+    }
+
+    // The generator's dataset for seed 42: customers created over 2023-2024, Zipf-distributed names, 4% soft-deleted
+    private static void seed(DataSource dataSource, int customers) {
+        var template = new NamedParameterJdbcTemplate(dataSource);
+        var generator = new SyntheticDataGenerator(
+                new JdbcBulkLoadRepository(template, new JdbcStatementMetrics(new SimpleMeterRegistry(), false, Duration.ofSeconds(1))),
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                50_000, customers, 0.04, "2023-01-01", SEED_END.toLocalDate().toString());
+        generator.generate(customers, 42);
+    }
+
+    @Test
+    void customerFindPage_shouldSeekThroughLiveIdIndex() {
+        assertPlan("customer.findPage", () -> customerRepository.findPage(new CustomerPageKey(null, 50_000L), 51, CustomerFilter.NONE),
+                Set.of("idx_customers_live_id"), 50);
+    }
+
+    @Test
+    void customerFindPageColumns_shouldSeekThroughLiveIdIndex() {
+        assertPlan("customer.findPageColumns",
+                () -> customerRepository.findPage(new CustomerPageKey(null, 50_000L), 51, Set.of("first_name", "email"), CustomerFilter.NONE),
+                Set.of("idx_customers_live_id"), 50);
+    }
+
+    @Test
+    void customerFindPage_filteredByStatusAndCreatedWeek_shouldRangeScanStatusCreatedIndex() {
+        var filter = new CustomerFilter(CustomerStatus.PENDING_VERIFICATION,
+                LocalDateTime.of(2024, 6, 3, 0, 0), LocalDateTime.of(2024, 6, 10, 0, 0), null);
+        assertKeysetPlan("customer.findPage", () -> customerRepository.findPage(null, 51, filter),
+                "idx_customers_live_status_created_id", 300);
+    }
+
+    @Test
+    void customerFindPage_filteredByUpdatedSince_shouldRangeScanUpdatedIndex() {
+        var filter = new CustomerFilter(null, null, null, SEED_END.minusDays(1));
+        assertKeysetPlan("customer.findPage", () -> customerRepository.findPage(null, 51, filter),
+                "idx_customers_live_updated_id", 300);
+    }
+
+    // A range covering the whole table, paged to its middle: each page must seek to its key and read one page of
+    // rows, not read and sort every remaining match
+    @Test
+    void customerFindPage_deepPageOfBroadRange_shouldSeekToKeyInIndexOrder() {
+        var middle = new CustomerPageKey(LocalDateTime.of(2024, 1, 1, 0, 0), 50_000L);
+        var created = new CustomerFilter(null, LocalDateTime.of(2023, 1, 1, 0, 0), SEED_END, null);
+        assertKeysetPlan("customer.findPage", () -> customerRepository.findPage(middle, 51, created),
+                "idx_customers_live_created_id", 300);
+        assertKeysetPlan("customer.findPageColumns",
+                () -> customerRepository.findPage(middle, 51, Set.of("email"), created),
+                "idx_customers_live_created_id", 300);
+
+        var activeCreated = new CustomerFilter(CustomerStatus.ACTIVE, LocalDateTime.of(2023, 1, 1, 0, 0), null, null);
+        assertKeysetPlan("customer.findPage", () -> customerRepository.findPage(middle, 51, activeCreated),
+                "idx_customers_live_status_created_id", 300);
+
+        var updated = new CustomerFilter(null, null, null, LocalDateTime.of(2023, 1, 1, 0, 0));
+        assertKeysetPlan("customer.findPage", () -> customerRepository.findPage(middle, 51, updated),
+                "idx_customers_live_updated_id", 300);
+    }
+
+    @Test
+    void customerSearch_shouldUsePrefixAndTrigramIndexes() {
+        assertSearchPlan("john", Set.of("idx_customers_live_email_c", "idx_customers_live_first_name_c",
+                "idx_customers_live_last_name_c", "idx_customers_live_search_gist"));
+    }
+
+    // Common prefixes and fragments match a large share of the table; the branches must still stop at the cap
+    @Test
+    void customerSearch_forHighFrequencyQueries_shouldReadMatchesInIndexOrder() {
+        assertSearchPlan("ma", Set.of("idx_customers_live_email_c", "idx_customers_live_first_name_c",
+                "idx_customers_live_last_name_c"));
+        assertSearchPlan("gmail", Set.of("idx_customers_live_email_c", "idx_customers_live_search_gist"));
+    }
+
+    @Test
+    void customerFindById_variants_shouldLookUpSingleRow() {
+        assertPlan("customer.findById", () -> customerRepository.findById(42L), Set.of(LIVE_CUSTOMER_BY_ID), 20);
+        assertPlan("customer.findByIdColumns", () -> customerRepository.findById(42L, Set.of("email")),
+                Set.of(LIVE_CUSTOMER_BY_ID), 20);
+        assertPlan("customer.findByIdForUpdate", () -> customerRepository.findByIdForUpdate(42L),
+                Set.of(LIVE_CUSTOMER_BY_ID), 20);
+        assertPlan("customer.findUpdatedAt", () -> customerRepository.findUpdatedAt(42L),
+                Set.of(LIVE_CUSTOMER_BY_ID), 20);
+    }
+
+    @Test
+    void customerWrites_shouldLocateRowById() {
+        var customer = new Customer(42L, "Jane", "Doe", "jane.doe.42@example.com", "SSN-PLAN-42", null,
+                CustomerStatus.ACTIVE, null, null, null, new ArrayList<>());
+        assertPlan("customer.update", () -> customerRepository.update(customer), Set.of("customers_pkey"), 20);
+        assertPlan("customer.deleteById", () -> customerRepository.deleteById(42L), Set.of("customers_pkey"), 20);
+    }
+
+    @Test
+    void addressReads_shouldUseCustomerIdIndex() {
+        assertPlan("address.findByCustomerId", () -> addressRepository.findByCustomerId(42L),
+                Set.of("idx_addresses_customer_id"), 30);
+        List<Long> page = new ArrayList<>();
+        for (long id = 50_001; id <= 50_500; id++) page.add(id);
+        assertPlan("address.findByCustomerIds", () -> addressRepository.findByCustomerIds(page),
+                Set.of("idx_addresses_customer_id"), 5_000);
+    }
+
+    @Test
+    void customerTimestampsBackfillChunk_shouldRangeScanPrimaryKey() {
+        String chunkSql = new CustomerTimestampsBackfill(null).chunkSql();
+        assertPlan("backfill.chunk.customer-timestamps",
+                () -> backfillRepository.applyChunk("customer-timestamps", chunkSql, 50_001L, 51_000L),
+                Set.of("customers_pkey"), 500);
+    }
+
+    @Test
+    void addressWrites_shouldLocateRowsByIndex() {
+        var address = new Address(42L, "1 Elm St", "Springfield", "IL", "62701", AddressType.HOME, null);
+        assertPlan("address.updateAll", () -> addressRepository.updateAll(List.of(address)),
+                Set.of("addresses_pkey"), 20);
+        assertPlan("address.deleteByCustomerIdExcept", () -> addressRepository.deleteByCustomerIdExcept(42L, List.of(1L)),
+                Set.of("idx_addresses_customer_id"), 30);
+        assertPlan("address.deleteById", () -> addressRepository.deleteById(42L), Set.of("addresses_pkey"), 20);
+    }
+
+    // Keyset pages read their rows in index order from the seek onwards: no Sort anywhere in the plan
+    private void assertKeysetPlan(String statement, Runnable call, String expectedIndex, double maxCost) {
+        JsonNode plan = assertPlan(statement, call, Set.of(expectedIndex), maxCost);
+        assertFalse(containsSort(plan), statement + " sorts its matches\n" + plan.toPrettyString());
+    }
+
+    private static boolean containsSort(JsonNode node) {
+        if (node.path("Node Type").asText().endsWith("Sort")) {
+            return true;
+        }
+        for (JsonNode child : node.path("Plans")) {
+            if (containsSort(child)) return true;
+        }
+        return false;
+    }
+
+    // Each branch reads at most max-results rows in index order: no Sort may sit between a search index scan and the
+    // branch's Limit (the final ranking sorts the capped union only). Four branches of 200 rows cost about 3,000
+    // whatever the table size or the query
+    private void assertSearchPlan(String query, Set<String> expectedIndexes) {
+        JsonNode plan = assertPlan("customer.search(" + query + ")",
+                () -> customerRepository.search(query, 21, 0, 200, 0.4), expectedIndexes, 3_500);
+        assertNoSortOverSearchScans(plan, false, query, plan);
+    }
+
+    private static void assertNoSortOverSearchScans(JsonNode node, boolean belowSort, String query, JsonNode plan) {
+        String type = node.path("Node Type").asText();
+        if (belowSort && SEARCH_INDEXES.contains(node.path("Index Name").asText())) {
+            fail("customer.search(" + query + ") sorts the rows of " + node.get("Index Name").asText()
+                    + " before limiting them\n" + plan.toPrettyString());
+        }
+        boolean childBelowSort = !type.equals("Limit") && (belowSort || type.equals("Sort") || type.equals("Incremental Sort"));
+        for (JsonNode child : node.path("Plans")) {
+            assertNoSortOverSearchScans(child, childBelowSort, query, plan);
+        }
+    }
+
+    /**
+     * Runs {@code call} in a transaction that is rolled back, then explains the last statement it issued inside the
+     * same transaction, so transaction-local settings made by the call (such as the search threshold) apply.
+     * Each expected index may list alternatives separated by {@code |}.
+     */
+    private JsonNode assertPlan(String statement, Runnable call, Set<String> expectedIndexes, double maxCost) {
+        JsonNode plan = transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            recordingTemplate.statements.clear();
+            call.run();
+            assertFalse(recordingTemplate.statements.isEmpty(), statement + " issued no statement");
+            RecordedStatement recorded = recordingTemplate.statements.get(recordingTemplate.statements.size() - 1);
+            String json = jdbcTemplate.queryForObject(
+                    "EXPLAIN (FORMAT JSON) " + recorded.sql(), recorded.params(), String.class);
+            try {
+                return objectMapper.readTree(json).get(0).get("Plan");
+            } catch (Exception e) {
+                throw new IllegalStateException("Unreadable plan for " + statement, e);
+            }
+        });
+
+        Set<String> indexes = new LinkedHashSet<>();
+        Set<String> seqScans = new LinkedHashSet<>();
+        collect(plan, indexes, seqScans);
+        String described = statement + " plan:\n" + plan.toPrettyString();
+
+        for (String expected : expectedIndexes) {
+            assertTrue(Arrays.stream(expected.split("\\|")).anyMatch(indexes::contains),
+                    statement + " should use " + expected + " but used " + indexes + "\n" + described);
+        }
+        assertTrue(seqScans.stream().noneMatch(LARGE_TABLES::contains),
+                statement + " sequentially scans " + seqScans + "\n" + described);
+        double cost = plan.get("Total Cost").asDouble();
+        assertTrue(cost <= maxCost,
+                statement + " estimated cost " + cost + " exceeds " + maxCost + "\n" + described);
+        return plan;
+    }
+
+    private static void collect(JsonNode node, Set<String> indexes, Set<String> seqScans) {
+        if (node.hasNonNull("Index Name")) {
+            indexes.add(node.get("Index Name").asText());
+        }
+        if ("Seq Scan".equals(node.path("Node Type").asText())) {
+            seqScans.add(node.path("Relation Name").asText());
+        }
+        for (JsonNode child : node.path("Plans")) {
+            collect(child, indexes, seqScans);
+        }
+    }
+
+    private record RecordedStatement(String sql, SqlParameterSource params) {
+    }
+
+    // Executes statements as usual and records their SQL and parameters; batches are recorded by their first row
+    private static final class RecordingJdbcTemplate extends NamedParameterJdbcTemplate {
+        private final List<RecordedStatement> statements = new ArrayList<>();
+
+        private RecordingJdbcTemplate(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        protected PreparedStatementCreator getPreparedStatementCreator(String sql, SqlParameterSource paramSource,
+                Consumer<PreparedStatementCreatorFactory> customizer) {
+            statements.add(new RecordedStatement(sql, paramSource));
+            return super.getPreparedStatementCreator(sql, paramSource, customizer);
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, SqlParameterSource[] batchArgs) {
+            statements.add(new RecordedStatement(sql, batchArgs[0]));
+            return super.batchUpdate(sql, batchArgs);
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, SqlParameterSource[] batchArgs, KeyHolder generatedKeyHolder,
+                String[] keyColumnNames) {
+            statements.add(new RecordedStatement(sql, batchArgs[0]));
+            return super.batchUpdate(sql, batchArgs, generatedKeyHolder, keyColumnNames);
+        }
+    }
+}
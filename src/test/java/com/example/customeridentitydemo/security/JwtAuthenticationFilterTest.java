@@ -0,0 +1,82 @@
+package com.example.customeridentitydemo.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class JwtAuthenticationFilterTest {
+
+    private static final String SECRET = "testSecretKeyThatIsAtLeast256BitsLongForHmacShaAlgorithms";
+
+    private final CustomUserDetailsService userStore = new CustomUserDetailsService();
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilter_shouldAuthenticateFromClaimsWithoutUserLookup_whenClaimsModeEnabled() throws Exception {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 3600, true, 100, true, 300, new SimpleMeterRegistry());
+        String token = jwtUtil.generateToken(userStore.loadUserByUsername("admin"));
+        UserDetailsService userDetailsService = spy(userStore);
+
+        Authentication authentication = authenticate(jwtUtil, userDetailsService, token);
+
+        assertNotNull(authentication);
+        assertEquals("admin", authentication.getName());
+        assertEquals(List.of("ROLE_ADMIN", "ROLE_USER"),
+                authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).sorted().toList());
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+    }
+
+    @Test
+    void doFilter_shouldLoadUser_whenClaimsModeDisabled() throws Exception {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 3600, true, 100, false, 300, new SimpleMeterRegistry());
+        String token = jwtUtil.generateToken(userStore.loadUserByUsername("user"));
+        UserDetailsService userDetailsService = spy(userStore);
+
+        Authentication authentication = authenticate(jwtUtil, userDetailsService, token);
+
+        assertNotNull(authentication);
+        assertEquals("user", authentication.getName());
+        verify(userDetailsService, times(1)).loadUserByUsername("user");
+    }
+
+    @Test
+    void doFilter_shouldNotAuthenticate_whenTokenIsInvalid() throws Exception {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 3600, true, 100, true, 300, new SimpleMeterRegistry());
+
+        assertNull(authenticate(jwtUtil, userStore, "not-a-jwt"));
+    }
+
+    private Authentication authenticate(JwtUtil jwtUtil, UserDetailsService userDetailsService, String token) throws Exception {
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(filter, "userDetailsService", userDetailsService);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/customers");
+        request.setServletPath("/api/v1/customers");
+        request.addHeader("Authorization", "Bearer " + token);
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest(), "filter chain must continue");
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
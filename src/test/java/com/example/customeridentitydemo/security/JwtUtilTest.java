@@ -0,0 +1,116 @@
+package com.example.customeridentitydemo.security;
+
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilTest {
+
+    private static final String SECRET = "testSecretKeyThatIsAtLeast256BitsLongForHmacShaAlgorithms";
+
+    private SimpleMeterRegistry meterRegistry;
+    private JwtUtil jwtUtil;
+    private UserDetails user;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        jwtUtil = new JwtUtil(SECRET, 3600, true, 100, false, 300, meterRegistry);
+        user = User.withUsername("user").password("ignored").authorities(List.of()).build();
+    }
+
+    @Test
+    void verify_shouldReturnSubjectAndExpiry_forGeneratedToken() {
+        String token = jwtUtil.generateToken(user);
+
+        VerifiedToken verified = jwtUtil.verify(token);
+
+        assertEquals("user", verified.username());
+        assertNotNull(verified.issuedAt());
+        assertTrue(verified.expiresAt().isAfter(verified.issuedAt()));
+        assertTrue(jwtUtil.validateToken(verified, user));
+    }
+
+    @Test
+    void verify_shouldServeRepeatTokensFromCache() {
+        String token = jwtUtil.generateToken(user);
+
+        VerifiedToken first = jwtUtil.verify(token);
+        VerifiedToken second = jwtUtil.verify(token);
+
+        assertSame(first, second);
+        assertEquals(1.0, cacheGets("hit"));
+        assertEquals(1.0, cacheGets("miss"));
+    }
+
+    @Test
+    void verify_shouldRejectTamperedToken() {
+        String token = jwtUtil.generateToken(user);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThrows(JwtException.class, () -> jwtUtil.verify(tampered));
+        assertFalse(jwtUtil.validateToken(tampered));
+    }
+
+    @Test
+    void verify_shouldRejectTokenSignedWithAnotherKey() {
+        JwtUtil otherIssuer = new JwtUtil(SECRET + "-other", 3600, true, 100, false, 300, new SimpleMeterRegistry());
+        String foreignToken = otherIssuer.generateToken(user);
+
+        assertThrows(JwtException.class, () -> jwtUtil.verify(foreignToken));
+    }
+
+    @Test
+    void verify_shouldWorkWithCacheDisabled() {
+        JwtUtil uncached = new JwtUtil(SECRET, 3600, false, 100, false, 300, new SimpleMeterRegistry());
+        String token = uncached.generateToken(user);
+
+        assertEquals("user", uncached.extractUsername(token));
+        assertTrue(uncached.validateToken(token, user));
+    }
+
+    @Test
+    void generateToken_shouldNotEmbedAuthorities_whenClaimsModeDisabled() {
+        VerifiedToken verified = jwtUtil.verify(jwtUtil.generateToken(user));
+
+        assertFalse(verified.carriesAuthorities());
+        assertFalse(jwtUtil.canAuthenticateFromClaims(verified));
+    }
+
+    @Test
+    void canAuthenticateFromClaims_shouldUseEmbeddedAuthorities_whenClaimsModeEnabled() {
+        JwtUtil claimsUtil = new JwtUtil(SECRET, 3600, true, 100, true, 300, new SimpleMeterRegistry());
+        UserDetails admin = User.withUsername("admin").password("ignored").roles("ADMIN", "USER").build();
+
+        VerifiedToken verified = claimsUtil.verify(claimsUtil.generateToken(admin));
+
+        assertTrue(verified.carriesAuthorities());
+        assertTrue(verified.accountActive());
+        assertEquals(List.of("ROLE_ADMIN", "ROLE_USER"),
+                verified.authorities().stream().map(GrantedAuthority::getAuthority).sorted().toList());
+        assertTrue(claimsUtil.canAuthenticateFromClaims(verified));
+    }
+
+    @Test
+    void canAuthenticateFromClaims_shouldRejectTokensOlderThanMaxStaleness() {
+        JwtUtil claimsUtil = new JwtUtil(SECRET, 3600, true, 100, true, 0, new SimpleMeterRegistry());
+
+        VerifiedToken verified = claimsUtil.verify(claimsUtil.generateToken(user));
+
+        assertTrue(verified.carriesAuthorities());
+        assertFalse(claimsUtil.canAuthenticateFromClaims(verified));
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "jwt.verified").tag("result", result)
+                .functionCounter().count();
+    }
+}
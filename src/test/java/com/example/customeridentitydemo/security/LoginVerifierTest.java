@@ -0,0 +1,150 @@
+package com.example.customeridentitydemo.security;
+
+import com.example.customeridentitydemo.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class LoginVerifierTest {
+
+    private final CustomUserDetailsService userDetailsService = new CustomUserDetailsService();
+
+    private SimpleMeterRegistry meterRegistry;
+    private AuthenticationManager authenticationManager;
+    private LoginVerifier loginVerifier;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        authenticationManager = mock(AuthenticationManager.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (loginVerifier != null) {
+            loginVerifier.shutdown();
+        }
+    }
+
+    @Test
+    void authenticate_shouldVerifyOnPoolThreadAndRecordLatency() {
+        loginVerifier = newVerifier(2, 4, 5000, false);
+        String[] verifyingThread = new String[1];
+        when(authenticationManager.authenticate(any())).thenAnswer(invocation -> {
+            verifyingThread[0] = Thread.currentThread().getName();
+            return authenticated("user");
+        });
+
+        Authentication authentication = loginVerifier.authenticate("user", "password");
+
+        assertEquals("user", authentication.getName());
+        assertTrue(verifyingThread[0].startsWith("login-verifier-"));
+        assertEquals(1, meterRegistry.get("login.verification.duration").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void authenticate_shouldPropagateBadCredentials() {
+        loginVerifier = newVerifier(2, 4, 5000, false);
+        when(authenticationManager.authenticate(any())).thenThrow(new BadCredentialsException("Bad credentials"));
+
+        assertThrows(BadCredentialsException.class, () -> loginVerifier.authenticate("user", "wrong"));
+        assertEquals(1, meterRegistry.get("login.verification.duration").tag("outcome", "failure").timer().count());
+    }
+
+    @Test
+    void authenticate_shouldRejectImmediately_whenPoolAndQueueAreFull() throws Exception {
+        loginVerifier = newVerifier(1, 1, 5000, false);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(authenticationManager.authenticate(any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return authenticated("user");
+        });
+
+        CompletableFuture<Authentication> running = CompletableFuture.supplyAsync(
+                () -> loginVerifier.authenticate("user", "password"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Authentication> queued = CompletableFuture.supplyAsync(
+                () -> loginVerifier.authenticate("user", "password"));
+        awaitQueued(1);
+
+        ServiceUnavailableException rejected = assertThrows(ServiceUnavailableException.class,
+                () -> loginVerifier.authenticate("user", "password"));
+        assertEquals(1, rejected.getRetryAfterSeconds());
+        assertEquals(1.0, meterRegistry.get("login.verification.rejected").counter().count());
+
+        release.countDown();
+        assertEquals("user", running.get(5, TimeUnit.SECONDS).getName());
+        assertEquals("user", queued.get(5, TimeUnit.SECONDS).getName());
+    }
+
+    @Test
+    void authenticate_shouldFailWithServiceUnavailable_whenVerificationTimesOut() {
+        loginVerifier = newVerifier(1, 1, 50, false);
+        when(authenticationManager.authenticate(any())).thenAnswer(invocation -> {
+            Thread.sleep(5000);
+            return authenticated("user");
+        });
+
+        assertThrows(ServiceUnavailableException.class, () -> loginVerifier.authenticate("user", "password"));
+    }
+
+    @Test
+    void authenticate_shouldServeRepeatLoginFromCache_whenCacheEnabled() {
+        loginVerifier = newVerifier(2, 4, 5000, true);
+        when(authenticationManager.authenticate(any())).thenReturn(authenticated("user"));
+
+        loginVerifier.authenticate("user", "password");
+        Authentication second = loginVerifier.authenticate("user", "password");
+
+        assertEquals("user", second.getName());
+        assertTrue(second.isAuthenticated());
+        verify(authenticationManager, times(1)).authenticate(any());
+    }
+
+    @Test
+    void authenticate_shouldNotCacheFailedOrDifferentCredentials() {
+        loginVerifier = newVerifier(2, 4, 5000, true);
+        when(authenticationManager.authenticate(any())).thenReturn(authenticated("user"));
+        loginVerifier.authenticate("user", "password");
+
+        when(authenticationManager.authenticate(any())).thenThrow(new BadCredentialsException("Bad credentials"));
+
+        assertThrows(BadCredentialsException.class, () -> loginVerifier.authenticate("user", "other-password"));
+        assertThrows(BadCredentialsException.class, () -> loginVerifier.authenticate("user", "other-password"));
+        verify(authenticationManager, times(3)).authenticate(any());
+    }
+
+    private LoginVerifier newVerifier(int poolSize, int queueCapacity, long timeoutMillis, boolean cacheEnabled) {
+        return new LoginVerifier(authenticationManager, userDetailsService, poolSize, queueCapacity, timeoutMillis,
+                cacheEnabled, 60, 100, meterRegistry);
+    }
+
+    private Authentication authenticated(String username) {
+        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        return UsernamePasswordAuthenticationToken.authenticated(userDetails, null, userDetails.getAuthorities());
+    }
+
+    private void awaitQueued(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("executor.queued").tag("name", "login.verification").gauge().value() < expected) {
+            assertTrue(System.nanoTime() < deadline, "verification was never queued");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.customeridentitydemo.service;
+
+import com.example.customeridentitydemo.exception.ResourceNotFoundException;
+import com.example.customeridentitydemo.model.BackfillJob;
+import com.example.customeridentitydemo.model.BackfillStatus;
+import com.example.customeridentitydemo.repository.JdbcBackfillRepository;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterConfig;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BackfillServiceTest {
+
+    private static final String NAME = "customer-timestamps";
+
+    @Mock
+    private JdbcBackfillRepository backfillRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ExecutorService backfillExecutor;
+
+    @Mock
+    private CustomerService customerService;
+
+    private CustomerTimestampsBackfill backfill;
+
+    private BackfillService backfillService;
+
+    @BeforeEach
+    void setUp() {
+        backfill = new CustomerTimestampsBackfill(customerService);
+        backfillService = new BackfillService();
+        ReflectionTestUtils.setField(backfillService, "backfillRepository", backfillRepository);
+        ReflectionTestUtils.setField(backfillService, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(backfillService, "backfillExecutor", backfillExecutor);
+        ReflectionTestUtils.setField(backfillService, "rateLimiterRegistry", RateLimiterRegistry.of(
+                RateLimiterConfig.custom()
+                        .limitForPeriod(1_000_000)
+                        .limitRefreshPeriod(Duration.ofSeconds(1))
+                        .timeoutDuration(Duration.ZERO)
+                        .build()));
+        ReflectionTestUtils.setField(backfillService, "backfillList", List.<Backfill>of(backfill));
+        ReflectionTestUtils.setField(backfillService, "chunkSize", 1000);
+        backfillService.registerBackfills();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> activeJobs() {
+        return (Set<String>) ReflectionTestUtils.getField(backfillService, "active");
+    }
+
+    private static BackfillJob job(BackfillStatus status, long nextId, long maxId) {
+        return new BackfillJob(NAME, status, 1L, nextId, maxId, 0L, 0L, null, null, null, null);
+    }
+
+    private void runTransactions() {
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(mock(TransactionStatus.class)));
+        lenient().doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    void run_shouldApplyChunksAndCheckpointEachUntilMaxId() {
+        runTransactions();
+        when(backfillRepository.findByNameForUpdate(NAME)).thenReturn(
+                Optional.of(job(BackfillStatus.RUNNING, 1, 2500)),
+                Optional.of(job(BackfillStatus.RUNNING, 1001, 2500)),
+                Optional.of(job(BackfillStatus.RUNNING, 2001, 2500)),
+                Optional.of(job(BackfillStatus.RUNNING, 2501, 2500)));
+        when(backfillRepository.applyChunk(eq(NAME), anyString(), anyLong(), anyLong()))
+                .thenReturn(List.of(1L, 7L, 1000L), List.of(), List.of(2001L, 2002L));
+
+        backfillService.run(backfill);
+
+        InOrder inOrder = inOrder(backfillRepository);
+        inOrder.verify(backfillRepository).applyChunk(NAME, backfill.chunkSql(), 1, 1000);
+        inOrder.verify(backfillRepository).saveProgress(NAME, 1001, 3);
+        inOrder.verify(backfillRepository).applyChunk(NAME, backfill.chunkSql(), 1001, 2000);
+        inOrder.verify(backfillRepository).saveProgress(NAME, 2001, 0);
+        inOrder.verify(backfillRepository).applyChunk(NAME, backfill.chunkSql(), 2001, 2500);
+        inOrder.verify(backfillRepository).saveProgress(NAME, 2501, 2);
+        inOrder.verify(backfillRepository).updateStatus(NAME, BackfillStatus.RUNNING, BackfillStatus.COMPLETED, null);
+        verify(transactionTemplate, times(4)).execute(any());
+        // Each chunk evicts just the customers its UPDATE returned
+        verify(customerService).evictCachedCustomers(List.of(1L, 7L, 1000L));
+        verify(customerService).evictCachedCustomers(List.of());
+        verify(customerService).evictCachedCustomers(List.of(2001L, 2002L));
+        verifyNoMoreInteractions(customerService);
+    }
+
+    @Test
+    void run_shouldStopWithoutChunkWhenPaused() {
+        runTransactions();
+        when(backfillRepository.findByNameForUpdate(NAME)).thenReturn(Optional.of(job(BackfillStatus.PAUSED, 1001, 2500)));
+
+        backfillService.run(backfill);
+
+        verify(backfillRepository, never()).applyChunk(anyString(), anyString(), anyLong(), anyLong());
+        verify(backfillRepository, never()).saveProgress(anyString(), anyLong(), anyInt());
+        verify(backfillRepository, never()).updateStatus(any(), any(), any(), any());
+    }
+
+    @Test
+    void run_shouldMarkJobFailedWithoutAdvancingCheckpoint() {
+        runTransactions();
+        when(backfillRepository.findByNameForUpdate(NAME)).thenReturn(Optional.of(job(BackfillStatus.RUNNING, 1001, 2500)));
+        when(backfillRepository.applyChunk(eq(NAME), anyString(), anyLong(), anyLong()))
+                .thenThrow(new IllegalStateException("lock timeout"));
+
+        backfillService.run(backfill);
+
+        verify(backfillRepository, never()).saveProgress(anyString(), anyLong(), anyInt());
+        verify(backfillRepository).updateStatus(NAME, BackfillStatus.RUNNING, BackfillStatus.FAILED, "lock timeout");
+    }
+
+    @Test
+    void run_shouldBackOffWhenPermitsAreTaken_andStopOncePaused() {
+        // Other backfills hold the permits for longer than the timeout
+        RateLimiter rateLimiter = mock(RateLimiter.class);
+        when(rateLimiter.acquirePermission(1000)).thenReturn(false);
+        when(rateLimiter.getRateLimiterConfig()).thenReturn(RateLimiterConfig.custom()
+                .limitForPeriod(1000)
+                .limitRefreshPeriod(Duration.ofMillis(10))
+                .build());
+        RateLimiterRegistry registry = mock(RateLimiterRegistry.class);
+        when(registry.rateLimiter(BackfillService.RATE_LIMITER)).thenReturn(rateLimiter);
+        ReflectionTestUtils.setField(backfillService, "rateLimiterRegistry", registry);
+        // Paused while the runner waited
+        when(backfillRepository.findByName(NAME)).thenReturn(Optional.of(job(BackfillStatus.RUNNING, 1001, 2500)),
+                Optional.of(job(BackfillStatus.PAUSED, 1001, 2500)));
+
+        backfillService.run(backfill);
+
+        verify(rateLimiter, times(2)).acquirePermission(1000);
+        verifyNoInteractions(transactionTemplate);
+        assertFalse(activeJobs().contains(NAME));
+    }
+
+    @Test
+    void registerBackfills_shouldRejectChunksLargerThanThePermitsOfAPeriod() {
+        ReflectionTestUtils.setField(backfillService, "rateLimiterRegistry", RateLimiterRegistry.of(
+                RateLimiterConfig.custom()
+                        .limitForPeriod(10)
+                        .limitRefreshPeriod(Duration.ofSeconds(1))
+                        .timeoutDuration(Duration.ofMinutes(1))
+                        .build()));
+
+        assertThrows(IllegalArgumentException.class, () -> backfillService.registerBackfills());
+    }
+
+    @Test
+    void startBackfill_shouldResumePausedJobFromCheckpoint() {
+        runTransactions();
+        when(backfillRepository.findIdRange("customers")).thenReturn(new JdbcBackfillRepository.IdRange(1, 3000));
+        when(backfillRepository.findByNameForUpdate(NAME)).thenReturn(Optional.of(job(BackfillStatus.PAUSED, 1001, 2500)));
+        when(backfillRepository.findByName(NAME)).thenReturn(Optional.of(job(BackfillStatus.RUNNING, 1001, 3000)));
+
+        BackfillJob result = backfillService.startBackfill(NAME);
+
+        assertEquals(BackfillStatus.RUNNING, result.getStatus());
+        assertEquals(1001, result.getNextId());
+        verify(backfillRepository).resume(NAME, 3000);
+        verify(backfillRepository, never()).start(anyString(), anyLong(), anyLong());
+        verify(backfillExecutor).execute(any(Runnable.class));
+    }
+
+    @Test
+    void startBackfill_shouldStartCompletedJobOver() {
+        runTransactions();
+        when(backfillRepository.findIdRange("customers")).thenReturn(new JdbcBackfillRepository.IdRange(5, 3000));
+        when(backfillRepository.findByNameForUpdate(NAME)).thenReturn(Optional.of(job(BackfillStatus.COMPLETED, 2501, 2500)));
+        when(backfillRepository.findByName(NAME)).thenReturn(Optional.of(job(BackfillStatus.RUNNING, 5, 3000)));
+
+        backfillService.startBackfill(NAME);
+
+        verify(backfillRepository).start(NAME, 5, 3000);
+        verify(backfillRepository, never()).resume(anyString(), anyLong());
+    }
+
+    @Test
+    void startBackfill_shouldResumePausedJobWhileRunnerIsStillStopping() {
+        runTransactions();
+        activeJobs().add(NAME);
+        when(backfillRepository.findIdRange("customers")).thenReturn(new JdbcBackfillRepository.IdRange(1, 3000));
+        when(backfillRepository.findByNameForUpdate(NAME)).thenReturn(Optional.of(job(BackfillStatus.PAUSED, 1001, 2500)));
+        when(backfillRepository.findByName(NAME)).thenReturn(Optional.of(job(BackfillStatus.RUNNING, 1001, 3000)));
+
+        backfillService.startBackfill(NAME);
+
+        // The start is recorded; the stopping runner, not a second one, continues the job
+        verify(backfillRepository).resume(NAME, 3000);
+        verify(backfillExecutor, never()).execute(any(Runnable.class));
+    }
+
+    @Test
+    void startBackfill_shouldLeaveJobRunningOnThisInstanceAlone() {
+        runTransactions();
+        activeJobs().add(NAME);
+        when(backfillRepository.findIdRange("customers")).thenReturn(new JdbcBackfillRepository.IdRange(1, 3000));
+        when(backfillRepository.findByNameForUpdate(NAME)).thenReturn(Optional.of(job(BackfillStatus.RUNNING, 1001, 2500)));
+        when(backfillRepository.findByName(NAME)).thenReturn(Optional.of(job(BackfillStatus.RUNNING, 1001, 2500)));
+
+        backfillService.startBackfill(NAME);
+
+        verify(backfillRepository, never()).resume(anyString(), anyLong());
+        verify(backfillRepository, never()).start(anyString(), anyLong(), anyLong());
+        verify(backfillExecutor, never()).execute(any(Runnable.class));
+    }
+
+    @Test
+    void run_shouldContinueJobStartedAgainWhileStopping() {
+        runTransactions();
+        // Paused when the runner checked, started again before it was no longer active
+        when(backfillRepository.findByNameForUpdate(NAME)).thenReturn(Optional.of(job(BackfillStatus.PAUSED, 1001, 2500)));
+        when(backfillRepository.findByName(NAME)).thenReturn(Optional.of(job(BackfillStatus.RUNNING, 1001, 2500)));
+
+        backfillService.run(backfill);
+
+        verify(backfillExecutor).execute(any(Runnable.class));
+        assertTrue(activeJobs().contains(NAME));
+    }
+
+    @Test
+    void startBackfill_shouldRejectUnknownBackfill() {
+        assertThrows(ResourceNotFoundException.class, () -> backfillService.startBackfill("nope"));
+        verifyNoInteractions(backfillRepository, backfillExecutor);
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.customeridentitydemo.service;
+
+import com.example.customeridentitydemo.dto.CustomerImportResponseDTO;
+import com.example.customeridentitydemo.exception.BadRequestException;
+import com.example.customeridentitydemo.repository.JdbcBulkLoadRepository;
+import com.example.customeridentitydemo.repository.JdbcCustomerImportRepository;
+import com.example.customeridentitydemo.repository.JdbcCustomerImportRepository.MergedCustomer;
+import com.example.customeridentitydemo.repository.JdbcCustomerImportRepository.RejectedRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.postgresql.util.PSQLException;
+import org.postgresql.util.ServerErrorMessage;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.util.HtmlUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerImportServiceTest {
+
+    private static final String TABLE = "customer_import_test";
+    private static final String CSV = "first_name,last_name,email,ssn,phone,street,city,state,zip_code,address_type\n"
+            + "Jane,Doe,jane@example.com,123-45-6789,,,,,,\n";
+
+    @Mock
+    private JdbcCustomerImportRepository importRepository;
+
+    @Mock
+    private JdbcBulkLoadRepository bulkLoadRepository;
+
+    @Mock
+    private CustomerService customerService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private CustomerImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        importService = new CustomerImportService();
+        ReflectionTestUtils.setField(importService, "importRepository", importRepository);
+        ReflectionTestUtils.setField(importService, "bulkLoadRepository", bulkLoadRepository);
+        ReflectionTestUtils.setField(importService, "customerService", customerService);
+        ReflectionTestUtils.setField(importService, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(importService, "mergeChunkSize", 2);
+        lenient().when(importRepository.createStagingTable()).thenReturn(TABLE);
+        lenient().when(importRepository.copySql(TABLE)).thenReturn("COPY " + TABLE);
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(mock(TransactionStatus.class)));
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        var out = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(out)) {
+            gzip.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    private static String read(InputStream in) {
+        try {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    // Reads in small pieces, as a driver may, so escapes and surrogate pairs straddle reads
+    private static String read(Reader in) {
+        try {
+            var text = new StringBuilder();
+            char[] buffer = new char[7];
+            for (int n; (n = in.read(buffer)) >= 0; ) {
+                assertFalse(n > 1 && Character.isHighSurrogate(buffer[n - 1]), "read split a surrogate pair");
+                text.append(buffer, 0, n);
+            }
+            return text.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String htmlEscaped(String csv) {
+        return read(CustomerImportService.htmlEscaped(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void decompressed_shouldInflateGzipAndPassPlainTextThrough() throws IOException {
+        assertEquals(CSV, read(CustomerImportService.decompressed(new ByteArrayInputStream(gzip(CSV)))));
+        assertEquals(CSV, read(CustomerImportService.decompressed(
+                new ByteArrayInputStream(CSV.getBytes(StandardCharsets.UTF_8)))));
+        assertEquals("", read(CustomerImportService.decompressed(new ByteArrayInputStream(new byte[0]))));
+    }
+
+    @Test
+    void htmlEscaped_shouldEscapeValuesLikeSanitizeInput_andKeepCsvQuoting() {
+        assertEquals(CSV, htmlEscaped(CSV));
+        assertEquals("O&#39;Neil,&lt;b&gt;Jos&eacute;&lt;/b&gt;,\"&quot;Co&quot;, &amp; sons\",\"a\nb\",😀\n",
+                htmlEscaped("O'Neil,<b>José</b>,\"\"\"Co\"\", & sons\",\"a\nb\",😀\n"));
+        // A quote in the middle of an unquoted value opens a quoted section, as in COPY
+        assertEquals("ab\"c,&quot;d\"e\n", htmlEscaped("ab\"c,\"\"d\"e\n"));
+        // An unterminated quoted value ends at the end of the input; COPY reports it
+        assertEquals("\"&quot;\"", htmlEscaped("\"\"\"\""));
+
+        // Escaping commutes with the trim the staged values get: the import stores what sanitizeInput stores
+        StringBuilder everyCharacter = new StringBuilder(" \t");
+        for (char c = 1; c < Character.MAX_VALUE; c++) {
+            if (!Character.isSurrogate(c) && c != '"') everyCharacter.append(c);
+        }
+        everyCharacter.append("😀\u0001 ");
+        String value = everyCharacter.toString();
+        assertEquals(HtmlUtils.htmlEscape(value.trim()), htmlEscaped("\"" + value + "\"").replaceAll("^\"|\"$", "").trim());
+    }
+
+    @Test
+    void importCustomers_shouldRejectInvalidUtf8() {
+        when(bulkLoadRepository.copyIn(anyString(), anyString(), any(Reader.class))).thenAnswer(invocation -> {
+            try {
+                Reader rows = invocation.getArgument(2);
+                while (rows.read(new char[64]) >= 0) {
+                }
+                return 1L;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        byte[] latin1 = "first_name\nJos\u00e9\n".getBytes(StandardCharsets.ISO_8859_1);
+
+        BadRequestException exception = assertThrows(BadRequestException.class,
+                () -> importService.importCustomers(new ByteArrayInputStream(latin1)));
+
+        assertEquals("Malformed CSV: not valid UTF-8", exception.getMessage());
+        verify(importRepository).dropStagingTable(TABLE);
+    }
+
+    @Test
+    void importCustomers_shouldMergeStagedRowsChunkByChunk() {
+        when(bulkLoadRepository.copyIn(eq("customerImport"), eq("COPY " + TABLE), any(Reader.class))).thenReturn(5L);
+        when(importRepository.mergeCustomers(TABLE, 1, 2))
+                .thenReturn(List.of(new MergedCustomer(10, true), new MergedCustomer(11, false)));
+        when(importRepository.mergeCustomers(TABLE, 3, 4)).thenReturn(List.of(new MergedCustomer(12, true)));
+        when(importRepository.mergeCustomers(TABLE, 5, 5)).thenReturn(List.of());
+        when(importRepository.mergeAddresses(TABLE, 1, 2)).thenReturn(List.of(10L, 13L));
+        when(importRepository.mergeAddresses(TABLE, 3, 4)).thenReturn(List.of(12L));
+        when(importRepository.mergeAddresses(TABLE, 5, 5)).thenReturn(List.of());
+        when(importRepository.countRejected(TABLE)).thenReturn(1L);
+        when(importRepository.findRejected(TABLE, 1000))
+                .thenReturn(List.of(new RejectedRow(5, "email: Email should be valid")));
+
+        CustomerImportResponseDTO result = importService.importCustomers(
+                new ByteArrayInputStream(CSV.getBytes(StandardCharsets.UTF_8)));
+
+        InOrder inOrder = inOrder(importRepository);
+        inOrder.verify(importRepository).sanitize(TABLE);
+        inOrder.verify(importRepository).validate(TABLE);
+        inOrder.verify(importRepository).mergeCustomers(TABLE, 1, 2);
+        inOrder.verify(importRepository).dropStagingTable(TABLE);
+        verify(transactionTemplate, times(3)).execute(any());
+        // Customers that got an address get a new updated_at, and so a new ETag
+        verify(importRepository).touchCustomers(Set.of(10L, 13L));
+        verify(importRepository).touchCustomers(Set.of(12L));
+        // Inserted customers cannot be cached yet; updated ones and those with new addresses are evicted
+        verify(customerService).evictCachedCustomers(Set.of(11L, 10L, 13L));
+        verify(customerService).evictCachedCustomers(Set.of(12L));
+        assertEquals(5, result.getRows());
+        assertEquals(4, result.getAccepted());
+        assertEquals(1, result.getRejected());
+        assertEquals(2, result.getCustomersInserted());
+        assertEquals(1, result.getCustomersUpdated());
+        assertEquals(3, result.getAddressesInserted());
+        assertEquals(5, result.getRejects().get(0).getRow());
+        assertEquals("email: Email should be valid", result.getRejects().get(0).getReason());
+    }
+
+    @Test
+    void importCustomers_shouldReportMalformedCsvWithoutEchoingValues() {
+        var error = new ServerErrorMessage("SERROR\0C22P04\0Mextra data after last expected column\0"
+                + "WCOPY customer_import_test, line 3: \"Jane,Doe,jane@example.com,123-45-6789,x,x,x,x,x,x,x\"\0\0");
+        when(bulkLoadRepository.copyIn(anyString(), anyString(), any(Reader.class)))
+                .thenThrow(new DataIntegrityViolationException("COPY failed", new PSQLException(error)));
+
+        BadRequestException exception = assertThrows(BadRequestException.class, () -> importService.importCustomers(
+                new ByteArrayInputStream(CSV.getBytes(StandardCharsets.UTF_8))));
+
+        assertEquals("Malformed CSV: extra data after last expected column (line 3)", exception.getMessage());
+        verify(importRepository, never()).mergeCustomers(anyString(), anyLong(), anyLong());
+        verify(importRepository).dropStagingTable(TABLE);
+    }
+
+    @Test
+    void importCustomers_shouldRejectTruncatedGzip() throws IOException {
+        byte[] compressed = gzip(CSV);
+        byte[] truncated = Arrays.copyOf(compressed, 6);
+
+        assertThrows(BadRequestException.class, () -> importService.importCustomers(new ByteArrayInputStream(truncated)));
+        verify(importRepository).dropStagingTable(TABLE);
+        verifyNoInteractions(bulkLoadRepository);
+    }
+}
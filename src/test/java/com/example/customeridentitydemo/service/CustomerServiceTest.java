@@ -1,31 +1,71 @@
 package com.example.customeridentitydemo.service;
 
+import com.example.customeridentitydemo.client.OrderResponseDTO;
+import com.example.customeridentitydemo.client.ResilientOrderServiceClient;
 import com.example.customeridentitydemo.dto.AddressRequestDTO;
+import com.example.customeridentitydemo.dto.BatchCreateResponseDTO;
+import com.example.customeridentitydemo.dto.BatchItemResultDTO;
+import com.example.customeridentitydemo.dto.CustomerPageResponseDTO;
 import com.example.customeridentitydemo.dto.CustomerRequestDTO;
 import com.example.customeridentitydemo.dto.CustomerResponseDTO;
+import com.example.customeridentitydemo.exception.BadRequestException;
+import com.example.customeridentitydemo.exception.PreconditionFailedException;
 import com.example.customeridentitydemo.exception.ResourceNotFoundException;
+import com.example.customeridentitydemo.exception.ServiceUnavailableException;
 import com.example.customeridentitydemo.model.Address;
 import com.example.customeridentitydemo.model.AddressType;
 import com.example.customeridentitydemo.model.Customer;
 import com.example.customeridentitydemo.model.CustomerStatus;
+import com.example.customeridentitydemo.repository.CustomerFilter;
+import com.example.customeridentitydemo.repository.CustomerPageKey;
 import com.example.customeridentitydemo.repository.JdbcCustomerRepository;
 import com.example.customeridentitydemo.repository.JdbcAddressRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
@@ -38,6 +78,23 @@ class CustomerServiceTest {
     @Mock
     private JdbcAddressRepository addressRepository;
 
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ResilientOrderServiceClient orderServiceClient;
+
+    private ExecutorService orderLookupExecutor;
+
     @InjectMocks
     private CustomerService customerService;
 
@@ -48,6 +105,9 @@ class CustomerServiceTest {
 
     @BeforeEach
     void setUp() {
+        orderLookupExecutor = Executors.newFixedThreadPool(2);
+        ReflectionTestUtils.setField(customerService, "orderLookupExecutor", orderLookupExecutor);
+
         address = new Address(
                 1L, "123 Main St", "Anytown", "CA", "90210", AddressType.HOME, null
         );
@@ -68,12 +128,19 @@ class CustomerServiceTest {
         );
     }
 
+    @AfterEach
+    void tearDown() {
+        orderLookupExecutor.shutdownNow();
+    }
+
     @Test
     void getAllCustomers_shouldReturnListOfCustomerResponseDTOs() {
-        when(customerRepository.findAll()).thenReturn(Arrays.asList(customer));
-        when(addressRepository.findByCustomerId(customer.getId())).thenReturn(Arrays.asList(address));
+        when(customerRepository.findPage(null, 51, CustomerFilter.NONE)).thenReturn(Arrays.asList(customer));
+        when(addressRepository.findByCustomerIds(List.of(customer.getId())))
+                .thenReturn(Map.of(customer.getId(), Arrays.asList(address)));
 
-        List<CustomerResponseDTO> result = customerService.getAllCustomers();
+        CustomerPageResponseDTO page = customerService.getAllCustomers(null, 50);
+        List<CustomerResponseDTO> result = page.getContent();
 
         assertNotNull(result);
         assertFalse(result.isEmpty());
@@ -81,7 +148,77 @@ class CustomerServiceTest {
         assertEquals(customer.getFirstName(), result.get(0).getFirstName());
         assertEquals(1, result.get(0).getAddresses().size());
         assertEquals(address.getStreet(), result.get(0).getAddresses().get(0).getStreet());
-        verify(customerRepository, times(1)).findAll();
+        assertNull(page.getNext());
+        verify(customerRepository, times(1)).findPage(null, 51, CustomerFilter.NONE);
+    }
+
+    @Test
+    void getAllCustomers_shouldUseConstantNumberOfQueries_regardlessOfPageSize() {
+        List<Customer> customers = new ArrayList<>();
+        for (long id = 1; id <= 200; id++) {
+            customers.add(new Customer(
+                    id, "First" + id, "Last" + id, "c" + id + "@example.com", "SSN" + id, null,
+                    CustomerStatus.ACTIVE, null, null, null, new ArrayList<>()
+            ));
+        }
+        when(customerRepository.findPage(null, 201, CustomerFilter.NONE)).thenReturn(customers);
+        when(addressRepository.findByCustomerIds(anyCollection())).thenReturn(Map.of(1L, List.of(address)));
+
+        CustomerPageResponseDTO page = customerService.getAllCustomers(null, 200);
+
+        assertEquals(200, page.getContent().size());
+        assertEquals(1, page.getContent().get(0).getAddresses().size());
+        assertTrue(page.getContent().get(1).getAddresses().isEmpty());
+        verify(customerRepository, times(1)).findPage(null, 201, CustomerFilter.NONE);
+        verify(addressRepository, times(1)).findByCustomerIds(anyCollection());
+        verify(addressRepository, never()).findByCustomerId(anyLong());
+    }
+
+    @Test
+    void getAllCustomers_shouldReturnCursorThatResumesAfterLastCustomer() {
+        Customer second = new Customer(
+                2L, "Jane", "Roe", "jane.roe@example.com", "123-45-679", "555-4321",
+                CustomerStatus.ACTIVE, null, LocalDateTime.now(), LocalDateTime.now(), new ArrayList<>()
+        );
+        when(customerRepository.findPage(null, 2, CustomerFilter.NONE)).thenReturn(Arrays.asList(customer, second));
+
+        CustomerPageResponseDTO firstPage = customerService.getAllCustomers(null, 1);
+
+        assertEquals(1, firstPage.getContent().size());
+        assertNotNull(firstPage.getNext());
+
+        when(customerRepository.findPage(new CustomerPageKey(null, 1L), 2, CustomerFilter.NONE)).thenReturn(List.of(second));
+
+        CustomerPageResponseDTO secondPage = customerService.getAllCustomers(firstPage.getNext(), 1);
+
+        assertEquals(2L, secondPage.getContent().get(0).getId());
+        assertNull(secondPage.getNext());
+    }
+
+    @Test
+    void getAllCustomers_shouldRejectMalformedCursor() {
+        assertThrows(BadRequestException.class, () -> customerService.getAllCustomers("not-a-cursor", 10));
+        verify(customerRepository, never()).findPage(any(), anyInt(), any(CustomerFilter.class));
+    }
+
+    @Test
+    void exportCustomers_shouldWriteOneJsonLinePerCustomer() throws Exception {
+        Customer second = new Customer(
+                2L, "Jane", "Roe", "jane.roe@example.com", "123-45-679", "555-4321",
+                CustomerStatus.ACTIVE, null, null, null, new ArrayList<>()
+        );
+        when(customerRepository.streamAll()).thenReturn(Stream.of(customer, second));
+        when(addressRepository.findByCustomerIds(List.of(1L, 2L))).thenReturn(Map.of(1L, List.of(address)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long exported = customerService.exportCustomers(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, exported);
+        assertEquals(2, lines.length);
+        assertEquals("John", objectMapper.readTree(lines[0]).get("firstName").asText());
+        assertEquals(1, objectMapper.readTree(lines[0]).get("addresses").size());
+        assertEquals("Jane", objectMapper.readTree(lines[1]).get("firstName").asText());
     }
 
     @Test
@@ -99,6 +236,68 @@ class CustomerServiceTest {
         verify(customerRepository, times(1)).save(any(Customer.class));
     }
 
+    @Test
+    void createCustomers_shouldReportPerItemResults() {
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(customerRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Customer> customers = invocation.getArgument(0);
+            customers.forEach(c -> c.setId(100L + customers.indexOf(c)));
+            return customers;
+        });
+        CustomerRequestDTO invalid = new CustomerRequestDTO("", "Doe", "not-an-email", "111", null, null);
+        CustomerRequestDTO duplicate = new CustomerRequestDTO(
+                "Janet", "Doe", "jane.doe@example.com", "555-55-555", null, null
+        );
+
+        BatchCreateResponseDTO result = customerService.createCustomers(List.of(customerRequestDTO, invalid, duplicate));
+
+        assertEquals(3, result.getTotal());
+        assertEquals(1, result.getSucceeded());
+        assertEquals(2, result.getFailed());
+        assertEquals(BatchItemResultDTO.Status.CREATED, result.getResults().get(0).getStatus());
+        assertEquals(100L, result.getResults().get(0).getId());
+        assertEquals(BatchItemResultDTO.Status.FAILED, result.getResults().get(1).getStatus());
+        assertEquals(2, result.getResults().get(1).getErrors().size());
+        assertEquals(BatchItemResultDTO.Status.FAILED, result.getResults().get(2).getStatus());
+        verify(customerRepository, times(1)).saveAll(anyList());
+        verify(addressRepository, times(1)).saveAll(argThat(addresses -> addresses.size() == 1));
+    }
+
+    @Test
+    void createCustomers_shouldIsolateConstraintViolationsWithinChunk() {
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        CustomerRequestDTO existing = new CustomerRequestDTO(
+                "John", "Doe", "john.doe@example.com", "123-45-678", null, null
+        );
+        when(customerRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Customer> customers = invocation.getArgument(0);
+            if (customers.stream().anyMatch(c -> c.getEmail().equals("john.doe@example.com"))) {
+                throw new DataIntegrityViolationException("duplicate key value violates unique constraint \"uk_customers_email\"");
+            }
+            customers.forEach(c -> c.setId(7L));
+            return customers;
+        });
+
+        BatchCreateResponseDTO result = customerService.createCustomers(List.of(customerRequestDTO, existing));
+
+        assertEquals(1, result.getSucceeded());
+        assertEquals(BatchItemResultDTO.Status.CREATED, result.getResults().get(0).getStatus());
+        assertEquals(List.of("email: Email address already exists."), result.getResults().get(1).getErrors());
+        // One failed chunk attempt followed by one retry per item
+        verify(customerRepository, times(3)).saveAll(anyList());
+    }
+
+    @Test
+    void createCustomers_shouldRejectEmptyBatch() {
+        assertThrows(BadRequestException.class, () -> customerService.createCustomers(List.of()));
+    }
+
     @Test
     void getCustomerById_shouldReturnCustomerResponseDTO_whenCustomerExists() {
         when(customerRepository.findById(anyLong())).thenReturn(Optional.of(customer));
@@ -113,6 +312,238 @@ class CustomerServiceTest {
         verify(addressRepository, times(1)).findByCustomerId(anyLong());
     }
 
+    @Test
+    void getCustomerById_shouldSelectOnlyRequestedColumns_andSkipAddressesAndOrders_forPartialView() {
+        Customer partial = new Customer();
+        partial.setId(1L);
+        partial.setEmail("john.doe@example.com");
+        partial.setUpdatedAt(customer.getUpdatedAt());
+        when(customerRepository.findById(eq(1L), anySet())).thenReturn(Optional.of(partial));
+
+        CustomerResponseDTO result = customerService.getCustomerById(1L, CustomerView.parse("email", null));
+
+        assertEquals("john.doe@example.com", result.getEmail());
+        assertNull(result.getFirstName());
+        assertNull(result.getAddresses());
+        assertNull(result.getOrders());
+        verify(customerRepository).findById(1L, Set.of("id", "updated_at", "email"));
+        verifyNoInteractions(addressRepository, orderServiceClient);
+    }
+
+    @Test
+    void getCustomerById_shouldLoadOnlyExpandedParts() {
+        when(customerRepository.findById(eq(1L), anySet())).thenReturn(Optional.of(customer));
+        when(orderServiceClient.getOrdersByCustomerId(1L)).thenReturn(List.of(new OrderResponseDTO()));
+
+        CustomerResponseDTO result = customerService.getCustomerById(1L, CustomerView.parse("firstName", "orders"));
+
+        assertEquals("John", result.getFirstName());
+        assertEquals(1, result.getOrders().size());
+        assertNull(result.getAddresses());
+        verifyNoInteractions(addressRepository);
+    }
+
+    @Test
+    void getAllCustomers_shouldSelectOnlyRequestedColumns_andSkipAddresses_forPartialView() {
+        when(customerRepository.findPage(isNull(), eq(11), anySet(), eq(CustomerFilter.NONE))).thenReturn(List.of(customer));
+
+        CustomerPageResponseDTO page = customerService.getAllCustomers(null, 10, CustomerView.parse("firstName,lastName", null), CustomerFilter.NONE);
+
+        assertEquals("John", page.getContent().get(0).getFirstName());
+        assertNull(page.getContent().get(0).getEmail());
+        assertNull(page.getContent().get(0).getAddresses());
+        verify(customerRepository).findPage(null, 11, Set.of("id", "updated_at", "first_name", "last_name"), CustomerFilter.NONE);
+        verifyNoInteractions(addressRepository);
+    }
+
+    @Test
+    void getAllCustomers_shouldRejectOrderExpansion_andUnknownFields() {
+        assertThrows(BadRequestException.class,
+                () -> customerService.getAllCustomers(null, 10, CustomerView.parse(null, "orders"), CustomerFilter.NONE));
+        assertThrows(BadRequestException.class, () -> CustomerView.parse("email,password", null));
+        assertThrows(BadRequestException.class, () -> CustomerView.parse(null, "payments"));
+    }
+
+    @Test
+    void getAllCustomers_shouldPassFilterToRepository_andRejectEmptyCreatedRange() {
+        LocalDateTime weekStart = LocalDateTime.of(2024, 6, 3, 0, 0);
+        CustomerFilter filter = new CustomerFilter(CustomerStatus.PENDING_VERIFICATION, weekStart, weekStart.plusWeeks(1), null);
+        when(customerRepository.findPage(null, 11, filter)).thenReturn(List.of());
+
+        assertTrue(customerService.getAllCustomers(null, 10, CustomerView.FULL, filter).getContent().isEmpty());
+        verify(customerRepository).findPage(null, 11, filter);
+
+        CustomerFilter emptyRange = new CustomerFilter(null, weekStart, weekStart, null);
+        assertThrows(BadRequestException.class,
+                () -> customerService.getAllCustomers(null, 10, CustomerView.FULL, emptyRange));
+    }
+
+    @Test
+    void getAllCustomers_withCreatedRange_shouldResumeAfterLastCustomersCreatedAtAndId() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 6, 4, 9, 30, 15, 123456000);
+        customer.setCreatedAt(createdAt);
+        Customer second = new Customer(
+                2L, "Jane", "Roe", "jane.roe@example.com", "123-45-679", "555-4321",
+                CustomerStatus.ACTIVE, null, createdAt.plusHours(1), createdAt.plusHours(1), new ArrayList<>()
+        );
+        CustomerFilter filter = new CustomerFilter(null, LocalDateTime.of(2024, 6, 3, 0, 0), null, null);
+        when(customerRepository.findPage(null, 2, filter)).thenReturn(List.of(customer, second));
+
+        CustomerPageResponseDTO firstPage = customerService.getAllCustomers(null, 1, CustomerView.FULL, filter);
+
+        when(customerRepository.findPage(new CustomerPageKey(createdAt, 1L), 2, filter)).thenReturn(List.of(second));
+
+        CustomerPageResponseDTO secondPage = customerService.getAllCustomers(firstPage.getNext(), 1, CustomerView.FULL, filter);
+
+        assertEquals(2L, secondPage.getContent().get(0).getId());
+        assertNull(secondPage.getNext());
+
+        // Cursors carry their sort column and only resume listings ordered by it
+        assertThrows(BadRequestException.class,
+                () -> customerService.getAllCustomers(firstPage.getNext(), 1, CustomerView.FULL, CustomerFilter.NONE));
+        when(customerRepository.findPage(null, 2, CustomerFilter.NONE)).thenReturn(List.of(customer, second));
+        String idCursor = customerService.getAllCustomers(null, 1).getNext();
+        assertThrows(BadRequestException.class,
+                () -> customerService.getAllCustomers(idCursor, 1, CustomerView.FULL, filter));
+    }
+
+    @Test
+    void searchCustomers_shouldPageThroughRankedMatchesByOffset_withoutLoadingAddresses() {
+        Customer second = new Customer(
+                2L, "Johnny", "Roe", "johnny.roe@example.com", "123-45-679", "555-4321",
+                CustomerStatus.ACTIVE, null, LocalDateTime.now(), LocalDateTime.now(), new ArrayList<>()
+        );
+        when(customerRepository.search("john", 2, 0, 200, 0.4)).thenReturn(List.of(customer, second));
+
+        CustomerPageResponseDTO firstPage = customerService.searchCustomers("  John ", null, 1);
+
+        assertEquals(1L, firstPage.getContent().get(0).getId());
+        assertNull(firstPage.getContent().get(0).getAddresses());
+        assertNotNull(firstPage.getNext());
+
+        when(customerRepository.search("john", 2, 1, 200, 0.4)).thenReturn(List.of(second));
+
+        CustomerPageResponseDTO secondPage = customerService.searchCustomers("John", firstPage.getNext(), 1);
+
+        assertEquals(2L, secondPage.getContent().get(0).getId());
+        assertNull(secondPage.getNext());
+        verifyNoInteractions(addressRepository);
+    }
+
+    @Test
+    void searchCustomers_shouldRejectShortQueries_andIdCursors() {
+        assertThrows(BadRequestException.class, () -> customerService.searchCustomers(null, null, 10));
+        assertThrows(BadRequestException.class, () -> customerService.searchCustomers(" j ", null, 10));
+
+        // A cursor from the id-ordered list does not resume a search
+        when(customerRepository.findPage(null, 2, CustomerFilter.NONE)).thenReturn(List.of(customer, customer));
+        String listCursor = customerService.getAllCustomers(null, 1).getNext();
+        assertThrows(BadRequestException.class, () -> customerService.searchCustomers("john", listCursor, 10));
+        verify(customerRepository, never()).search(anyString(), anyInt(), anyInt(), anyInt(), anyDouble());
+    }
+
+    @Test
+    void getCustomerById_shouldOverlapOrderLookupWithDatabaseReads() {
+        OrderResponseDTO order = new OrderResponseDTO();
+        when(orderServiceClient.getOrdersByCustomerId(1L)).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return List.of(order);
+        });
+        when(customerRepository.findById(1L)).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return Optional.of(customer);
+        });
+        when(addressRepository.findByCustomerId(1L)).thenReturn(Arrays.asList(address));
+
+        long start = System.nanoTime();
+        CustomerResponseDTO result = customerService.getCustomerById(1L);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(List.of(order), result.getOrders());
+        assertTrue(elapsedMillis < 550, "order lookup should run concurrently, took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void getCustomerById_shouldReturnWithoutOrdersAtDeadline_andLeaveOrderLookupToFinish() throws Exception {
+        ReflectionTestUtils.setField(customerService, "readDeadlineMillis", 100L);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        when(orderServiceClient.getOrdersByCustomerId(1L)).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(400);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            finished.countDown();
+            return List.of(new OrderResponseDTO());
+        });
+        when(customerRepository.findById(1L)).thenAnswer(invocation -> {
+            started.await(1, TimeUnit.SECONDS);
+            return Optional.of(customer);
+        });
+        when(addressRepository.findByCustomerId(1L)).thenReturn(Arrays.asList(address));
+
+        CustomerResponseDTO result = customerService.getCustomerById(1L);
+
+        assertTrue(result.getOrders().isEmpty());
+        assertEquals(1, finished.getCount(), "the read should not wait for the late order lookup");
+        assertTrue(finished.await(1, TimeUnit.SECONDS));
+        assertFalse(interrupted.get(), "a late order lookup may lead a shared cache load and must not be interrupted");
+    }
+
+    @Test
+    void getCustomerById_shouldNotInterruptOrderLookup_whenCustomerDoesNotExist() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        when(orderServiceClient.getOrdersByCustomerId(1L)).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            finished.countDown();
+            return List.of();
+        });
+        when(customerRepository.findById(1L)).thenAnswer(invocation -> {
+            started.await(1, TimeUnit.SECONDS);
+            return Optional.empty();
+        });
+
+        assertThrows(ResourceNotFoundException.class, () -> customerService.getCustomerById(1L));
+        assertTrue(finished.await(1, TimeUnit.SECONDS));
+        assertFalse(interrupted.get());
+    }
+
+    @Test
+    void getCustomerById_shouldReadInReadOnlyTransactionTimedOutAtDeadline() {
+        ReflectionTestUtils.setField(customerService, "readDeadlineMillis", 1500L);
+        when(orderServiceClient.getOrdersByCustomerId(1L)).thenReturn(List.of());
+        when(customerRepository.findById(1L)).thenReturn(Optional.of(customer));
+        when(addressRepository.findByCustomerId(1L)).thenReturn(Arrays.asList(address));
+
+        customerService.getCustomerById(1L);
+
+        // Query timeouts are whole seconds, so the 1.5 s left rounds up to 2
+        verify(transactionManager).getTransaction(argThat(definition ->
+                definition.isReadOnly() && definition.getTimeout() == 2));
+    }
+
+    @Test
+    void getCustomerById_shouldReturnWithoutOrders_whenOrderServiceFails() {
+        when(orderServiceClient.getOrdersByCustomerId(1L)).thenThrow(new IllegalStateException("order service down"));
+        when(customerRepository.findById(1L)).thenReturn(Optional.of(customer));
+        when(addressRepository.findByCustomerId(1L)).thenReturn(Arrays.asList(address));
+
+        CustomerResponseDTO result = customerService.getCustomerById(1L);
+
+        assertEquals(customer.getId(), result.getId());
+        assertTrue(result.getOrders().isEmpty());
+    }
+
     @Test
     void getCustomerById_shouldThrowResourceNotFoundException_whenCustomerDoesNotExist() {
         when(customerRepository.findById(anyLong())).thenReturn(Optional.empty());
@@ -121,10 +552,209 @@ class CustomerServiceTest {
         verify(customerRepository, times(1)).findById(anyLong());
     }
 
+    @Test
+    void getCustomerById_shouldServeRepeatReadsFromCache() {
+        enableCustomerCache();
+        when(customerRepository.findById(1L)).thenReturn(Optional.of(customer));
+        when(addressRepository.findByCustomerId(1L)).thenReturn(Arrays.asList(address));
+
+        customerService.getCustomerById(1L);
+        CustomerResponseDTO result = customerService.getCustomerById(1L);
+
+        assertEquals(1, result.getAddresses().size());
+        verify(customerRepository, times(1)).findById(1L);
+        verify(addressRepository, times(1)).findByCustomerId(1L);
+    }
+
+    @Test
+    void getCustomerById_shouldNotCacheMissingCustomer() {
+        enableCustomerCache();
+        when(customerRepository.findById(1L)).thenReturn(Optional.empty(), Optional.of(customer));
+        when(addressRepository.findByCustomerId(1L)).thenReturn(Arrays.asList(address));
+
+        assertThrows(ResourceNotFoundException.class, () -> customerService.getCustomerById(1L));
+
+        assertEquals(customer.getId(), customerService.getCustomerById(1L).getId());
+    }
+
+    @Test
+    void getCustomerById_shouldServeCacheHits_withoutStartingTransaction() {
+        enableCustomerCache();
+        when(customerRepository.findById(1L)).thenReturn(Optional.of(customer));
+        when(addressRepository.findByCustomerId(1L)).thenReturn(Arrays.asList(address));
+        customerService.getCustomerById(1L);
+        clearInvocations(transactionManager);
+
+        customerService.getCustomerById(1L);
+        customerService.getCustomerById(1L, CustomerView.parse("email", null));
+
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void getCustomerById_shouldFailAtDeadline_whenWaitingOnAnotherReadersLoad() throws Exception {
+        enableCustomerCache();
+        ReflectionTestUtils.setField(customerService, "readDeadlineMillis", 200L);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(customerRepository.findById(1L)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(customer);
+        });
+        when(addressRepository.findByCustomerId(1L)).thenReturn(Arrays.asList(address));
+        CompletableFuture<CustomerResponseDTO> leader =
+                CompletableFuture.supplyAsync(() -> customerService.getCustomerById(1L, CustomerView.FULL));
+        assertTrue(loading.await(1, TimeUnit.SECONDS));
+
+        try {
+            long start = System.nanoTime();
+            assertThrows(ServiceUnavailableException.class,
+                    () -> customerService.getCustomerById(1L, CustomerView.FULL));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsedMillis < 1000, "the wait should end at the deadline, took " + elapsedMillis + " ms");
+        } finally {
+            release.countDown();
+        }
+        assertEquals(customer.getId(), leader.get(1, TimeUnit.SECONDS).getId());
+        verify(customerRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void getCustomerById_shouldFailAsServiceUnavailable_whenQueryTimesOut() {
+        when(customerRepository.findById(eq(1L), anySet())).thenThrow(new QueryTimeoutException("canceling statement due to statement timeout"));
+
+        assertThrows(ServiceUnavailableException.class,
+                () -> customerService.getCustomerById(1L, CustomerView.parse("email", null)));
+    }
+
+    @Test
+    void updateCustomer_shouldEvictCachedCustomer_onlyAfterCommit() {
+        enableCustomerCache();
+        when(customerRepository.findById(1L)).thenReturn(Optional.of(customer));
+        when(addressRepository.findByCustomerId(1L)).thenReturn(Arrays.asList(address));
+        when(customerRepository.update(any(Customer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        customerService.getCustomerById(1L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            customerService.updateCustomer(1L, customerRequestDTO, null);
+            customerService.getCustomerById(1L);
+            // One read to fill the cache, one by the update itself; the read inside the transaction was cached
+            verify(customerRepository, times(2)).findById(1L);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        customerService.getCustomerById(1L);
+        verify(customerRepository, times(3)).findById(1L);
+    }
+
+    @Test
+    void getCustomerETag_shouldQueryVersionOnly() {
+        when(customerRepository.findUpdatedAt(1L)).thenReturn(Optional.of(customer.getUpdatedAt()));
+
+        assertEquals(CustomerETags.of(1L, customer.getUpdatedAt()), customerService.getCustomerETag(1L));
+        verify(customerRepository, never()).findById(anyLong());
+        verifyNoInteractions(addressRepository, orderServiceClient);
+    }
+
+    @Test
+    void updateCustomer_shouldApplyUpdate_whenIfMatchIsCurrent() {
+        when(customerRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(customer));
+        when(customerRepository.update(any(Customer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        CustomerResponseDTO result = customerService.updateCustomer(1L, customerRequestDTO,
+                CustomerETags.of(1L, customer.getUpdatedAt()));
+
+        assertEquals("Jane", result.getFirstName());
+        verify(customerRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void updateCustomer_shouldThrowPreconditionFailed_whenIfMatchIsStale() {
+        when(customerRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(customer));
+
+        assertThrows(PreconditionFailedException.class,
+                () -> customerService.updateCustomer(1L, customerRequestDTO, "\"1-0\""));
+        verify(customerRepository, never()).update(any(Customer.class));
+    }
+
+    @Test
+    void updateCustomer_shouldNotWriteAddresses_whenAddressesAreUnchanged() {
+        when(customerRepository.findById(1L)).thenReturn(Optional.of(customer));
+        when(customerRepository.update(any(Customer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(addressRepository.findByCustomerId(1L)).thenReturn(List.of(address));
+        CustomerRequestDTO unchanged = new CustomerRequestDTO("John", "Doe", "john.doe@example.com", "123-45-678", "555-1234",
+                List.of(new AddressRequestDTO("123 Main St", "Anytown", "CA", "90210", AddressType.HOME)));
+
+        CustomerResponseDTO result = customerService.updateCustomer(1L, unchanged, null);
+
+        assertEquals(1L, result.getAddresses().get(0).getId());
+        verify(addressRepository).updateAll(List.of());
+        verify(addressRepository).saveAll(List.of());
+        verify(addressRepository, never()).deleteByCustomerIdExcept(anyLong(), anyCollection());
+    }
+
+    @Test
+    void updateCustomer_shouldUpdateChangedAddressesInPlace_andInsertTheRest() {
+        Address work = new Address(2L, "1 Office Park", "Anytown", "CA", "90211", AddressType.WORK, customer);
+        when(customerRepository.findById(1L)).thenReturn(Optional.of(customer));
+        when(customerRepository.update(any(Customer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(addressRepository.findByCustomerId(1L)).thenReturn(List.of(work, address));
+        CustomerRequestDTO moved = new CustomerRequestDTO("John", "Doe", "john.doe@example.com", "123-45-678", "555-1234",
+                List.of(new AddressRequestDTO("9 New St", "Anytown", "CA", "90210", AddressType.HOME),
+                        new AddressRequestDTO("5 Elm St", "Anytown", "CA", "90212", AddressType.BILLING),
+                        new AddressRequestDTO("6 Elm St", "Anytown", "CA", "90212", AddressType.BILLING)));
+
+        CustomerResponseDTO result = customerService.updateCustomer(1L, moved, null);
+
+        // The HOME row is rewritten in place, WORK is reused for one BILLING address and the other is inserted
+        verify(addressRepository).updateAll(argThat(addresses -> addresses.size() == 2
+                && addresses.get(0).getId() == 1L && addresses.get(0).getStreet().equals("9 New St")
+                && addresses.get(1).getId() == 2L && addresses.get(1).getStreet().equals("5 Elm St")));
+        verify(addressRepository).saveAll(argThat(addresses -> addresses.size() == 1
+                && addresses.get(0).getStreet().equals("6 Elm St")));
+        verify(addressRepository, never()).deleteByCustomerIdExcept(anyLong(), anyCollection());
+        assertEquals(List.of("9 New St", "5 Elm St", "6 Elm St"),
+                result.getAddresses().stream().map(a -> a.getStreet()).toList());
+    }
+
+    @Test
+    void updateCustomer_shouldDeleteRemovedAddressesInOneStatement() {
+        Address work = new Address(2L, "1 Office Park", "Anytown", "CA", "90211", AddressType.WORK, customer);
+        when(customerRepository.findById(1L)).thenReturn(Optional.of(customer));
+        when(customerRepository.update(any(Customer.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(addressRepository.findByCustomerId(1L)).thenReturn(List.of(work, address));
+        CustomerRequestDTO homeOnly = new CustomerRequestDTO("John", "Doe", "john.doe@example.com", "123-45-678", "555-1234",
+                List.of(new AddressRequestDTO("123 Main St", "Anytown", "CA", "90210", AddressType.HOME)));
+
+        customerService.updateCustomer(1L, homeOnly, null);
+
+        verify(addressRepository).deleteByCustomerIdExcept(1L, List.of(1L));
+        verify(addressRepository, never()).deleteById(anyLong());
+    }
+
+    @Test
+    void deleteCustomer_shouldThrowPreconditionFailed_whenCustomerIsGone() {
+        when(customerRepository.findByIdForUpdate(1L)).thenReturn(Optional.empty());
+
+        assertThrows(PreconditionFailedException.class, () -> customerService.deleteCustomer(1L, "*"));
+        verify(customerRepository, never()).deleteById(anyLong());
+    }
+
     @Test
     void deleteCustomer_shouldDeleteCustomer_whenCustomerExists() {
-        customerService.deleteCustomer(1L);
+        customerService.deleteCustomer(1L, null);
 
         verify(customerRepository, times(1)).deleteById(anyLong());
     }
+
+    private void enableCustomerCache() {
+        ReflectionTestUtils.setField(customerService, "customerCacheEnabled", true);
+        ReflectionTestUtils.setField(customerService, "meterRegistry", new SimpleMeterRegistry());
+        customerService.initCustomerCache();
+    }
 }
@@ -0,0 +1,153 @@
+package com.example.customeridentitydemo.service;
+
+import com.example.customeridentitydemo.dto.DataGenerationResponseDTO;
+import com.example.customeridentitydemo.exception.BadRequestException;
+import com.example.customeridentitydemo.repository.JdbcBulkLoadRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SyntheticDataGeneratorTest {
+
+    private static final int CUSTOMERS = 20_000;
+
+    @Mock
+    private JdbcBulkLoadRepository bulkLoadRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private SyntheticDataGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        generator = new SyntheticDataGenerator(bulkLoadRepository, transactionTemplate,
+                5_000, 1_000_000, 0.04, "2023-01-01", "2025-01-01");
+    }
+
+    private static List<String[]> rows(Reader reader) {
+        var out = new StringWriter();
+        try {
+            reader.transferTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString().lines().map(line -> line.split("\t", -1)).toList();
+    }
+
+    @Test
+    void rows_shouldBeDeterministicPerSeedAndIndependentOfBatching() {
+        List<String[]> whole = rows(generator.customerRows(42, CUSTOMERS, 1, 0, 1_000));
+        List<String[]> batched = new ArrayList<>(rows(generator.customerRows(42, CUSTOMERS, 1, 0, 400)));
+        batched.addAll(rows(generator.customerRows(42, CUSTOMERS, 1, 400, 1_000)));
+        List<String[]> otherSeed = rows(generator.customerRows(7, CUSTOMERS, 1, 0, 1_000));
+
+        assertEquals(1_000, whole.size());
+        for (int i = 0; i < whole.size(); i++) {
+            assertArrayEquals(whole.get(i), batched.get(i));
+        }
+        assertFalse(Arrays.equals(whole.get(0), otherSeed.get(0)));
+        assertEquals(rows(generator.addressRows(42, CUSTOMERS, 1, 0, 1_000)).stream().map(Arrays::toString).toList(),
+                rows(generator.addressRows(42, CUSTOMERS, 1, 0, 1_000)).stream().map(Arrays::toString).toList());
+    }
+
+    @Test
+    void customerRows_shouldFollowConfiguredDistributions() {
+        List<String[]> customers = rows(generator.customerRows(42, CUSTOMERS, 1_001, 0, CUSTOMERS));
+
+        assertEquals(CUSTOMERS, customers.size());
+        assertTrue(customers.stream().allMatch(row -> row.length == 10));
+        assertEquals("1001", customers.get(0)[0]);
+        assertEquals("900-00-1001", customers.get(0)[4]);
+        // Unique emails, skewed but high-cardinality names
+        assertEquals(CUSTOMERS, customers.stream().map(row -> row[3]).distinct().count());
+        Map<String, Long> firstNames = customers.stream().collect(Collectors.groupingBy(row -> row[1], Collectors.counting()));
+        assertTrue(firstNames.size() > 1_000, "first names: " + firstNames.size());
+        assertTrue(firstNames.get("James") > firstNames.getOrDefault("Aisha", 0L));
+        assertTrue(firstNames.get("James") < CUSTOMERS / 10);
+
+        double deleted = customers.stream().filter(row -> !row[9].equals("\\N")).count() / (double) CUSTOMERS;
+        double active = customers.stream().filter(row -> row[6].equals("ACTIVE")).count() / (double) CUSTOMERS;
+        assertEquals(0.04, deleted, 0.01);
+        assertEquals(0.80, active, 0.02);
+        // Created in id order within the configured period, never updated or deleted before creation
+        for (int i = 1; i < customers.size(); i++) {
+            assertTrue(customers.get(i)[7].compareTo(customers.get(i - 1)[7]) >= 0);
+        }
+        assertTrue(customers.get(0)[7].startsWith("2023-01-01"));
+        assertTrue(customers.get(CUSTOMERS - 1)[7].startsWith("2024-12-31"));
+        assertTrue(customers.stream().allMatch(row -> row[8].compareTo(row[7]) >= 0));
+    }
+
+    @Test
+    void addressRows_shouldGiveMostCustomersOneAddress() {
+        List<String[]> addresses = rows(generator.addressRows(42, CUSTOMERS, 1, 0, CUSTOMERS));
+
+        assertTrue(addresses.stream().allMatch(row -> row.length == 8));
+        Map<String, Long> perCustomer = addresses.stream().collect(Collectors.groupingBy(row -> row[0], Collectors.counting()));
+        long withOne = perCustomer.values().stream().filter(count -> count == 1).count();
+        assertEquals(0.60, withOne / (double) CUSTOMERS, 0.02);
+        assertEquals(0.92, perCustomer.size() / (double) CUSTOMERS, 0.02);
+        assertEquals(1.37, addresses.size() / (double) CUSTOMERS, 0.05);
+        Set<String> firstTypes = new HashSet<>(addresses.stream()
+                .collect(Collectors.toMap(row -> row[0], row -> row[5], (first, other) -> first)).values());
+        assertEquals(Set.of("HOME"), firstTypes);
+    }
+
+    @Test
+    void generate_shouldCopyEachBatchInItsOwnTransaction() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(mock(TransactionStatus.class)));
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(bulkLoadRepository.reserveCustomerIds(12_000)).thenReturn(501L);
+        when(bulkLoadRepository.copyIn(anyString(), anyString(), any(Reader.class))).thenAnswer(invocation ->
+                (long) rows(invocation.getArgument(2)).size());
+
+        DataGenerationResponseDTO result = generator.generate(12_000, 42);
+
+        verify(bulkLoadRepository, times(3)).copyIn(eq("customers"), anyString(), any(Reader.class));
+        verify(bulkLoadRepository, times(3)).copyIn(eq("addresses"), anyString(), any(Reader.class));
+        verify(transactionTemplate, times(3)).executeWithoutResult(any());
+        verify(bulkLoadRepository).analyze("customers");
+        verify(bulkLoadRepository).analyze("addresses");
+        assertEquals(501, result.getFirstId());
+        assertEquals(12_500, result.getLastId());
+        assertEquals(0.04, result.getDeletedCustomers() / 12_000.0, 0.015);
+        assertTrue(result.getAddresses() > 12_000);
+    }
+
+    @Test
+    void generate_shouldRejectCustomerCountOutOfRange() {
+        assertThrows(BadRequestException.class, () -> generator.generate(0, 42));
+        assertThrows(BadRequestException.class, () -> generator.generate(1_000_001, 42));
+        verifyNoInteractions(bulkLoadRepository);
+    }
+}